@@ -20,6 +20,8 @@ import org.vmmagic.pragma.*;
 import org.vmmagic.unboxed.*;
 
 import org.jikesrvm.VM;
+import org.jikesrvm.dr.Dr;
+import org.jikesrvm.dr.DrRuntime;
 import org.jikesrvm.mm.mminterface.DebugUtil;
 import org.jikesrvm.mm.mminterface.Selected;
 import org.jikesrvm.runtime.Entrypoints;
@@ -342,6 +344,9 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
     }
     nurseryIndex = maxIndex = toIndex;
 
+    /* FIB: side tables keyed weakly by object */
+    if (Dr.ON && semantics == Semantics.WEAK) DrRuntime.scanWeakTables(trace);
+
     /* flush out any remset entries generated during the above activities */
     Selected.Mutator.get().flushRememberedSets();
     if (TRACE) VM.sysWriteln("Ending ReferenceGlue.scan(",semanticsStr,")");
@@ -17,6 +17,8 @@ import java.lang.reflect.Field;
 import org.jikesrvm.VM;
 import org.jikesrvm.classloader.RVMField;
 import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.dr.Dr;
+import org.jikesrvm.dr.DrRuntime;
 import org.jikesrvm.runtime.Magic;
 import org.jikesrvm.runtime.RuntimeEntrypoints;
 import org.jikesrvm.scheduler.Synchronization;
@@ -52,7 +54,10 @@ public final class Unsafe {
 
   public boolean compareAndSwapInt(Object obj,long offset,int expect,int update) {
     Offset off = longToOffset(offset);
-    return Synchronization.tryCompareAndSwap(obj, off, expect, update);
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePreRelease(obj, off);
+    boolean result = Synchronization.tryCompareAndSwap(obj, off, expect, update);
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePostRelease(true, result);
+    return result;
   }
 
   public boolean compareAndSwapLong(Object obj,long offset,long expect,long update) {
@@ -64,53 +69,67 @@ public final class Unsafe {
     if (VM.VerifyAssertions) { VM._assert(false); }
     
     Offset off = Offset.fromIntSignExtend((int)offset);
-    return Synchronization.tryCompareAndSwap(obj, off, expect, update);
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePreRelease(obj, off);
+    boolean result = Synchronization.tryCompareAndSwap(obj, off, expect, update);
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePostRelease(true, result);
+    return result;
   }
 
   public boolean compareAndSwapObject(Object obj,long offset,Object expect,Object update) {
     Offset off = Offset.fromIntSignExtend((int)offset);
-    return Synchronization.tryCompareAndSwap(obj, off, expect, update);
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePreRelease(obj, off);
+    boolean result = Synchronization.tryCompareAndSwap(obj, off, expect, update);
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePostRelease(true, result);
+    return result;
   }
 
   public void putOrderedInt(Object obj,long offset,int value) {
     Offset off = longToOffset(offset);
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePreRelease(obj, off);
     Magic.writeFloor();
     if (NEEDS_INT_PUTFIELD_BARRIER) {
       intFieldWrite(obj, value, off, 0);
     } else {
       Magic.setIntAtOffset(obj, off, value);
     }
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePostRelease(false, true);
   }
 
   public void putOrderedLong(Object obj,long offset,long value) {
     Offset off = longToOffset(offset);
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePreRelease(obj, off);
     Magic.writeFloor();
     if (NEEDS_LONG_PUTFIELD_BARRIER) {
       longFieldWrite(obj, value, off, 0);
     } else {
       Magic.setLongAtOffset(obj, off, value);
     }
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePostRelease(false, true);
   }
 
   public void putOrderedObject(Object obj,long offset,Object value) {
     Offset off = longToOffset(offset);
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePreRelease(obj, off);
     Magic.writeFloor();
     if (NEEDS_OBJECT_PUTFIELD_BARRIER) {
       objectFieldWrite(obj, value, off, 0);
     } else {
       Magic.setObjectAtOffset(obj, off, value);
     }
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePostRelease(false, true);
    }
 
   public void putIntVolatile(Object obj,long offset,int value) {
-    Magic.writeFloor();
     Offset off = longToOffset(offset);
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePreRelease(obj, off);
+    Magic.writeFloor();
     if (NEEDS_INT_PUTFIELD_BARRIER) {
       intFieldWrite(obj, value, off, 0);
     } else {
       Magic.setIntAtOffset(obj,off,value);
     }
     Magic.fence();
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePostRelease(false, true);
   }
 
   public void putInt(Object obj,long offset,int value) {
@@ -124,8 +143,10 @@ public final class Unsafe {
 
   public int getIntVolatile(Object obj,long offset) {
     Offset off = longToOffset(offset);
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePreAcquire(obj, off);
     int result = Magic.getIntAtOffset(obj,off);
     Magic.readCeiling();
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePostAcquire(obj, off);
     return result;
   }
 
@@ -135,14 +156,16 @@ public final class Unsafe {
   }
 
   public void putLongVolatile(Object obj,long offset,long value) {
-    Magic.writeFloor();
     Offset off = longToOffset(offset);
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePreRelease(obj, off);
+    Magic.writeFloor();
     if (NEEDS_LONG_PUTFIELD_BARRIER) {
       longFieldWrite(obj, value, off, 0);
     } else {
       Magic.setLongAtOffset(obj,off,value);
     }
     Magic.fence();
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePostRelease(false, true);
   }
 
   public void putLong(Object obj,long offset,long value) {
@@ -156,8 +179,10 @@ public final class Unsafe {
 
   public long getLongVolatile(Object obj,long offset) {
     Offset off = longToOffset(offset);
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePreAcquire(obj, off);
     long result = Magic.getLongAtOffset(obj,off);
     Magic.readCeiling();
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePostAcquire(obj, off);
     return result;
   }
 
@@ -168,6 +193,7 @@ public final class Unsafe {
 
   public void putObjectVolatile(Object obj,long offset,Object value) {
     Offset off = longToOffset(offset);
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePreRelease(obj, off);
     Magic.writeFloor();
     if (NEEDS_OBJECT_PUTFIELD_BARRIER) {
       objectFieldWrite(obj, value, off, 0);
@@ -175,6 +201,7 @@ public final class Unsafe {
       Magic.setObjectAtOffset(obj,off,value);
     }
     Magic.fence();
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePostRelease(false, true);
   }
 
   public void putObject(Object obj,long offset,Object value) {
@@ -192,8 +219,10 @@ public final class Unsafe {
 
   public Object getObjectVolatile(Object obj,long offset) {
     Offset off = longToOffset(offset);
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePreAcquire(obj, off);
     Object result = Magic.getObjectAtOffset(obj,off);
     Magic.readCeiling();
+    if (Dr.UNSAFE_SYNC) DrRuntime.unsafePostAcquire(obj, off);
     return result;
   }
 
@@ -213,6 +242,7 @@ public final class Unsafe {
   public void unpark(Object thread) {
     RVMThread vmthread = java.lang.JikesRVMSupport.getThread((Thread)thread);
     if (vmthread != null) {
+      if (Dr.UNSAFE_SYNC) DrRuntime.unparkRelease(vmthread);
       vmthread.unpark();
     }
   }
@@ -221,6 +251,7 @@ public final class Unsafe {
     RVMThread vmthread = java.lang.JikesRVMSupport.getThread(Thread.currentThread());
     if (vmthread != null) {
       vmthread.park(isAbsolute, time);
+      if (Dr.UNSAFE_SYNC) DrRuntime.parkAcquire(vmthread);
     }
   }
 
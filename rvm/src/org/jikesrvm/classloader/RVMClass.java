@@ -1354,6 +1354,7 @@ public final class RVMClass extends RVMType implements Constants, ClassLoaderCon
 
     // FIB:
     int drCheckedFieldCount = 0;
+    int drVolatileFieldCount = 0;
     // end FIB
     // count reference fields
     int referenceFieldCount = 0;
@@ -1368,6 +1369,7 @@ public final class RVMClass extends RVMType implements Constants, ClassLoaderCon
         break;
       case VOLATILE:
         referenceFieldCount++;
+        drVolatileFieldCount++;
         break;
       default:
         break;
@@ -1381,6 +1383,7 @@ public final class RVMClass extends RVMType implements Constants, ClassLoaderCon
       referenceOffsets = MemoryManager.newNonMovingIntArray(0);
       // FIB:
       drAccessHistoryOffsets = null;
+      drVolatileOffsets = null;
       // end FIB
     } else {
       referenceOffsets = MemoryManager.newNonMovingIntArray(referenceFieldCount);
@@ -1388,6 +1391,9 @@ public final class RVMClass extends RVMType implements Constants, ClassLoaderCon
       drAccessHistoryOffsets = 
           drCheckedFieldCount == 0 ? null : MemoryManager.newNonMovingIntArray(drCheckedFieldCount);
       int k = 0;
+      drVolatileOffsets =
+          !Dr.UNSAFE_SYNC || drVolatileFieldCount == 0 ? null : MemoryManager.newNonMovingIntArray(drVolatileFieldCount << 1);
+      int v = 0;
       // end FIB
       int j = 0;
       for (RVMField field : instanceFields) {
@@ -1399,6 +1405,10 @@ public final class RVMClass extends RVMType implements Constants, ClassLoaderCon
           drAccessHistoryOffsets[k++] = field.getDrOffset().toInt();
         } else if (FieldTreatment.vol(field)) {
           referenceOffsets[j++] = field.getDrOffset().toInt();
+          if (drVolatileOffsets != null) {
+            drVolatileOffsets[v++] = field.getOffset().toInt();
+            drVolatileOffsets[v++] = field.getDrOffset().toInt();
+          }
         }
         // end FIB
       }
@@ -1781,6 +1791,18 @@ public final class RVMClass extends RVMType implements Constants, ClassLoaderCon
   public final WordArray drGetClassInitVC() {
     return drClassInitVC;
   }
+
+  /**
+   * Pairs of (offset, VC offset) of the volatile instance fields, for
+   * looking up Unsafe accesses by offset, or null if none.  (Dr.UNSAFE_SYNC)
+   */
+  private int[] drVolatileOffsets;
+  @Uninterruptible
+  @Inline
+  public final int[] getDrVolatileOffsets() {
+    if (VM.VerifyAssertions) VM._assert(isResolved());
+    return drVolatileOffsets;
+  }
   // end FIB.
   
   /**
@@ -41,6 +41,7 @@ import org.jikesrvm.compilers.common.CompiledMethod;
 import org.jikesrvm.compilers.common.assembler.ForwardReference;
 import org.jikesrvm.compilers.common.assembler.ia32.Assembler;
 import org.jikesrvm.dr.Dr;
+import org.jikesrvm.dr.Sampling;
 import org.jikesrvm.dr.instrument.FieldTreatment;
 import org.jikesrvm.ia32.BaselineConstants;
 import org.jikesrvm.ia32.ThreadLocalState;
@@ -2818,6 +2819,7 @@ public abstract class BaselineCompilerImpl extends BaselineCompiler implements B
     genParameterRegisterLoad(methodRef, true);
     asm.emitCALL_Reg(S0);                                            // call virtual method
     genResultRegisterUnload(methodRef);                              // push return value, if any
+    genSampling(Entrypoints.drSampleResumeMethod);
   }
 
   @Override
@@ -2831,6 +2833,7 @@ public abstract class BaselineCompilerImpl extends BaselineCompiler implements B
     genParameterRegisterLoad(methodRef, true);
     asm.emitCALL_RegDisp(S0, methodRefOffset);                       // call virtual method
     genResultRegisterUnload(methodRef);                              // push return value, if any
+    genSampling(Entrypoints.drSampleResumeMethod);
   }
 
   @Override
@@ -2839,6 +2842,7 @@ public abstract class BaselineCompilerImpl extends BaselineCompiler implements B
       genParameterRegisterLoad(methodRef, true);
       asm.emitCALL_Abs(Magic.getTocPointer().plus(target.getOffset()));
       genResultRegisterUnload(target.getMemberRef().asMethodReference());
+      genSampling(Entrypoints.drSampleResumeMethod);
     } else {
       if (VM.VerifyAssertions) VM._assert(!target.isStatic());
       // invoke via class's tib slot
@@ -2851,6 +2855,7 @@ public abstract class BaselineCompilerImpl extends BaselineCompiler implements B
       genParameterRegisterLoad(methodRef, true);
       asm.emitCALL_RegDisp(S0, methodRefOffset);
       genResultRegisterUnload(methodRef);
+      genSampling(Entrypoints.drSampleResumeMethod);
     }
   }
 
@@ -2860,22 +2865,27 @@ public abstract class BaselineCompilerImpl extends BaselineCompiler implements B
     genParameterRegisterLoad(methodRef, true);
     asm.emitCALL_RegDisp(S0, Magic.getTocPointer().toWord().toOffset());
     genResultRegisterUnload(methodRef);
+    genSampling(Entrypoints.drSampleResumeMethod);
   }
 
   @Override
   protected final void emit_unresolved_invokestatic(MethodReference methodRef) {
+    octetBaselineInstr.insertInvokeStaticBarrier(method, biStart, methodRef, asm);
     emitDynamicLinkingSequence(asm, S0, methodRef, true, method.getStaticContext());
     genParameterRegisterLoad(methodRef, false);
     asm.emitCALL_RegDisp(S0, Magic.getTocPointer().toWord().toOffset());
     genResultRegisterUnload(methodRef);
+    genSampling(Entrypoints.drSampleResumeMethod);
   }
 
   @Override
   protected final void emit_resolved_invokestatic(MethodReference methodRef) {
+    octetBaselineInstr.insertInvokeStaticBarrier(method, biStart, methodRef, asm);
     Offset methodOffset = methodRef.peekResolvedMethod(method.getStaticContext()).getOffset();
     genParameterRegisterLoad(methodRef, false);
     asm.emitCALL_Abs(Magic.getTocPointer().plus(methodOffset));
     genResultRegisterUnload(methodRef);
+    genSampling(Entrypoints.drSampleResumeMethod);
   }
 
   @Override
@@ -3016,6 +3026,7 @@ public abstract class BaselineCompilerImpl extends BaselineCompiler implements B
       }
     }
     genResultRegisterUnload(methodRef);
+    genSampling(Entrypoints.drSampleResumeMethod);
   }
 
   /*
@@ -3551,6 +3562,8 @@ public abstract class BaselineCompilerImpl extends BaselineCompiler implements B
 
       genThreadSwitchTest(RVMThread.PROLOGUE);
 
+      genSampling(Entrypoints.drSampleEnterMethod);
+
       // Octet: Static cloning: Debugging for supporting multiple resolved methods for every method reference.
       if (Context.DEBUG && Context.isLibraryPrefix(method.getDeclaringClass().getTypeRef())) {
         //genParameterRegisterLoad(asm, 1);
@@ -3559,6 +3572,19 @@ public abstract class BaselineCompilerImpl extends BaselineCompiler implements B
     }
   }
 
+  /**
+   * FIB: call Sampling.enter or Sampling.resume with this method's sampling
+   * slot, if sampling race checks.
+   * @param target
+   */
+  private void genSampling(NormalMethod target) {
+    if (Dr.SAMPLING && fib) {
+      asm.emitPUSH_Imm(Sampling.slot(method));
+      genParameterRegisterLoad(asm, 1);      // pass 1 parameter word
+      asm.emitCALL_Abs(Magic.getTocPointer().plus(target.getOffset()));
+    }
+  }
+
   /**
    * Emit deferred prologue
    */
@@ -4401,6 +4427,7 @@ public abstract class BaselineCompilerImpl extends BaselineCompiler implements B
     genParameterRegisterLoad(ref, takeThis);
     asm.emitCALL_Abs(Magic.getTocPointer().plus(methodOffset));
     genResultRegisterUnload(ref);
+    genSampling(Entrypoints.drSampleResumeMethod);
   }
 
   /**
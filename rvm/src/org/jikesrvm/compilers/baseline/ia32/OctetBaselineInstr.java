@@ -4,6 +4,7 @@ import org.jikesrvm.ArchitectureSpecific.Assembler;
 import org.jikesrvm.ArchitectureSpecific.BaselineConstants;
 import org.jikesrvm.classloader.Context;
 import org.jikesrvm.classloader.FieldReference;
+import org.jikesrvm.classloader.MethodReference;
 import org.jikesrvm.classloader.NormalMethod;
 import org.jikesrvm.classloader.RVMField;
 import org.jikesrvm.classloader.TypeReference;
@@ -197,6 +198,10 @@ public class OctetBaselineInstr implements BaselineConstants {
   boolean insertFieldPostBarrierUnresolved(NormalMethod method, int biStart, boolean isRead, FieldReference fieldRef, Assembler asm) {
     return false;
   }
+  // FIB: barrier before a static call, with its arguments on the stack.
+  boolean insertInvokeStaticBarrier(NormalMethod method, int biStart, MethodReference methodRef, Assembler asm) {
+    return false;
+  }
 
 
 }
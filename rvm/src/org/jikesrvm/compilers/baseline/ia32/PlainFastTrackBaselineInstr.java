@@ -2,6 +2,7 @@ package org.jikesrvm.compilers.baseline.ia32;
 
 import org.jikesrvm.ArchitectureSpecific.Assembler;
 import org.jikesrvm.classloader.FieldReference;
+import org.jikesrvm.classloader.MethodReference;
 import org.jikesrvm.classloader.NormalMethod;
 import org.jikesrvm.classloader.RVMField;
 import org.jikesrvm.classloader.TypeReference;
@@ -188,6 +189,21 @@ public class PlainFastTrackBaselineInstr extends OctetBaselineInstr {
     return false;
   }
 
+  /** Bulk barrier for System.arraycopy */
+  @Override
+  boolean insertInvokeStaticBarrier(NormalMethod method, int biStart, MethodReference methodRef, Assembler asm) {
+    if (Octet.shouldInstrumentMethod(method) && DrRuntime.isArraycopy(methodRef)) {
+      // params: copies of the five arguments (src is deepest)
+      for (int i = 0; i < 5; i++) {
+        asm.emitPUSH_RegDisp(SP, Offset.fromIntZeroExtend(4 * WORDSIZE));
+      }
+      BaselineCompilerImpl.genParameterRegisterLoad(asm, 5);
+      asm.emitCALL_Abs(Magic.getTocPointer().plus(Entrypoints.drArraycopyRangeMethod.getOffset()));
+      return true;
+    }
+    return false;
+  }
+
   // FIB: optional post-barriers.
   @Override
   boolean insertStaticPostBarrierResolved(NormalMethod method, int biStart, boolean isRead, RVMField field, Assembler asm) {
@@ -109,12 +109,8 @@ public class PlainFastTrackOptInstr extends OctetOptInstr {
 
           barrierCall.position = inst.position;
           barrierCall.bcIndex = inst.bcIndex;
-          // Octet: LATER: try this
-          /*
-          if (!Octet.getClientAnalysis().barriersCanThrowExceptions()) {
-            barrierCall.markAsNonPEI();
-          }
-           */
+          // Left a PEI: throws DataRaceException with Dr.RACE_EXCEPTIONS (see
+          // FastTrackAnalysis.barriersCanThrowExceptions()).
           finishParams(inst, fieldRef, barrierCall);
           insertBarrier(barrierCall, inst, isRead, ref, field, isResolved, callsToInline, ir, true);
     }
@@ -210,12 +206,8 @@ public class PlainFastTrackOptInstr extends OctetOptInstr {
 
       barrierCall.position = inst.position;
       barrierCall.bcIndex = inst.bcIndex;
-      // Octet: LATER: try this
-      /*
-      if (!Octet.getClientAnalysis().barriersCanThrowExceptions()) {
-        barrierCall.markAsNonPEI();
-      }
-       */
+      // Left a PEI: throws DataRaceException with Dr.RACE_EXCEPTIONS (see
+      // FastTrackAnalysis.barriersCanThrowExceptions()).
       finishParams(inst, fieldRef, barrierCall);
       insertBarrier(barrierCall, inst, isRead, null, field, isResolved, callsToInline, ir);
     }
@@ -99,6 +99,9 @@ import org.jikesrvm.compilers.opt.ir.operand.RegisterOperand;
 import org.jikesrvm.compilers.opt.ir.operand.TrapCodeOperand;
 import org.jikesrvm.compilers.opt.ir.operand.TrueGuardOperand;
 import org.jikesrvm.compilers.opt.ir.operand.TypeOperand;
+import org.jikesrvm.dr.Dr;
+import org.jikesrvm.dr.DrRuntime;
+import org.jikesrvm.octet.Octet;
 import org.jikesrvm.osr.OSRConstants;
 import org.jikesrvm.osr.ObjectHolder;
 import org.jikesrvm.osr.bytecodes.InvokeStatic;
@@ -2003,6 +2006,25 @@ public final class BC2IR
           if (s == null)
             break;
 
+          // FIB: bulk barrier for System.arraycopy, before the call (or its inlined body).
+          if (Dr.CHECKS && Call.conforms(s) && DrRuntime.isArraycopy(ref) && Octet.shouldInstrumentMethod(gc.method)) {
+            RVMMethod barrier = Entrypoints.drArraycopyRangeMethod;
+            Instruction barrierCall = Call.create(CALL, null,
+                new AddressConstantOperand(barrier.getOffset()), MethodOperand.STATIC(barrier), null, 5);
+            for (int i = 0; i < 5; i++) {
+              Call.setParam(barrierCall, i, Call.getParam(s, i).copy());
+            }
+            barrierCall.position = gc.inlineSequence;
+            barrierCall.bcIndex = instrIndex;
+            if (Dr.RACE_EXCEPTIONS) {
+              // Throws DataRaceException at a race.
+              rectifyStateWithExceptionHandlers();
+            } else {
+              barrierCall.markAsNonPEI();
+            }
+            appendInstruction(barrierCall);
+          }
+
           if (Call.conforms(s)) {
             MethodOperand methOp = Call.getMethod(s);
             if (methOp.getTarget() == target) {
@@ -2662,6 +2684,13 @@ public final class BC2IR
 
       if (s != null && !currentBBLE.isSelfRegen()) {
         appendInstruction(s);
+        // FIB: take back this method's sampling decision after a call.
+        if (Dr.SAMPLING && Call.conforms(s)) {
+          Instruction resume = GenerationContext.samplingCall(Entrypoints.drSampleResumeMethod, gc.method);
+          if (resume != null) {
+            appendInstruction(resume);
+          }
+        }
       }
 
       // check runoff
@@ -4707,6 +4736,14 @@ public final class BC2IR
       }
     }
     if (inlinedContext.epilogue != null) {
+      // FIB: take back this method's sampling decision after the inlined
+      // callee (or the calls guarded inlining falls back to).
+      Instruction resume = GenerationContext.samplingCall(Entrypoints.drSampleResumeMethod, gc.method);
+      if (resume != null) {
+        inlinedContext.epilogue.appendInstruction(resume);
+        resume.position = gc.inlineSequence;
+        resume.bcIndex = instrIndex;
+      }
       // Wrap a synthetic BBLE around GenerationContext.epilogue and
       // pass it as from to getOrCreateBlock.
       // This causes any compensation code inserted by getOrCreateBlock
@@ -53,6 +53,7 @@ import org.jikesrvm.compilers.opt.ir.Register;
 import org.jikesrvm.compilers.opt.ir.Return;
 import org.jikesrvm.compilers.opt.ir.operand.AddressConstantOperand;
 import org.jikesrvm.compilers.opt.ir.operand.BranchProfileOperand;
+import org.jikesrvm.compilers.opt.ir.operand.IntConstantOperand;
 import org.jikesrvm.compilers.opt.ir.operand.ClassConstantOperand;
 import org.jikesrvm.compilers.opt.ir.operand.MethodOperand;
 import org.jikesrvm.compilers.opt.ir.operand.Operand;
@@ -60,6 +61,8 @@ import org.jikesrvm.compilers.opt.ir.operand.RegisterOperand;
 import org.jikesrvm.compilers.opt.ir.operand.TrueGuardOperand;
 import org.jikesrvm.compilers.opt.ir.operand.TypeOperand;
 import org.jikesrvm.dr.Dr;
+import org.jikesrvm.dr.Sampling;
+import org.jikesrvm.octet.Octet;
 import org.jikesrvm.runtime.Entrypoints;
 import org.jikesrvm.runtime.Statics;
 import org.vmmagic.unboxed.Offset;
@@ -686,6 +689,28 @@ public final class GenerationContext implements org.jikesrvm.compilers.opt.drive
       Instruction s = MonitorOp.create(MONITORENTER, lockObject, new TrueGuardOperand());
       appendInstruction(prologue, s, SYNCHRONIZED_MONITORENTER_BCI);
     }
+
+    // FIB: count this invocation toward the method's sampling burst.
+    Instruction s = samplingCall(Entrypoints.drSampleEnterMethod, method);
+    if (s != null) {
+      appendInstruction(prologue, s, PROLOGUE_BCI);
+    }
+  }
+
+  /**
+   * FIB: a call to Sampling.enter or Sampling.resume with method's sampling
+   * slot.
+   * @return the call, or null if race checks in method are not sampled
+   */
+  static Instruction samplingCall(RVMMethod target, RVMMethod method) {
+    if (!Dr.SAMPLING || !Octet.shouldInstrumentMethod(method)) return null;
+    Instruction s = Call.create1(CALL,
+                                 null,
+                                 new AddressConstantOperand(target.getOffset()),
+                                 MethodOperand.STATIC(target),
+                                 new IntConstantOperand(Sampling.slot(method)));
+    s.markAsNonPEI();
+    return s;
   }
 
   /**
@@ -177,6 +177,27 @@ public abstract class Base extends org.jikesrvm.config.BaseConfig {
   public boolean fibBuffer() {
     return false;
   }
+
+  /**
+   * Should requesters log EXCL -> EXCL ownership requests and proceed,
+   * leaving the owner to check them (and report races) when it next responds?
+   * @return
+   */
+  @Pure
+  public boolean fibAsyncRequests() {
+    return false;
+  }
+
+  /**
+   * Should threads entering native code or JNI leave their request queues
+   * open, so that a requester that finds them in native publishes BLOCKED
+   * for them, instead of blocking their queues eagerly?
+   * @return
+   */
+  @Pure
+  public boolean fibLazyBlocking() {
+    return false;
+  }
   
   @Pure
   public int fibThresholdBits() {
@@ -217,11 +238,135 @@ public abstract class Base extends org.jikesrvm.config.BaseConfig {
   public boolean fibAdaptiveCas() {
     return false;
   }
+
+  /**
+   * With fibAdaptiveCas(), learn per field which histories are contended,
+   * lowering the CAS threshold of contended fields and eventually starting
+   * their new histories in CAS mode?
+   * @return
+   */
+  @Pure
+  public boolean fibSiteAdaptiveCas() {
+    return false;
+  }
+
+  /**
+   * Number of a field's histories that must switch to CAS mode before its
+   * new histories start in CAS mode.
+   * @return
+   */
+  @Pure
+  public int fibSiteCasAfter() {
+    return 4;
+  }
   
+  /**
+   * Support freezing racing locations, at the cost of one branch on frozen
+   * epochs in each check?  What happens at a race is chosen at run time by
+   * -X:vm:drRaceBehavior:
+   *   halt      - report the race and exit the VM.
+   *   exception - freeze the location and throw DataRaceException in the
+   *               racing thread.  Requires drRaceExceptions().
+   *   denial    - continue as if there were no race: do not freeze, and
+   *               record the racing access in the history where the
+   *               protocol allows (not in FIB's CAS mode).
+   *   skipAcc   - continue without freezing or recording the racing
+   *               access, leaving the history as before it.
+   *   patch     - alias for skipAcc.
+   *   skipAll   - freeze racing locations and stop reporting races.
+   *               Requires drRaceSkipAll().
+   *   skipLoc   - freeze the location and continue (default).
+   * The Orig* and NaiveSpinLock checkers never record a racing access.
+   * Without this, no location is ever frozen.
+   * @return
+   */
   @Pure
   public boolean drFirstRacePerLocation() {
     return true;
   }
+
+  /**
+   * Support -X:vm:drRaceBehavior=exception, at the cost of a load and
+   * branch on a per-thread pending race after each checked access?
+   * @return
+   */
+  @Pure
+  public boolean drRaceExceptions() {
+    return false;
+  }
+
+  /**
+   * Support -X:vm:drRaceBehavior=skipAll, at the cost of a load and branch
+   * on a global flag before each access?  (drToggleChecks() supports it
+   * through its own flag.)
+   * @return
+   */
+  @Pure
+  public boolean drRaceSkipAll() {
+    return false;
+  }
+
+  /**
+   * Record the application sites of each race, deduplicated by site pair,
+   * and write them to drRaceReportFile() at exit?
+   * @return
+   */
+  @Pure
+  public boolean drRaceReports() {
+    return false;
+  }
+
+  /**
+   * Check reads and writes only in sampled bursts of each method's
+   * invocations, with rates that decay for hot methods (see dr.Sampling)?  Synchronization is
+   * always tracked.  Tuned by -X:vm:drSampleBurst, drSampleDecay, and
+   * drSampleMaxPeriod.
+   * @return
+   */
+  @Pure
+  public boolean drSampling() {
+    return false;
+  }
+
+  /**
+   * Guard reads and writes with a global flag so that race checking can be
+   * turned on and off at run time (see dr.DrControl)?
+   * @return
+   */
+  @Pure
+  public boolean drToggleChecks() {
+    return false;
+  }
+
+  /**
+   * Skip reads and writes that the current thread already checked in its
+   * current epoch, using a small per-thread filter (see dr.CheckFilter)?
+   * @return
+   */
+  @Pure
+  public boolean drCheckFilter() {
+    return false;
+  }
+
+  /**
+   * File for drRaceReports().
+   * @return
+   */
+  @Pure
+  public String drRaceReportFile() {
+    return "races.txt";
+  }
+
+  /**
+   * With drRaceReports(), record the site of one in this many checked
+   * accesses per thread (if it changes the location's history) as a prior
+   * site for later races.
+   * @return
+   */
+  @Pure
+  public int drRaceReportSamplePeriod() {
+    return 64;
+  }
   
   @Pure
   public boolean drCasFineGrained() {
@@ -229,28 +374,69 @@ public abstract class Base extends org.jikesrvm.config.BaseConfig {
   }
   
   /**
-   * What should be done when a race is detected?
-  public static enum RaceBehavior {
-    HALT,       // Exit the JVM.
-    EXCEPTION,  // Throw an exception in the detecting thread.
-    DENIAL,     // Continue (including metadata updates) as if there was no race.
-                // Breaks accuracy, likely to break FIB protocol, cause deadlocks,
-                // crashes, etc.
-    PATCH,      // Try to patch up FIB protocol to avoid deadlocks, crashes.
-                // Breaks accuracy.
-    SKIP_ALL,   // Disable all race detection for rest of execution.
-                // Breaks accuracy.
-    SKIP_LOC,   // Disable race detection for this location for rest of execution.
-                // Breaks accuracy.
-    SKIP_ACC,   // Do not record this access.
-                // Breaks accuracy, may break FIB protocol.
+   * Rebase epoch clocks during full-heap GC when they approach overflow?
+   * (FibRenormalizeArray, FibWideArray)
+   */
+  @Pure
+  public boolean drRenormalizeClocks() {
+    return false;
+  }
+  
+  /**
+   * Keep only the last releaser's epoch for locks until a second thread
+   * acquires them?  (FibLazyLockArray)
+   */
+  @Pure
+  public boolean drLazyLockVCs() {
+    return false;
+  }
+  
+  /**
+   * Treat sun.misc.Unsafe volatile/ordered puts, volatile gets, CASes, and
+   * park/unpark as releases and acquires, using the field's VC for a
+   * volatile field and otherwise VCs kept in a side table by address (see
+   * dr.metadata.UnsafeVCs)?  (FibUnsafeSyncArray)
+   */
+  @Pure
+  public boolean drUnsafeSync() {
+    return false;
+  }
+  
+  /**
+   * Collapse read maps back to single epochs during full-heap GC when
+   * that loses no ordering information?  (FibDeflateArray)
+   */
+  @Pure
+  public boolean drDeflateMapsAtGC() {
+    return false;
   }
   
+  /**
+   * Shadow long arrays with a spine of lazily allocated history chunks
+   * instead of one history per element up front?
+   */
+  @Pure
+  public boolean drChunkedArrayShadows() {
+    return false;
+  }
+  
+  /**
+   * Log2 of the number of array elements covered by one shadow chunk.
+   */
   @Pure
-  public RaceBehavior raceBehavior() {
-    return RaceBehavior.DENIAL;
+  public int drLogArrayShadowChunkElements() {
+    return 12;
   }
-  */
+  
+  /**
+   * Share one history among all elements of an array shadow chunk until a
+   * second thread or epoch accesses it?  (Requires drChunkedArrayShadows.)
+   */
+  @Pure
+  public boolean drCoarseArrayChunks() {
+    return false;
+  }
+  
   
   
   /** Insert read and write barriers? */
@@ -0,0 +1,17 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibArray with asynchronous ownership requests: requesters log their
+ * access and proceed, and owners check logged accesses when they respond.
+ */
+public class FibAsyncArray extends FibArray {
+
+  @Override
+  @Pure
+  public boolean fibAsyncRequests() {
+    return true;
+  }
+
+}
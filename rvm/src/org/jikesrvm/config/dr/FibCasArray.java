@@ -10,12 +10,6 @@ public class FibCasArray extends FibArray {
     return true;
   }
   
-  @Override
-  @Pure
-  public int drExtraWordsInHistory() {
-    return 2; // layout currently does not support non-powers of 2 total sizes... 1;
-  }
-  
   @Override
   @Pure
   public int epochTagBits() {
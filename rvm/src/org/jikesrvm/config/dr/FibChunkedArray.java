@@ -0,0 +1,17 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibArray with array shadows allocated chunk by chunk as elements are
+ * first accessed.
+ */
+public class FibChunkedArray extends FibArray {
+
+  @Override
+  @Pure
+  public boolean drChunkedArrayShadows() {
+    return true;
+  }
+
+}
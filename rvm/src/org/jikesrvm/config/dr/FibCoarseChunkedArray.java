@@ -0,0 +1,17 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibChunkedArray with each chunk sharing one history among its elements
+ * until a second thread or epoch accesses it.
+ */
+public class FibCoarseChunkedArray extends FibChunkedArray {
+
+  @Override
+  @Pure
+  public boolean drCoarseArrayChunks() {
+    return true;
+  }
+
+}
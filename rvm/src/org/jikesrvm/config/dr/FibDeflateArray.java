@@ -0,0 +1,17 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibArray that collapses read maps back to single epochs during
+ * full-heap GC when that loses no ordering information.
+ */
+public class FibDeflateArray extends FibArray {
+
+  @Override
+  @Pure
+  public boolean drDeflateMapsAtGC() {
+    return true;
+  }
+
+}
@@ -0,0 +1,24 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibArray that can throw DataRaceException in racing threads
+ * (-X:vm:drRaceBehavior=exception) and tracks sun.misc.Unsafe
+ * synchronization, as the tests in testing/tests/dr expect.
+ */
+public class FibExceptionArray extends FibArray {
+
+  @Override
+  @Pure
+  public boolean drRaceExceptions() {
+    return true;
+  }
+
+  @Override
+  @Pure
+  public boolean drUnsafeSync() {
+    return true;
+  }
+
+}
@@ -0,0 +1,23 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibArrayHeavy that can throw DataRaceException in racing threads and
+ * tracks sun.misc.Unsafe synchronization, for testing/tests/dr.
+ */
+public class FibExceptionArrayHeavy extends FibArrayHeavy {
+
+  @Override
+  @Pure
+  public boolean drRaceExceptions() {
+    return true;
+  }
+
+  @Override
+  @Pure
+  public boolean drUnsafeSync() {
+    return true;
+  }
+
+}
@@ -0,0 +1,23 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibLazyBlockArray that can throw DataRaceException in racing threads
+ * and tracks sun.misc.Unsafe synchronization, for testing/tests/dr.
+ */
+public class FibExceptionLazyBlockArray extends FibLazyBlockArray {
+
+  @Override
+  @Pure
+  public boolean drRaceExceptions() {
+    return true;
+  }
+
+  @Override
+  @Pure
+  public boolean drUnsafeSync() {
+    return true;
+  }
+
+}
@@ -0,0 +1,26 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+import org.vmmagic.pragma.Uninterruptible;
+
+/**
+ * FibWideArray that can throw DataRaceException in racing threads and
+ * tracks sun.misc.Unsafe synchronization, for testing/tests/dr.  Its
+ * 21-bit clocks let TestRenormalization reach clock renormalization.
+ */
+@Uninterruptible
+public class FibExceptionWideArray extends FibWideArray {
+
+  @Override
+  @Pure
+  public boolean drRaceExceptions() {
+    return true;
+  }
+
+  @Override
+  @Pure
+  public boolean drUnsafeSync() {
+    return true;
+  }
+
+}
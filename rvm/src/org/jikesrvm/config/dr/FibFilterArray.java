@@ -0,0 +1,16 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibArray that skips accesses already checked in the current epoch.
+ */
+public class FibFilterArray extends FibArray {
+
+  @Override
+  @Pure
+  public boolean drCheckFilter() {
+    return true;
+  }
+
+}
@@ -0,0 +1,16 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibArray that blocks request queues lazily in native code and JNI.
+ */
+public class FibLazyBlockArray extends FibArray {
+
+  @Override
+  @Pure
+  public boolean fibLazyBlocking() {
+    return true;
+  }
+
+}
@@ -0,0 +1,17 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibArray that keeps only the last releaser's epoch for a lock until a
+ * second thread acquires it, instead of a full vector clock.
+ */
+public class FibLazyLockArray extends FibArray {
+
+  @Override
+  @Pure
+  public boolean drLazyLockVCs() {
+    return true;
+  }
+
+}
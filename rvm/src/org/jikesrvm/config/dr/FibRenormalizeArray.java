@@ -0,0 +1,17 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibArray that rebases epoch clocks during full-heap GC when they
+ * approach overflow.
+ */
+public class FibRenormalizeArray extends FibArray {
+
+  @Override
+  @Pure
+  public boolean drRenormalizeClocks() {
+    return true;
+  }
+
+}
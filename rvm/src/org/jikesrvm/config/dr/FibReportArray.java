@@ -0,0 +1,17 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibArray that records the sites of each race and writes a report of
+ * distinct site pairs at exit.
+ */
+public class FibReportArray extends FibArray {
+
+  @Override
+  @Pure
+  public boolean drRaceReports() {
+    return true;
+  }
+
+}
@@ -0,0 +1,16 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibArray that checks only sampled bursts of accesses.
+ */
+public class FibSampledArray extends FibArray {
+
+  @Override
+  @Pure
+  public boolean drSampling() {
+    return true;
+  }
+
+}
@@ -0,0 +1,16 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibCasArray with CAS thresholds learned per field.
+ */
+public class FibSiteCasArray extends FibCasArray {
+
+  @Override
+  @Pure
+  public boolean fibSiteAdaptiveCas() {
+    return true;
+  }
+
+}
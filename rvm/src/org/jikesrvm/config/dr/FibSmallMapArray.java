@@ -0,0 +1,19 @@
+package org.jikesrvm.config.dr;
+
+import org.jikesrvm.dr.metadata.maps.EpochMapper;
+import org.jikesrvm.dr.metadata.maps.SmallEpochMapper;
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibArray with compact read maps that only grow to a full array of
+ * epochs past a few readers.
+ */
+public class FibSmallMapArray extends FibArray {
+
+  @Override
+  @Pure
+  public EpochMapper newEpochMapper() {
+    return new SmallEpochMapper();
+  }
+
+}
@@ -0,0 +1,16 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibArray with race checking that can be turned on and off at run time.
+ */
+public class FibToggleArray extends FibArray {
+
+  @Override
+  @Pure
+  public boolean drToggleChecks() {
+    return true;
+  }
+
+}
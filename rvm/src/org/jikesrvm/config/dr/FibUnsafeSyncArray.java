@@ -0,0 +1,17 @@
+package org.jikesrvm.config.dr;
+
+import org.vmmagic.pragma.Pure;
+
+/**
+ * FibArray that treats sun.misc.Unsafe volatile accesses, CASes, and
+ * park/unpark as synchronization, as java.util.concurrent needs.
+ */
+public class FibUnsafeSyncArray extends FibArray {
+
+  @Override
+  @Pure
+  public boolean drUnsafeSync() {
+    return true;
+  }
+
+}
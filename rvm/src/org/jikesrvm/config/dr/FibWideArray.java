@@ -0,0 +1,30 @@
+package org.jikesrvm.config.dr;
+
+import org.jikesrvm.scheduler.RVMThread;
+import org.vmmagic.pragma.Pure;
+import org.vmmagic.pragma.Uninterruptible;
+
+/**
+ * FibArray with enough tid bits for every thread the RVM supports.
+ * FibComm switches to two-level request sets past BITS_IN_WORD threads.
+ *
+ * With 10 tid bits and 1 tag bit, a 32-bit epoch keeps 21 clock bits, so
+ * each tid has about 2 million epochs (Epoch.MAX_CLOCK) instead of 64
+ * million.  Clock renormalization requests a full-heap GC when a clock
+ * reaches half of that.
+ */
+@Uninterruptible
+public class FibWideArray extends FibArray {
+
+  @Override
+  @Pure
+  public int epochTidBits() {
+    return RVMThread.LOG_MAX_THREADS;
+  }
+
+  @Override
+  @Pure
+  public boolean drRenormalizeClocks() {
+    return true;
+  }
+}
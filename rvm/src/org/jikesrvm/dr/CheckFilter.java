@@ -0,0 +1,99 @@
+package org.jikesrvm.dr;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.scheduler.RVMThread;
+import org.mmtk.utility.statistics.Stats;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.NoInline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Word;
+import org.vmmagic.unboxed.WordArray;
+
+/**
+ * Per-thread filter of accesses already checked in the current epoch.
+ *
+ * A repeated read or write in the same epoch takes the same-epoch fast path
+ * of the check (unless another thread's access raced with it in between,
+ * and that access reports the race), so the filter lets it skip the check,
+ * including the history (and array shadow) loads.  The filter is a
+ * direct-mapped table of SLOTS slots, each holding a read entry and a write
+ * entry of (key, epoch).  A key is the history address for fields and statics, or
+ * the array address plus the index for array elements; both lie inside the
+ * accessed object, so keys of different locations differ.
+ *
+ * A read hits a read or write entry and a write hits only a write entry,
+ * since a write after a read in the same epoch must still update the write
+ * word.  Entries are tagged with the epoch they were checked in, so every
+ * epoch change flushes the filter implicitly.  Any GC may move objects and
+ * reuse their addresses, so the first lookup after a GC clears the table.
+ */
+@Uninterruptible
+public final class CheckFilter {
+
+  private static final int LOG_SLOTS = 8;
+  private static final int SLOTS = 1 << LOG_SLOTS;
+  /** Words per slot: read key, read epoch, write key, write epoch. */
+  private static final int LOG_WORDS_IN_SLOT = 2;
+  private static final int WRITE = 2;
+
+  /**
+   * Create a thread's filter table.
+   */
+  public static WordArray create() {
+    return WordArray.create(SLOTS << LOG_WORDS_IN_SLOT);
+  }
+
+  @Inline
+  private static int slot(final Address key) {
+    return ((key.toWord().rshl(2).toInt() * 0x9E3779B1) >>> (32 - LOG_SLOTS)) << LOG_WORDS_IN_SLOT;
+  }
+
+  /**
+   * Has the current thread already checked an access of this kind to key in
+   * its current epoch?  If not, record that it is about to.
+   * @param key
+   * @param isWrite
+   * @return true if the check may be skipped.
+   */
+  @Inline
+  public static boolean checked(final Address key, final boolean isWrite) {
+    final RVMThread t = RVMThread.getCurrentThread();
+    final WordArray filter = t.drCheckFilter;
+    if (VM.VerifyAssertions) VM._assert(filter != null);
+    if (t.drCheckFilterGc != Stats.gcCount()) flush(t);
+    final Word epoch = t.getDrEpoch();
+    final int s = slot(key);
+    final int i = isWrite ? s + WRITE : s;
+    if (filter.get(i).EQ(key.toWord()) && filter.get(i + 1).EQ(epoch)) {
+      if (Dr.STATS) DrStats.checkFilterHit.inc();
+      return true;
+    }
+    if (!isWrite && filter.get(s + WRITE).EQ(key.toWord()) && filter.get(s + WRITE + 1).EQ(epoch)) {
+      if (Dr.STATS) DrStats.checkFilterHit.inc();
+      return true;
+    }
+    filter.set(s, key.toWord());
+    filter.set(s + 1, epoch);
+    if (isWrite) {
+      filter.set(s + WRITE, key.toWord());
+      filter.set(s + WRITE + 1, epoch);
+    }
+    if (Dr.STATS) DrStats.checkFilterMiss.inc();
+    return false;
+  }
+
+  /**
+   * Clear t's filter after a GC.
+   * @param t
+   */
+  @NoInline
+  private static void flush(final RVMThread t) {
+    final WordArray filter = t.drCheckFilter;
+    for (int i = 0; i < filter.length(); i++) {
+      filter.set(i, Word.zero());
+    }
+    t.drCheckFilterGc = Stats.gcCount();
+    if (Dr.STATS) DrStats.checkFilterFlushes.inc();
+  }
+}
@@ -0,0 +1,13 @@
+package org.jikesrvm.dr;
+
+/**
+ * Thrown in a racing thread under -X:vm:drRaceBehavior=exception.
+ */
+public class DataRaceException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public DataRaceException(boolean isWrite) {
+    super(isWrite ? "Data race on write" : "Data race on read");
+  }
+}
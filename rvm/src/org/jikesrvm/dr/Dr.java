@@ -1,6 +1,7 @@
 package org.jikesrvm.dr;
 
 import org.jikesrvm.config.dr.Base;
+import org.jikesrvm.dr.fasttrack.CASFastTrack;
 import org.jikesrvm.dr.fasttrack.FastTrack;
 import org.jikesrvm.dr.metadata.maps.EpochMapper;
 import org.jikesrvm.octet.Octet;
@@ -23,6 +24,12 @@ public final class Dr {
     return config;
   }
 
+  /**
+   * Assumed cache line size, for padding per-thread metadata that other
+   * threads access.
+   */
+  public static final int BYTES_IN_CACHE_LINE = 64;
+
   /**
    * Choose a race checker.
    */
@@ -64,10 +71,19 @@ public final class Dr {
    * Do lock sync instrumentation?
    */
   public static final boolean LOCKS = SYNC;
+  /**
+   * Store only the releaser's epoch in a lock's header until another thread
+   * acquires it?
+   */
+  public static final boolean LAZY_LOCK_VCS = LOCKS && config.drLazyLockVCs();
   /**
    * Do volatile sync instrumentation?
    */
   public static final boolean VOLATILES = SYNC;
+  /**
+   * Do sun.misc.Unsafe sync instrumentation?
+   */
+  public static final boolean UNSAFE_SYNC = SYNC && config.drUnsafeSync();
   /**
    * Do race checks?
    */
@@ -96,6 +112,17 @@ public final class Dr {
   public static final boolean SCAN_STATICS = SCAN;
   
   public static final boolean ARRAY_SHADOWS = CHECKS;
+  /**
+   * Shadow long arrays with lazily allocated chunks of histories?
+   */
+  public static final boolean CHUNKED_ARRAY_SHADOWS = ARRAY_SHADOWS && config.drChunkedArrayShadows();
+  public static final int LOG_ARRAY_CHUNK_ELEMENTS = config.drLogArrayShadowChunkElements();
+  public static final int ARRAY_CHUNK_ELEMENTS = 1 << LOG_ARRAY_CHUNK_ELEMENTS;
+  /**
+   * Start each array shadow chunk as a single history for all its elements,
+   * splitting it when a second thread or epoch accesses it?
+   */
+  public static final boolean COARSE_ARRAY_CHUNKS = CHUNKED_ARRAY_SHADOWS && config.drCoarseArrayChunks();
   
   /**
    * Hooks for blocking and yielding?
@@ -106,6 +133,31 @@ public final class Dr {
    * Use buffering?
    */
   public static final boolean BUFFER = COMMUNICATION && config.fibBuffer();
+
+  /**
+   * Switch contended histories from FIB to CAS mode?
+   */
+  public static final boolean ADAPTIVE_CAS = ON && config.fibAdaptiveCas();
+
+  /**
+   * Learn per site which histories should use CAS mode instead of FIB?
+   */
+  public static final boolean SITE_ADAPTIVE_CAS = ADAPTIVE_CAS && config.fibSiteAdaptiveCas();
+
+  /**
+   * Log ownership requests and proceed, deferring their race checks to the owner?
+   */
+  public static final boolean ASYNC_REQUESTS = COMMUNICATION && config.fibAsyncRequests();
+
+  /**
+   * Block request queues lazily in native code and JNI?
+   */
+  public static final boolean LAZY_BLOCKING = COMMUNICATION && config.fibLazyBlocking();
+  
+  /**
+   * Rebase clocks at full-heap GC before they overflow?
+   */
+  public static final boolean RENORMALIZE = SYNC && config.drRenormalizeClocks();
   
   /**
    * Collect extra stats?
@@ -116,4 +168,41 @@ public final class Dr {
    * Display race reports?
    */
   public static final boolean REPORTS = false;
+
+  /**
+   * Check only sampled bursts of accesses?
+   */
+  public static final boolean SAMPLING = CHECKS && config.drSampling();
+
+  /**
+   * Allow race checking to be turned on and off at run time?
+   */
+  public static final boolean TOGGLE = CHECKS && config.drToggleChecks();
+  /**
+   * Skip checks of accesses already checked in the current epoch?
+   */
+  public static final boolean CHECK_FILTER = CHECKS && config.drCheckFilter();
+
+  /**
+   * Record race site pairs and write a report file at exit?
+   */
+  public static final boolean RACE_REPORTS = CHECKS && config.drRaceReports();
+
+  /**
+   * Support throwing DataRaceException in racing threads?
+   */
+  public static final boolean RACE_EXCEPTIONS = CHECKS && config.drRaceExceptions();
+
+  /**
+   * Support turning checking off for good at the first race (without
+   * TOGGLE)?
+   */
+  public static final boolean RACE_SKIP_ALL = CHECKS && config.drRaceSkipAll();
+
+  /**
+   * Does a CASFastTrack checker reserve reader map entries while it writes
+   * (drCasFineGrained)?
+   */
+  public static final boolean CAS_FINE_GRAINED = CHECKS && config.drCasFineGrained()
+      && (fasttrack instanceof CASFastTrack || staticFasttrack instanceof CASFastTrack);
 }
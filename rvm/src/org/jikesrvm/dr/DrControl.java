@@ -0,0 +1,51 @@
+package org.jikesrvm.dr;
+
+import org.jikesrvm.VM;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+
+/**
+ * Turn race checking on and off in a running VM (Dr.TOGGLE).
+ *
+ * Checking starts as -X:vm:drChecks says, and the read and write
+ * entrypoints of DrRuntime return early while it is off.  Synchronization
+ * (locks, volatiles, threads, class initialization) is always tracked, so
+ * vector clocks stay exact and a window of checking reports only real
+ * races.  Accesses made while checking was off are missing from histories,
+ * so races with them are missed.
+ *
+ * Checking can be toggled by the application through setChecking, or with
+ * the VM's debug signal (SIGQUIT) under -X:vm:drToggleOnDebugSignal=true.
+ */
+@Uninterruptible
+public final class DrControl {
+
+  /**
+   * Is race checking on?
+   */
+  @Inline
+  public static boolean isChecking() {
+    return VM.drChecks;
+  }
+
+  /**
+   * Turn race checking on or off.  Takes effect in each thread at its next
+   * access.
+   * @param on
+   */
+  public static void setChecking(boolean on) {
+    if (VM.VerifyAssertions) VM._assert(Dr.TOGGLE);
+    if (VM.drChecks != on) {
+      VM.drChecks = on;
+      if (Dr.STATS) DrStats.checkToggles.inc();
+    }
+  }
+
+  /**
+   * Toggle race checking in response to the debug signal.
+   */
+  public static void debugSignal() {
+    setChecking(!VM.drChecks);
+    VM.sysWriteln(VM.drChecks ? "=== Race checking on ===" : "=== Race checking off ===");
+  }
+}
@@ -1,16 +1,23 @@
 package org.jikesrvm.dr;
 
 import org.jikesrvm.VM;
+import org.jikesrvm.classloader.Atom;
 import org.jikesrvm.classloader.FieldReference;
+import org.jikesrvm.classloader.MethodReference;
 import org.jikesrvm.classloader.RVMClass;
 import org.jikesrvm.classloader.RVMField;
 import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.classloader.TypeReference;
 import org.jikesrvm.config.dr.Base.InlineLevel;
+import org.jikesrvm.dr.fasttrack.FastTrack;
 import org.jikesrvm.dr.fib.FibComm;
+import org.jikesrvm.dr.fib.ThresholdTable;
 import org.jikesrvm.dr.instrument.FieldTreatment;
 import org.jikesrvm.dr.metadata.AccessHistory;
 import org.jikesrvm.dr.metadata.Epoch;
 import org.jikesrvm.dr.metadata.ObjectShadow;
+import org.jikesrvm.dr.metadata.Renormalization;
+import org.jikesrvm.dr.metadata.UnsafeVCs;
 import org.jikesrvm.dr.metadata.VC;
 import org.jikesrvm.mm.mminterface.Barriers;
 import org.jikesrvm.mm.mminterface.MemoryManager;
@@ -19,6 +26,7 @@ import org.jikesrvm.runtime.Magic;
 import org.jikesrvm.scheduler.RVMThread;
 import org.jikesrvm.scheduler.ThinLock;
 import org.mmtk.plan.MutatorContext;
+import org.mmtk.plan.TraceLocal;
 import org.vmmagic.pragma.Entrypoint;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Interruptible;
@@ -26,6 +34,7 @@ import org.vmmagic.pragma.NoInline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.pragma.UninterruptibleNoWarn;
 import org.vmmagic.pragma.Unpreemptible;
+import org.vmmagic.unboxed.Address;
 import org.vmmagic.unboxed.ObjectReference;
 import org.vmmagic.unboxed.Offset;
 import org.vmmagic.unboxed.Word;
@@ -56,6 +65,28 @@ public final class DrRuntime {
   private static final boolean ARRAY = true;
   
   // Access events
+
+  /**
+   * Should this read or write be checked?  False while checking is toggled
+   * off, after the first race under -X:vm:drRaceBehavior=skipAll, or outside
+   * a sampled burst.  Synchronization is always tracked.  Constant true
+   * unless Dr.TOGGLE, Dr.RACE_SKIP_ALL, or Dr.SAMPLING.
+   */
+  @Inline
+  private static boolean checking() {
+    return (Dr.TOGGLE ? DrControl.isChecking() : !FastTrack.skippingAll())
+        && (!Dr.SAMPLING || Sampling.sample());
+  }
+  
+  /**
+   * Has the current thread already checked this access in its current epoch?
+   * @param key history address, or array address plus index
+   * @param isWrite
+   */
+  @Inline
+  private static boolean filtered(final Address key, final boolean isWrite) {
+    return Dr.CHECK_FILTER && CheckFilter.checked(key, isWrite);
+  }
   
   /**
    * Analyze a read with access history at object+historyOffset.
@@ -66,6 +97,17 @@ public final class DrRuntime {
   @Inline
   @Unpreemptible
   private static void read(Object object, Offset historyOffset) {
+    if (Dr.RACE_REPORTS && RaceReports.sampleAccess()) {
+      final Word before = RaceReports.state(object, historyOffset);
+      readNoReport(object, historyOffset);
+      RaceReports.accessed(object, historyOffset, before);
+    } else {
+      readNoReport(object, historyOffset);
+    }
+  }
+  @Inline
+  @Unpreemptible
+  private static void readNoReport(Object object, Offset historyOffset) {
     if (Dr.config().drInlineRaceChecks() == InlineLevel.THICK) {
       Dr.fasttrack().read(object, historyOffset);
     } else if (Dr.config().drInlineRaceChecks() == InlineLevel.THIN) {
@@ -77,6 +119,17 @@ public final class DrRuntime {
   @Inline
   @Unpreemptible
   private static void readStatic(Offset historyOffset) {
+    if (Dr.RACE_REPORTS && RaceReports.sampleAccess()) {
+      final Word before = RaceReports.state(null, historyOffset);
+      readStaticNoReport(historyOffset);
+      RaceReports.accessed(null, historyOffset, before);
+    } else {
+      readStaticNoReport(historyOffset);
+    }
+  }
+  @Inline
+  @Unpreemptible
+  private static void readStaticNoReport(Offset historyOffset) {
     if (Dr.config().drInlineRaceChecks() == InlineLevel.THICK) {
       Dr.fasttrackStatic().read(null, historyOffset);
     } else if (Dr.config().drInlineRaceChecks() == InlineLevel.THIN) {
@@ -95,6 +148,17 @@ public final class DrRuntime {
   @Inline
   @Unpreemptible
   private static void write(Object object, Offset historyOffset) {
+    if (Dr.RACE_REPORTS && RaceReports.sampleAccess()) {
+      final Word before = RaceReports.state(object, historyOffset);
+      writeNoReport(object, historyOffset);
+      RaceReports.accessed(object, historyOffset, before);
+    } else {
+      writeNoReport(object, historyOffset);
+    }
+  }
+  @Inline
+  @Unpreemptible
+  private static void writeNoReport(Object object, Offset historyOffset) {
     if (Dr.config().drInlineRaceChecks() == InlineLevel.THICK) {
       Dr.fasttrack().write(object, historyOffset);
     } else if (Dr.config().drInlineRaceChecks() == InlineLevel.THIN) {
@@ -106,6 +170,17 @@ public final class DrRuntime {
   @Inline
   @Unpreemptible
   private static void writeStatic(Offset historyOffset) {
+    if (Dr.RACE_REPORTS && RaceReports.sampleAccess()) {
+      final Word before = RaceReports.state(null, historyOffset);
+      writeStaticNoReport(historyOffset);
+      RaceReports.accessed(null, historyOffset, before);
+    } else {
+      writeStaticNoReport(historyOffset);
+    }
+  }
+  @Inline
+  @Unpreemptible
+  private static void writeStaticNoReport(Offset historyOffset) {
     if (Dr.config().drInlineRaceChecks() == InlineLevel.THICK) {
       Dr.fasttrackStatic().write(null, historyOffset);
     } else if (Dr.config().drInlineRaceChecks() == InlineLevel.THIN) {
@@ -121,6 +196,7 @@ public final class DrRuntime {
   @Unpreemptible
   public static void getfieldResolved(final Object object, final Offset historyOffset) {
     if (!RESOLVED_FIELD) return;
+    if (!checking()) return;
     if (PRINT && maxLiveDrThreads() > 2) {
       DrDebug.lock();
       DrDebug.twrite(); VM.sysWriteln("> getfield resolved ", AccessHistory.address(object, historyOffset));
@@ -140,10 +216,11 @@ public final class DrRuntime {
       }
     }
     if (Dr.STATS) DrStats.read.inc();
-    read(object, historyOffset);
+    if (!filtered(AccessHistory.address(object, historyOffset), false)) read(object, historyOffset);
     if (VM.VerifyAssertions) {
       RVMThread.getCurrentThread().exitDR(object, historyOffset);
     }
+    FastTrack.throwPendingRace();
     if (PRINT && maxLiveDrThreads() > 2) {
       DrDebug.lock();
       DrDebug.twrite(); VM.sysWriteln("< getfield resolved ", AccessHistory.address(object, historyOffset));
@@ -167,10 +244,11 @@ public final class DrRuntime {
     RVMField field = FieldReference.getMemberRef(fid).asFieldReference().getResolvedField();
     if (VM.VerifyAssertions) RVMThread.getCurrentThread().enterDR(object, field.getOffset());
     if (FieldTreatment.check(field)) {
-      read(object, field.getDrOffset());
+      if (checking()) read(object, field.getDrOffset());
     } else if (FieldTreatment.vol(field)) {
       volatileReadResolved(object, field.getDrOffset());
     }
+    FastTrack.throwPendingRace();
     if (PRINT) DrDebug.twriteln("< getfield unresolved");
   }
   
@@ -179,12 +257,14 @@ public final class DrRuntime {
   @Unpreemptible
   public static void getstaticResolved(final Offset historyOffsetFromZero) {
     if (!RESOLVED_STATIC) return;
+    if (!checking()) return;
     if (PRINT) DrDebug.twriteln("> getstatic resolved");
     if (VM.VerifyAssertions && Dr.COMMUNICATION) FibComm.assertNotBlocked();
     if (VM.VerifyAssertions) RVMThread.getCurrentThread().enterDR();
     if (Dr.STATS) DrStats.read.inc();
-    readStatic(historyOffsetFromZero);
+    if (!filtered(AccessHistory.address(null, historyOffsetFromZero), false)) readStatic(historyOffsetFromZero);
     if (VM.VerifyAssertions) RVMThread.getCurrentThread().exitDR();
+    FastTrack.throwPendingRace();
     if (PRINT) DrDebug.twriteln("< getstatic resolved");
   }
   
@@ -198,8 +278,11 @@ public final class DrRuntime {
     if (VM.VerifyAssertions) RVMThread.getCurrentThread().enterDR();
     observeClassInit(classID);
     if (Dr.STATS) DrStats.read.inc();
-    readStatic(historyOffsetFromZero);
+    if (checking() && !filtered(AccessHistory.address(null, historyOffsetFromZero), false)) {
+      readStatic(historyOffsetFromZero);
+    }
     if (VM.VerifyAssertions) RVMThread.getCurrentThread().exitDR();
+    FastTrack.throwPendingRace();
     if (PRINT) DrDebug.twriteln("< getstatic resolved order init");
   }
   @Inline
@@ -216,7 +299,7 @@ public final class DrRuntime {
     if (Dr.STATS) DrStats.getStaticObserveInitSlow.inc();
     WordArray initVC = RVMType.getType(classID).asClass().drGetClassInitVC();
     if (initVC != null) {
-      VC.advanceTo(RVMThread.getCurrentThread().drThreadVC, initVC);
+      joinThreadVC(initVC);
       RVMThread.getCurrentThread().drClassInitsObserved.set(classID);
     }
   }
@@ -243,11 +326,12 @@ public final class DrRuntime {
     RVMField field = FieldReference.getMemberRef(fid).asFieldReference().getResolvedField();
     observeClassInit(field.getDeclaringClass().getId());
     if (FieldTreatment.check(field)) {
-      readStatic(field.getDrOffset());
+      if (checking()) readStatic(field.getDrOffset());
     } else if (FieldTreatment.vol(field)) {
       volatileReadResolved(null, field.getDrOffset());
     }
     if (VM.VerifyAssertions) RVMThread.getCurrentThread().exitDR();
+    FastTrack.throwPendingRace();
     if (PRINT) DrDebug.twriteln("< getstatic unresolved");
   }
 
@@ -257,6 +341,7 @@ public final class DrRuntime {
   public static void aload(final Object array, final int index) {
     // Octet FIXME Barrier insertion should really happen AFTER bounds check!
     if (!ARRAY || index < 0 || index >= ObjectModel.getArrayLength(array)) return;
+    if (!checking()) return;
     if (PRINT) DrDebug.twriteln("> aload");
     if (VM.VerifyAssertions && Dr.COMMUNICATION) FibComm.assertNotBlocked();
     if (VM.VerifyAssertions) {
@@ -268,8 +353,16 @@ public final class DrRuntime {
       DrStats.read.inc();
       DrStats.aload.inc();
     }
-    read(ObjectShadow.getArrayShadow(array), AccessHistory.arrayHistoryOffset(index));
+    if (!filtered(ObjectReference.fromObject(array).toAddress().plus(index), false)) {
+      final Object md = ObjectShadow.getArrayHistories(array, index);
+      if (Dr.COARSE_ARRAY_CHUNKS && ObjectShadow.isCoarseChunk(array, md)) {
+        coarseArrayAccess(array, index, md, false);
+      } else {
+        read(md, ObjectShadow.arrayHistoryOffset(array, index));
+      }
+    }
     if (VM.VerifyAssertions) RVMThread.getCurrentThread().exitDR();
+    FastTrack.throwPendingRace();
     if (PRINT) DrDebug.twriteln("< aload");
   }
   
@@ -280,6 +373,7 @@ public final class DrRuntime {
   @Unpreemptible
   public static void putfieldResolved(final Object object, final Offset historyOffset) {
     if (!RESOLVED_FIELD) return;
+    if (!checking()) return;
     if (PRINT) DrDebug.twriteln("> putfield resolved");
     if (VM.VerifyAssertions && Dr.COMMUNICATION) FibComm.assertNotBlocked();
     if (VM.VerifyAssertions) {
@@ -288,8 +382,9 @@ public final class DrRuntime {
       RVMThread.getCurrentThread().enterDR(object, historyOffset);
     }
     if (Dr.STATS) DrStats.write.inc();
-    write(object, historyOffset);
+    if (!filtered(AccessHistory.address(object, historyOffset), true)) write(object, historyOffset);
     if (VM.VerifyAssertions) RVMThread.getCurrentThread().exitDR(object, historyOffset);
+    FastTrack.throwPendingRace();
     if (PRINT) DrDebug.twriteln("< putfield resolved");
   }
 
@@ -307,11 +402,12 @@ public final class DrRuntime {
     RVMField field = FieldReference.getMemberRef(fid).asFieldReference().getResolvedField();
     if (VM.VerifyAssertions) RVMThread.getCurrentThread().enterDR(object, field.getOffset());
     if (FieldTreatment.check(field)) {
-      write(object, field.getDrOffset());
+      if (checking()) write(object, field.getDrOffset());
     } else if (FieldTreatment.vol(field)) {
       volatileWriteResolved(object, field.getDrOffset());
     }
     if (VM.VerifyAssertions) RVMThread.getCurrentThread().exitDR(object, Offset.zero());
+    FastTrack.throwPendingRace();
     if (PRINT) DrDebug.twriteln("< putfield unresolved");
   }
 
@@ -320,12 +416,14 @@ public final class DrRuntime {
   @Unpreemptible
   public static void putstaticResolved(final Offset historyOffsetFromZero) {
     if (!RESOLVED_STATIC) return;
+    if (!checking()) return;
     if (PRINT) DrDebug.twriteln("> putstatic resolved");
     if (VM.VerifyAssertions && Dr.COMMUNICATION) FibComm.assertNotBlocked();
     if (VM.VerifyAssertions) RVMThread.getCurrentThread().enterDR(null, historyOffsetFromZero);
     if (Dr.STATS) DrStats.write.inc();
-    writeStatic(historyOffsetFromZero);
+    if (!filtered(AccessHistory.address(null, historyOffsetFromZero), true)) writeStatic(historyOffsetFromZero);
     if (VM.VerifyAssertions) RVMThread.getCurrentThread().exitDR();
+    FastTrack.throwPendingRace();
     if (PRINT) DrDebug.twriteln("< putstatic resolved");
   }
   
@@ -339,11 +437,12 @@ public final class DrRuntime {
     if (Dr.STATS) DrStats.write.inc();
     RVMField field = FieldReference.getMemberRef(fid).asFieldReference().getResolvedField();
     if (FieldTreatment.check(field)) {
-      writeStatic(field.getDrOffset());
+      if (checking()) writeStatic(field.getDrOffset());
     } else if (FieldTreatment.vol(field)) {
       volatileWriteResolved(null, field.getDrOffset());
     }
     if (VM.VerifyAssertions) RVMThread.getCurrentThread().exitDR();
+    FastTrack.throwPendingRace();
     if (PRINT) DrDebug.twriteln("< putstatic unresolved");
   }
 
@@ -353,6 +452,7 @@ public final class DrRuntime {
   public static void astore(final Object array, final int index) {
     // LATER Barrier insertion should really happen AFTER bounds check!
     if (!ARRAY || index < 0 || index >= ObjectModel.getArrayLength(array)) return;
+    if (!checking()) return;
     if (PRINT) DrDebug.twriteln("> astore");
     if (VM.VerifyAssertions && Dr.COMMUNICATION) FibComm.assertNotBlocked();
     if (VM.VerifyAssertions) {
@@ -364,21 +464,188 @@ public final class DrRuntime {
       DrStats.write.inc();
       DrStats.astore.inc();
     }
-    write(ObjectShadow.getArrayShadow(array), AccessHistory.arrayHistoryOffset(index));
+    if (!filtered(ObjectReference.fromObject(array).toAddress().plus(index), true)) {
+      final Object md = ObjectShadow.getArrayHistories(array, index);
+      if (Dr.COARSE_ARRAY_CHUNKS && ObjectShadow.isCoarseChunk(array, md)) {
+        coarseArrayAccess(array, index, md, true);
+      } else {
+        write(md, ObjectShadow.arrayHistoryOffset(array, index));
+      }
+    }
     if (VM.VerifyAssertions) RVMThread.getCurrentThread().exitDR();
+    FastTrack.throwPendingRace();
     if (PRINT) DrDebug.twriteln("< astore");
   }
+
+  /**
+   * Is ref System.arraycopy?  Compilers insert a call to arraycopyRange
+   * before each call to it in instrumented methods.
+   */
+  @Interruptible
+  public static boolean isArraycopy(final MethodReference ref) {
+    return ref.getType() == TypeReference.JavaLangSystem
+        && ref.getName() == ARRAYCOPY_NAME
+        && ref.getDescriptor() == ARRAYCOPY_DESCRIPTOR;
+  }
+  private static final Atom ARRAYCOPY_NAME = Atom.findOrCreateAsciiAtom("arraycopy");
+  private static final Atom ARRAYCOPY_DESCRIPTOR = Atom.findOrCreateAsciiAtom("(Ljava/lang/Object;ILjava/lang/Object;II)V");
+
+  /**
+   * Analyze System.arraycopy(src, srcPos, dst, dstPos, len) as reads of
+   * src[srcPos..srcPos+len) followed by writes of dst[dstPos..dstPos+len).
+   * Does nothing if the copy would throw.
+   */
+  @Entrypoint
+  @Unpreemptible
+  public static void arraycopyRange(final Object src, final int srcPos,
+      final Object dst, final int dstPos, final int len) {
+    if (!ARRAY || src == null || dst == null || len <= 0) return;
+    if (!ObjectModel.getObjectType(src).isArrayType() || !ObjectModel.getObjectType(dst).isArrayType()) return;
+    if (srcPos < 0 || dstPos < 0
+        || srcPos > ObjectModel.getArrayLength(src) - len
+        || dstPos > ObjectModel.getArrayLength(dst) - len) return;
+    if (!checking()) return;
+    if (PRINT) DrDebug.twriteln("> arraycopy");
+    if (VM.VerifyAssertions && Dr.COMMUNICATION) FibComm.assertNotBlocked();
+    if (VM.VerifyAssertions) {
+      VM._assert(MemoryManager.validRef(ObjectReference.fromObject(src)));
+      VM._assert(MemoryManager.validRef(ObjectReference.fromObject(dst)));
+      RVMThread.getCurrentThread().enterDR();
+    }
+    if (Dr.STATS) {
+      DrStats.arraycopy.inc();
+      DrStats.read.inc(len);
+      DrStats.write.inc(len);
+    }
+    arrayRange(src, srcPos, len, false);
+    arrayRange(dst, dstPos, len, true);
+    if (VM.VerifyAssertions) RVMThread.getCurrentThread().exitDR();
+    FastTrack.throwPendingRace();
+    if (PRINT) DrDebug.twriteln("< arraycopy");
+  }
+
+  /**
+   * Analyze accesses to array[from..from+len), one histories array (flat
+   * shadow or chunk) at a time.  Elements whose history already shows an
+   * access of this kind in the current epoch are skipped without calling
+   * into the FastTrack implementation, so a run entirely in the current
+   * epoch costs one load and compare per element.
+   */
+  @Unpreemptible
+  private static void arrayRange(final Object array, final int from, final int len, final boolean isWrite) {
+    final Word now = RVMThread.getCurrentThread().getDrEpoch();
+    final int end = from + len;
+    int i = from;
+    while (i < end) {
+      final Object md = ObjectShadow.getArrayHistories(array, i);
+      final int limit = Math.min(end, ObjectShadow.arrayHistoriesLimit(array, i));
+      if (Dr.COARSE_ARRAY_CHUNKS && ObjectShadow.isCoarseChunk(array, md)) {
+        for (; i < limit; i++) {
+          coarseArrayAccess(array, i, ObjectShadow.getArrayHistories(array, i), isWrite);
+        }
+        continue;
+      }
+      Offset o = ObjectShadow.arrayHistoryOffset(array, i);
+      for (; i < limit; i++, o = o.plus(AccessHistory.BYTES_IN_HISTORY)) {
+        if (isWrite) {
+          if (AccessHistory.loadWriteWord(md, o).NE(now)) {
+            if (Dr.STATS) DrStats.arraycopySlowElements.inc();
+            if (!Dr.BUFFER || !batchArrayElement(md, o, true)) write(md, o);
+          }
+        } else {
+          if (!Epoch.sameEpoch(AccessHistory.loadReadWord(md, o), now)) {
+            if (Dr.STATS) DrStats.arraycopySlowElements.inc();
+            if (!Dr.BUFFER || !batchArrayElement(md, o, false)) read(md, o);
+          }
+        }
+      }
+    }
+    if (Dr.BUFFER) flushBatch(RVMThread.getCurrentThread().drFibComm);
+  }
+
+  /**
+   * Defer an element access that needs an ownership transfer into this
+   * thread's FIB request batch, flushing the batch first if it is full or
+   * bound for a different owner.  Fine chunks and flat shadows are never
+   * replaced, so batched histories stay valid until the flush.
+   * @return true iff the access was deferred
+   */
+  @Inline
+  @Unpreemptible
+  private static boolean batchArrayElement(final Object md, final Offset o, final boolean isWrite) {
+    final FibComm comm = RVMThread.getCurrentThread().drFibComm;
+    final int owner = comm.batchOwnerOf(md, o);
+    if (owner < 0) return false;
+    if (!comm.batchAccepts(owner, isWrite)) flushBatch(comm);
+    comm.addToBatch(md, o, owner, isWrite);
+    return true;
+  }
+
+  /**
+   * Access the anchor of the batch, which asks its owner to transfer the
+   * whole batch, then access each entry the owner could not transfer.
+   */
+  @NoInline
+  @Unpreemptible
+  private static void flushBatch(final FibComm comm) {
+    final int n = comm.batchSize();
+    if (n == 0) return;
+    final boolean isWrite = comm.batchIsWrite();
+    if (isWrite) {
+      write(comm.batchObject(0), comm.batchOffset(0));
+    } else {
+      read(comm.batchObject(0), comm.batchOffset(0));
+    }
+    if (Dr.STATS) DrStats.requestBatchEntries.inc(n - 1);
+    for (int k = 1; k < n; k++) {
+      if (!comm.batchServed(k)) {
+        if (isWrite) {
+          write(comm.batchObject(k), comm.batchOffset(k));
+        } else {
+          read(comm.batchObject(k), comm.batchOffset(k));
+        }
+      }
+    }
+    comm.clearBatch();
+  }
   
   
+  /**
+   * Analyze an access to array[index] whose chunk is (or was, until a
+   * concurrent split) the coarse chunk coarse.
+   */
+  @NoInline
+  @Unpreemptible
+  private static void coarseArrayAccess(final Object array, final int index, final Object coarse, final boolean isWrite) {
+    final int mark = ObjectShadow.markCoarseChunk(coarse, index, isWrite, RVMThread.getCurrentThread().getDrEpoch());
+    if (mark != ObjectShadow.COARSE_SPLIT) {
+      if (isWrite) {
+        write(coarse, Offset.zero());
+      } else {
+        read(coarse, Offset.zero());
+      }
+      if (mark == ObjectShadow.COARSE_MARKED || ObjectShadow.coarseChunkIntact(coarse)) return;
+      // Split during this access: redo it on the fine chunk.
+    }
+    final Object fine = ObjectShadow.splitCoarseChunk(array, index, coarse);
+    if (isWrite) {
+      write(fine, ObjectShadow.arrayHistoryOffset(array, index));
+    } else {
+      read(fine, ObjectShadow.arrayHistoryOffset(array, index));
+    }
+  }
+  
   // Thread accounting
   
   /**
-   * Number of interesting threads created so far.
+   * Number of distinct DR thread IDs handed out so far.
+   * IDs of terminated threads are recycled, so this is a high-water mark
+   * of live threads, bounded by Epoch.MAX_THREADS.
    */
   private static volatile int drThreadCount = 0;
   
   /**
-   * Number of interesting threads created so far.
+   * Number of distinct DR thread IDs handed out so far.
    * @return
    */
   @Inline
@@ -391,6 +658,13 @@ public final class DrRuntime {
    */
   protected static final RVMThread[] drThreads = new RVMThread[Epoch.MAX_THREADS];
   
+  /**
+   * DR thread IDs whose threads have terminated and may be handed out again.
+   * Set (without locking) by the terminating thread once it is permanently
+   * blocked; claimed under the drThreads lock by newThread.
+   */
+  private static final boolean[] retiredTids = new boolean[Epoch.MAX_THREADS];
+  
   /**
    * Get FIB thread with ID tid.
    * @param tid
@@ -434,22 +708,41 @@ public final class DrRuntime {
         RVMThread.getCurrentThread().drClassInitsObserved.setUpThrough(DrRuntime.maxSingleThreadedClassInit);
       }
       
-      tid = drThreadCount;
+      final int reuse = claimRetiredTid();
+      tid = reuse < 0 ? drThreadCount : reuse;
       if (Epoch.MAX_TID < tid) {
         DrDebug.lock();
-        DrDebug.twrite();  VM.sysWrite("Too many threads creating ");
+        DrDebug.twrite();  VM.sysWrite("Too many live threads creating ");
         DrDebug.twrite(thread);
         VM.sysWriteln("Increase your config's epochTidBits().");
         DrDebug.unlock();
         VM.sysExit(124);
       }
 
-      WordArray em = VC.create();
-      VC.set(em, tid, Epoch.one(tid));
-      thread.setDrEpoch(Epoch.one(tid));
+      final WordArray em;
+      final Word e;
+      if (reuse < 0) {
+        em = VC.createThreadVC();
+        e = Epoch.one(tid);
+      } else {
+        // Start the tid's clock past where the dead thread left off, so old
+        // epochs for this tid still compare correctly.  Only the tid's own
+        // entry carries over: the new thread must not inherit the dead
+        // thread's knowledge of other threads, or races with them are missed.
+        final RVMThread dead = drThreads[tid];
+        em = VC.createThreadVC();
+        e = Epoch.inc(dead.getDrEpoch());
+        // Stop trusting VC stamps of the dead thread (see VC.stampHB).
+        VC.recycled(e);
+        if (Dr.STATS) DrStats.recycledTids.inc();
+      }
+      VC.set(em, tid, e);
+      thread.setDrEpoch(e);
       FibComm fc = new FibComm(thread, tid, em);
       // Reuse ID for boot thread and main thread.
-      if (tid > 0 || thread.isMainThread()) {
+      if (reuse >= 0) {
+        drThreads[tid] = thread;
+      } else if (tid > 0 || thread.isMainThread()) {
         drThreads[tid] = thread;
         drThreadCount++;
       }
@@ -477,7 +770,7 @@ public final class DrRuntime {
     if (VM.VerifyAssertions) {
       VM._assert(joinee.isDrThread());
     }
-    VC.advanceTo(RVMThread.getCurrentThread().drThreadVC, joinee.drThreadVC);
+    joinThreadVC(joinee.drThreadVC);
   }
   
   public static void terminateThread(final RVMThread dead) {
@@ -486,11 +779,101 @@ public final class DrRuntime {
       DrRuntime.block();
     }
     Dr.fasttrack().terminateThread(dead);
+    if (Dr.LAZY_LOCK_VCS && dead.drPendingLockCount > 0) {
+      // The tid may be recycled: nobody may inflate from this VC later.
+      ObjectShadow.inflatePendingLocks(dead);
+    }
+    retireTid(dead);
+  }
+  
+  /**
+   * Make dead's tid available for reuse.  The dead thread stays blocked for
+   * good, so its requesters keep self-serving on its (stale) FibComm until
+   * they next look up the tid.  Tid 0 (main thread) is never recycled.
+   * @param dead
+   */
+  private static void retireTid(final RVMThread dead) {
+    final int tid = dead.getDrID();
+    if (tid == 0 || drThreads[tid] != dead) return;
+    Magic.writeFloor();
+    retiredTids[tid] = true;
+  }
+  
+  /**
+   * Get the thread registered with tid, or null if it has been retired.
+   * For use while the world is stopped.
+   * @param tid
+   * @return
+   */
+  public static RVMThread getDrThreadIfLive(int tid) {
+    return retiredTids[tid] ? null : drThreads[tid];
+  }
+  
+  /**
+   * Get the thread most recently registered with tid, live or retired.
+   * For use while the world is stopped.
+   * @param tid
+   * @return
+   */
+  public static RVMThread getDrThreadUnchecked(int tid) {
+    return drThreads[tid];
+  }
+  
+  /**
+   * For each tid, store in floors[tid] the minimum clock of tid known to
+   * every live DR thread.  Epochs of tid at or below that clock happen
+   * before every live thread.  For use while the world is stopped.
+   * @param floors
+   */
+  public static void clockFloors(final int[] floors) {
+    final int bound = drThreadCount;
+    for (int tid = 0; tid < bound; tid++) {
+      int floor = Epoch.MAX_CLOCK;
+      for (int u = 0; u < bound; u++) {
+        final RVMThread t = getDrThreadIfLive(u);
+        if (t != null) {
+          final int c = Epoch.clock(VC.get(t.drThreadVC, tid));
+          if (c < floor) floor = c;
+        }
+      }
+      floors[tid] = floor;
+    }
+  }
+  
+  /**
+   * Claim a retired tid.  Caller must hold the drThreads lock.
+   * @return a reusable tid or -1 if none.
+   */
+  private static int claimRetiredTid() {
+    for (int tid = 1; tid < drThreadCount; tid++) {
+      if (retiredTids[tid]) {
+        retiredTids[tid] = false;
+        Magic.readCeiling();
+        return tid;
+      }
+    }
+    return -1;
   }
   
   
   // Lock events
   
+  /**
+   * Join frontier into the current thread's VC.  With lazy lock VCs, locks
+   * holding only this thread's release epoch must be inflated before its
+   * VC grows.
+   * @param frontier
+   */
+  @Inline
+  @Unpreemptible
+  private static void joinThreadVC(final WordArray frontier) {
+    final RVMThread t = RVMThread.getCurrentThread();
+    if (Dr.LAZY_LOCK_VCS && t.drPendingLockCount > 0 && !VC.stampHB(frontier, t.drThreadVC)) {
+      ObjectShadow.inflatePendingLocks(t);
+    }
+    VC.advanceTo(t.drThreadVC, frontier);
+  }
+  
   @Unpreemptible
   public static void monitorenter(final Object monitor) {
     if (PRINT) DrDebug.twriteln("> monitorenter");
@@ -501,8 +884,13 @@ public final class DrRuntime {
       VM._assert(RVMThread.getCurrentThread().holdsLock(monitor));
     }
     
-    final WordArray vc = ObjectShadow.getVC(monitor);
-    VC.advanceTo(RVMThread.getCurrentThread().drThreadVC, vc);
+    if (Dr.LAZY_LOCK_VCS) {
+      final WordArray vc = ObjectShadow.getAcquireVC(monitor);
+      if (vc != null) joinThreadVC(vc);
+    } else {
+      final WordArray vc = ObjectShadow.getVC(monitor);
+      VC.advanceTo(RVMThread.getCurrentThread().drThreadVC, vc);
+    }
 
     if (Dr.STATS) DrStats.acquire.inc();
     if (PRINT) DrDebug.twriteln("< monitorenter");
@@ -518,12 +906,14 @@ public final class DrRuntime {
       VM._assert(RVMThread.getCurrentThread().holdsLock(monitor));
     }
     
-    final WordArray lvc = ObjectShadow.getVC(monitor);
-    if (VM.VerifyAssertions) VM._assert(lvc != null);
     final WordArray tvc = RVMThread.getCurrentThread().drThreadVC;
-    VC.advanceTo(tvc, lvc);
+    final WordArray lvc = Dr.LAZY_LOCK_VCS ? ObjectShadow.releaseLazily(monitor) : ObjectShadow.getVC(monitor);
+    if (lvc != null) {
+      VC.advanceTo(tvc, lvc);
 
-    VC.advanceTo(lvc, tvc);
+      VC.advanceTo(lvc, tvc);
+      VC.setStamp(lvc, RVMThread.getCurrentThread().getDrEpoch());
+    }
     VC.set(tvc, RVMThread.getCurrentThread().incDrEpoch());
     if (Dr.STATS) DrStats.release.inc();
     
@@ -633,7 +1023,16 @@ public final class DrRuntime {
       VM._assert(!Barriers.NEEDS_OBJECT_PUTSTATIC_BARRIER);
     }
   }
-  private static final WordArray VOL_LOCKED = WordArray.create(0);
+  // Each volatile location has one VC, allocated by its first writer and
+  // updated in place.  A writer makes the VC's version odd before the
+  // volatile write and joins its thread VC in after it, then makes the
+  // version even again; writers of a location are thus serialized.
+  // A reader copies the VC at an even version just before the volatile
+  // read, retrying if the version changed, and joins the copy after the
+  // read.  The copy holds exactly the writes completed before the read, so
+  // a reader never gains an edge from a write it could not have seen.
+  // Readers never write shared state and wait only for a writer that is
+  // between its two hooks.
   
   /**
    * 
@@ -654,17 +1053,8 @@ public final class DrRuntime {
     if (VM.VerifyAssertions && Dr.COMMUNICATION) FibComm.assertNotBlocked();
     if (VM.VerifyAssertions) {
       VM._assert(Dr.VOLATILES);
-      VM._assert(RVMThread.getCurrentThread().drActiveVolatileVC == null);
-    }
-    final WordArray vc = acquireVolatileVC(object, vcOffset);
-    if (vc == null) {
-      if (PRINT) DrDebug.twriteln("v read resolved found null");
-      return;
-    } else {
-      if (PRINT) DrDebug.twriteln("v read resolved found vc");
-      VC.advanceTo(RVMThread.getCurrentThread().drThreadVC, vc);      
-      RVMThread.getCurrentThread().drActiveVolatileVC = vc;
     }
+    copyVolatileVC(object, vcOffset);
   }
   /**
    * 
@@ -677,13 +1067,7 @@ public final class DrRuntime {
   private static void volatileStaticReadResolved(final int classID, final Offset vcOffset) {
     if (VM.VerifyAssertions && Dr.COMMUNICATION) FibComm.assertNotBlocked();
     observeClassInit(classID);
-    final WordArray vc = acquireVolatileVC(null, vcOffset);
-      if (vc == null) {
-        return;
-      } else {
-        VC.advanceTo(RVMThread.getCurrentThread().drThreadVC, vc);      
-        RVMThread.getCurrentThread().drActiveVolatileVC = vc;
-      }
+    copyVolatileVC(null, vcOffset);
   }
 
   @Entrypoint
@@ -694,22 +1078,7 @@ public final class DrRuntime {
     if (VM.VerifyAssertions) {
       VM._assert(Dr.VOLATILES);
     }
-    final WordArray vc = RVMThread.getCurrentThread().drActiveVolatileVC;
-    if (PRINT) {
-      DrDebug.lock();
-      DrDebug.twrite();
-      VM.sysWrite("post volatile r vc ", ObjectReference.fromObject(vc));
-      VM.sysWrite(" in ", ObjectReference.fromObject(object));
-      VM.sysWriteln(" + ", vcOffset);
-      DrDebug.unlock();
-    }
-    releaseVolatileVC(object, vcOffset, vc);
-    if (vc != null) {
-      if (PRINT) DrDebug.twriteln("post v read resolved  found vc");
-      RVMThread.getCurrentThread().drActiveVolatileVC = null;
-    } else {
-      if (PRINT) DrDebug.twriteln("post v read resolved  found null");
-    }
+    finishVolatileRead(loadVolatileVC(object, vcOffset), RVMThread.getCurrentThread());
     if (Dr.STATS) DrStats.volatileRead.inc();
   }
   @Entrypoint
@@ -750,20 +1119,18 @@ public final class DrRuntime {
     if (VM.VerifyAssertions && Dr.COMMUNICATION) FibComm.assertNotBlocked();
     if (VM.VerifyAssertions) {
       VM._assert(Dr.VOLATILES);
-      VM._assert(RVMThread.getCurrentThread().drActiveVolatileVC == null);
     }
-    WordArray vc = acquireVolatileVC(object, vcOffset);    
+    WordArray vc = loadVolatileVC(object, vcOffset);
     if (vc == null) {
       if (PRINT) DrDebug.twriteln("v write resolved found null");
-      // First write -- allocate VC as copy of thread's.
-      vc = VC.copy(RVMThread.getCurrentThread().drThreadVC);
-      if (Dr.STATS) DrStats.volVCs.inc();
-    } else {
-      if (PRINT) DrDebug.twriteln("v write resolved found vc");
-      // Merge from thread vc.
-      VC.advanceTo(vc, RVMThread.getCurrentThread().drThreadVC);
+      final WordArray fresh = VC.createVolatileVC();
+      if (publishVolatileVC(object, vcOffset, fresh)) {
+        if (Dr.STATS) DrStats.volVCs.inc();
+      }
+      vc = loadVolatileVC(object, vcOffset);
     }
-    RVMThread.getCurrentThread().drActiveVolatileVC = vc;
+    // Hold the VC until the write is done (see postVolatileWriteResolved).
+    holdVC(vc);
   }
   @Entrypoint
   @Unpreemptible
@@ -775,22 +1142,15 @@ public final class DrRuntime {
       DrDebug.unlock();
     }
     if (VM.VerifyAssertions && Dr.COMMUNICATION) FibComm.assertNotBlocked();
+    final WordArray vc = loadVolatileVC(object, vcOffset);
     if (VM.VerifyAssertions) {
       VM._assert(Dr.VOLATILES);
+      VM._assert(vc != null);
+      VM._assert((VC.getVersion(vc) & 1) == 1);
     }
-    final WordArray vc = RVMThread.getCurrentThread().drActiveVolatileVC;
-    RVMThread.getCurrentThread().drActiveVolatileVC = null;
-    if (VM.VerifyAssertions) VM._assert(vc != null);
-    if (PRINT) {
-      DrDebug.lock();
-      DrDebug.twrite();
-      VM.sysWrite("post volatile w vc ", ObjectReference.fromObject(vc));
-      VM.sysWrite(" in ", ObjectReference.fromObject(object));
-      VM.sysWriteln(" + ", vcOffset);
-      DrDebug.unlock();
-    }
-    releaseVolatileVC(object, vcOffset, vc);
-    VC.set(RVMThread.getCurrentThread().drThreadVC, RVMThread.getCurrentThread().incDrEpoch());
+    final RVMThread t = RVMThread.getCurrentThread();
+    releaseHeldVC(vc, t, true);
+    VC.set(t.drThreadVC, t.incDrEpoch());
     if (Dr.STATS) DrStats.volatileWrite.inc();
   }
   @Entrypoint
@@ -807,43 +1167,288 @@ public final class DrRuntime {
     }
   }
   
-  private static WordArray acquireVolatileVC(final Object object, final Offset vcOffset) {
-    while (true) {
-      WordArray vc = (WordArray)ObjectReference.fromObject(object)
-          .toAddress().prepareObjectReference(vcOffset).toObject();
-      if (vc != VOL_LOCKED
-          && ObjectReference.fromObject(object).toAddress().attempt(
-              ObjectReference.fromObject(vc),
-              ObjectReference.fromObject(VOL_LOCKED), vcOffset)) {
-        Magic.readCeiling(); // don't allow vol read above lock.
-        return vc;
-      } else {
-        Magic.pause();        
+  @Inline
+  private static WordArray loadVolatileVC(final Object object, final Offset vcOffset) {
+    return (WordArray)ObjectReference.fromObject(object).toAddress().loadObjectReference(vcOffset).toObject();
+  }
+
+  /**
+   * Install vc as the VC of a volatile location, unless another writer got
+   * there first.
+   */
+  private static boolean publishVolatileVC(final Object object, final Offset vcOffset, final WordArray vc) {
+    Magic.writeFloor();
+    if (Barriers.NEEDS_OBJECT_PUTFIELD_BARRIER && object != null) {
+      Barriers.objectFieldWritePreBarrier(object, vc, vcOffset, 0);
+    }
+    return ObjectReference.fromObject(object).toAddress().attempt(
+        ObjectReference.nullReference(), ObjectReference.fromObject(vc), vcOffset);
+  }
+
+  /**
+   * Before a volatile read: copy the location's VC into the thread's
+   * drVolatileReadVC, for postVolatileReadResolved to join, unless it has
+   * nothing new.
+   */
+  @Inline
+  private static void copyVolatileVC(final Object object, final Offset vcOffset) {
+    copyVC(loadVolatileVC(object, vcOffset), RVMThread.getCurrentThread());
+  }
+
+  /**
+   * Before a volatile read or Unsafe acquire: copy vc into t's
+   * drVolatileReadVC, unless it has nothing new, and remember the version
+   * it was copied at.  Never waits: finishVolatileRead checks the version.
+   */
+  @Inline
+  private static void copyVC(final WordArray vc, final RVMThread t) {
+    t.drVolatileReadPending = false;
+    if (vc == null) {
+      t.drVolatileReadVersion = NO_VERSION;
+      return;
+    }
+    final int version = VC.getVersion(vc);
+    t.drVolatileReadVersion = version;
+    if ((version & 1) == 0) {
+      Magic.readCeiling();
+      final boolean covered = VC.stampHB(vc, t.drThreadVC);
+      if (!covered) VC.copyInto(t.drVolatileReadVC, vc);
+      t.drVolatileReadPending = !covered;
+    }
+  }
+
+  /**
+   * Odd, so never the version of a consistent copy.
+   */
+  private static final int NO_VERSION = -1;
+
+  /**
+   * After a volatile read or Unsafe acquire of the location whose VC is
+   * now vc: join the copy taken by copyVC if no writer held vc since,
+   * which makes it exactly the releases of the writes completed before the
+   * read.  Otherwise the value read may come from a newer write, so join
+   * vc as it is once its holder (if any) is done.  That may also join
+   * writes that completed after the read, which only hides races.
+   */
+  @Inline
+  private static void finishVolatileRead(final WordArray vc, final RVMThread t) {
+    Magic.readCeiling();
+    if (vc == null) return;
+    final int version = t.drVolatileReadVersion;
+    if ((version & 1) == 0 && VC.getVersion(vc) == version) {
+      if (t.drVolatileReadPending) {
+        t.drVolatileReadPending = false;
+        joinThreadVC(t.drVolatileReadVC);
       }
+      return;
     }
+    t.drVolatileReadPending = false;
+    if (Dr.STATS) DrStats.volatileReadRetry.inc();
+    joinHeldVC(vc, t);
   }
 
-  private static void releaseVolatileVC(final Object object, final Offset vcOffset,
-      final WordArray vc) {
-    if (VM.VerifyAssertions) {
-      ObjectReference oldVC = ObjectReference.fromObject(object)
-          .toAddress().prepareObjectReference(vcOffset);
-      if (oldVC.toObject() != VOL_LOCKED) {
-        DrDebug.lock();
-        DrDebug.twrite();
-        VM.sysWrite("setVolatileVC(...) expected VOL_LOCKED (",
-            ObjectReference.fromObject(VOL_LOCKED));
-        VM.sysWriteln(") but found ", oldVC);
-        DrDebug.unlock();
-        VM.sysFail("shucks");
+  /**
+   * Join vc into t's VC at an even version, waiting for a writer that
+   * holds it to finish.
+   */
+  @NoInline
+  private static void joinHeldVC(final WordArray vc, final RVMThread t) {
+    while (true) {
+      final int version = VC.getVersion(vc);
+      if ((version & 1) == 0) {
+        Magic.readCeiling();
+        if (VC.stampHB(vc, t.drThreadVC)) return;
+        VC.copyInto(t.drVolatileReadVC, vc);
+        Magic.readCeiling();
+        if (VC.getVersion(vc) == version) {
+          joinThreadVC(t.drVolatileReadVC);
+          return;
+        }
       }
+      Magic.pause();
+    }
+  }
+
+  /**
+   * Make vc's version odd, waiting for any other holder to finish.
+   * Writers (releases) of one location are thus serialized, from just
+   * before their store until their VC has been joined in.
+   */
+  @Inline
+  private static void holdVC(final WordArray vc) {
+    while (true) {
+      final int version = VC.getVersion(vc);
+      if ((version & 1) == 0 && VC.attemptVersion(vc, version, version + 1)) break;
+      if (Dr.STATS) DrStats.volatileWriteRetry.inc();
+      Magic.pause();
+    }
+    Magic.fence(); // don't allow the sync access above the version.
+  }
+
+  /**
+   * Make held vc's version even again, first joining t's VC into it if
+   * join.  The version moves on either way; readers just retry.
+   */
+  @Inline
+  private static void releaseHeldVC(final WordArray vc, final RVMThread t, final boolean join) {
+    if (join) {
+      // If vc was already contained in the thread's VC, it is now the
+      // thread's VC as of this (soon ended) epoch.
+      final boolean covered = VC.stampHB(vc, t.drThreadVC);
+      VC.advanceTo(vc, t.drThreadVC);
+      if (covered) VC.setStamp(vc, t.getDrEpoch());
     }
     Magic.writeFloor();
-    if (Barriers.NEEDS_OBJECT_PUTFIELD_BARRIER && object != null) {
-      Barriers.objectFieldWrite(object, ObjectReference.fromObject(vc).toObject(), vcOffset, 0);
-    } else {
-      ObjectReference.fromObject(object).toAddress().store(ObjectReference.fromObject(vc), vcOffset);
+    VC.setVersion(vc, VC.getVersion(vc) + 1);
+  }
+  
+  // sun.misc.Unsafe events
+  // An Unsafe access to a volatile field uses the field's VC, so that it
+  // orders with plain volatile accesses to that field.  Other locations
+  // use VCs in UnsafeVCs by address.  Either way a location's VC is used
+  // as in the volatile protocol above: a release (volatile or ordered put,
+  // or CAS) holds the VC around the access and joins the thread's VC into
+  // it after, and an acquire (volatile get) copies the VC before the access
+  // and joins the copy after.  A CAS holds the VC, joins it into the
+  // thread's VC after the access, and joins back only if it succeeded: a
+  // failed CAS stores nothing and so releases nothing.
+
+  /**
+   * @return the VC of the Unsafe location holder/offset, or null if none
+   * and not create.  Volatile fields are found in the holder class's
+   * (offset, VC offset) pairs, usually a few at most.
+   */
+  @Unpreemptible
+  private static WordArray unsafeVC(final Object holder, final Offset offset, final boolean create) {
+    final RVMType type = ObjectModel.getObjectType(holder);
+    final int[] volatiles = type.isClassType() ? type.asClass().getDrVolatileOffsets() : null;
+    if (volatiles != null) {
+      for (int i = 0; i < volatiles.length; i += 2) {
+        if (volatiles[i] == offset.toInt()) {
+          if (Dr.STATS) DrStats.unsafeVolatileFields.inc();
+          final Offset vcOffset = Offset.fromIntSignExtend(volatiles[i + 1]);
+          WordArray vc = loadVolatileVC(holder, vcOffset);
+          if (vc == null && create) {
+            if (publishVolatileVC(holder, vcOffset, VC.createVolatileVC())) {
+              if (Dr.STATS) DrStats.volVCs.inc();
+            }
+            vc = loadVolatileVC(holder, vcOffset);
+          }
+          return vc;
+        }
+      }
     }
+    return UnsafeVCs.get(holder, offset, create);
+  }
+
+  /**
+   * Before an Unsafe volatile or ordered put or CAS at holder/offset: hold
+   * the location's VC until unsafePostRelease.
+   * @param holder
+   * @param offset
+   */
+  @Unpreemptible
+  public static void unsafePreRelease(final Object holder, final Offset offset) {
+    final RVMThread t = RVMThread.getCurrentThread();
+    if (!t.isDrThread()) return;
+    if (VM.VerifyAssertions && Dr.COMMUNICATION) FibComm.assertNotBlocked();
+    if (VM.VerifyAssertions) VM._assert(Dr.UNSAFE_SYNC && t.drUnsafeVC == null);
+    final WordArray vc = unsafeVC(holder, offset, true);
+    holdVC(vc);
+    t.drUnsafeVC = vc;
+  }
+
+  /**
+   * After an Unsafe volatile or ordered put or CAS.
+   * @param acquire was it a CAS?
+   * @param stored did it store (always true unless a failed CAS)?
+   */
+  @Unpreemptible
+  public static void unsafePostRelease(final boolean acquire, final boolean stored) {
+    final RVMThread t = RVMThread.getCurrentThread();
+    if (!t.isDrThread()) return;
+    if (VM.VerifyAssertions && Dr.COMMUNICATION) FibComm.assertNotBlocked();
+    final WordArray vc = t.drUnsafeVC;
+    if (VM.VerifyAssertions) VM._assert(vc != null && (VC.getVersion(vc) & 1) == 1);
+    t.drUnsafeVC = null;
+    if (acquire) {
+      // Held, so no writer can change vc under the join.
+      Magic.readCeiling();
+      if (!VC.stampHB(vc, t.drThreadVC)) joinThreadVC(vc);
+      if (Dr.STATS) DrStats.unsafeAcquire.inc();
+    }
+    releaseHeldVC(vc, t, stored);
+    if (stored) {
+      VC.set(t.drThreadVC, t.incDrEpoch());
+      if (Dr.STATS) DrStats.unsafeRelease.inc();
+    }
+  }
+
+  /**
+   * Before an Unsafe volatile get at holder/offset: copy the location's VC
+   * for unsafePostAcquire.
+   * @param holder
+   * @param offset
+   */
+  @Unpreemptible
+  public static void unsafePreAcquire(final Object holder, final Offset offset) {
+    final RVMThread t = RVMThread.getCurrentThread();
+    if (!t.isDrThread()) return;
+    if (VM.VerifyAssertions && Dr.COMMUNICATION) FibComm.assertNotBlocked();
+    if (VM.VerifyAssertions) VM._assert(Dr.UNSAFE_SYNC);
+    final WordArray vc = unsafeVC(holder, offset, false);
+    copyVC(vc, t);
+    t.drUnsafeVC = vc;
+  }
+
+  /**
+   * After an Unsafe volatile get: join the VC copied by unsafePreAcquire,
+   * as after a volatile read.
+   * @param holder
+   * @param offset
+   */
+  @Unpreemptible
+  public static void unsafePostAcquire(final Object holder, final Offset offset) {
+    final RVMThread t = RVMThread.getCurrentThread();
+    if (!t.isDrThread()) return;
+    if (VM.VerifyAssertions && Dr.COMMUNICATION) FibComm.assertNotBlocked();
+    // A release may have created the VC since unsafePreAcquire.
+    final WordArray vc = t.drUnsafeVC != null ? t.drUnsafeVC : unsafeVC(holder, offset, false);
+    t.drUnsafeVC = null;
+    finishVolatileRead(vc, t);
+    if (Dr.STATS) DrStats.unsafeAcquire.inc();
+  }
+
+  /**
+   * Release before an unpark of holder.
+   * @param holder
+   */
+  @Unpreemptible
+  public static void unparkRelease(final RVMThread holder) {
+    final RVMThread t = RVMThread.getCurrentThread();
+    if (!t.isDrThread()) return;
+    if (VM.VerifyAssertions && Dr.COMMUNICATION) FibComm.assertNotBlocked();
+    if (VM.VerifyAssertions) VM._assert(Dr.UNSAFE_SYNC);
+    final WordArray vc = UnsafeVCs.get(holder, Offset.zero(), true);
+    holdVC(vc);
+    releaseHeldVC(vc, t, true);
+    VC.set(t.drThreadVC, t.incDrEpoch());
+    if (Dr.STATS) DrStats.unsafeRelease.inc();
+  }
+
+  /**
+   * Acquire after a park of holder, the current thread.
+   * @param holder
+   */
+  @Unpreemptible
+  public static void parkAcquire(final RVMThread holder) {
+    final RVMThread t = RVMThread.getCurrentThread();
+    if (!t.isDrThread()) return;
+    if (VM.VerifyAssertions && Dr.COMMUNICATION) FibComm.assertNotBlocked();
+    if (VM.VerifyAssertions) VM._assert(Dr.UNSAFE_SYNC);
+    final WordArray vc = UnsafeVCs.get(holder, Offset.zero(), false);
+    if (vc != null) joinHeldVC(vc, t);
+    if (Dr.STATS) DrStats.unsafeAcquire.inc();
   }
   
   private static int maxSingleThreadedClassInit = 0;
@@ -855,7 +1460,15 @@ public final class DrRuntime {
     if (Dr.SYNC && VM.runningVM && c.hasStaticFields()) {
       final WordArray threadVC = RVMThread.getCurrentThread().drThreadVC;
       if (Dr.STATS && threadVC != null) DrStats.classInitVCs.inc();
-      c.drSetClassInitVC(threadVC == null ? VC.ORIGIN : VC.copy(threadVC));
+      if (threadVC == null) {
+        c.drSetClassInitVC(VC.ORIGIN);
+      } else {
+        // Class init acts as a release: end the epoch so that VC stamps stay sound.
+        final WordArray initVC = VC.copy(threadVC);
+        VC.setStamp(initVC, RVMThread.getCurrentThread().getDrEpoch());
+        c.drSetClassInitVC(initVC);
+        VC.set(threadVC, RVMThread.getCurrentThread().incDrEpoch());
+      }
       RVMThread.getCurrentThread().drClassInitsObserved.set(c.getId());
       if (DrRuntime.maxLiveDrThreads() <= 1 && maxSingleThreadedClassInit < c.getId()) {
         maxSingleThreadedClassInit = c.getId();
@@ -937,6 +1550,24 @@ public final class DrRuntime {
       }
     }
   }
+  /**
+   * Called by this thread just after it CASes its execStatus to IN_NATIVE
+   * or IN_JNI.  With Dr.LAZY_BLOCKING, its request queue stays open and is
+   * blocked only if a requester finds it in native.  Unblock with unblock().
+   */
+  @Entrypoint
+  @Inline
+  public static void blockInNative() {
+    if (Dr.COMMUNICATION) {
+      if (!Dr.LAZY_BLOCKING) {
+        block();
+      } else if (RVMThread.getCurrentThread().isDrThread()) {
+        if (VM.VerifyAssertions) RVMThread.getCurrentThread().enterDR();
+        RVMThread.getCurrentThread().drFibComm.blockLazily();
+        if (VM.VerifyAssertions) RVMThread.getCurrentThread().exitDR();
+      }
+    }
+  }
   /**
    * Called after this thread continues after potentially blocking.
    */
@@ -982,9 +1613,21 @@ public final class DrRuntime {
     
   public static void prepareGlobal() {
     Dr.readers().prepareGlobalGC();
+    if (Dr.RENORMALIZE) Renormalization.prepare();
+  }
+
+  /**
+   * Called in the weak reference phase of every GC, once all strongly
+   * reachable objects are traced.
+   * @param trace
+   */
+  public static void scanWeakTables(TraceLocal trace) {
+    if (Dr.ADAPTIVE_CAS) ThresholdTable.scanWeak(trace);
+    if (Dr.UNSAFE_SYNC) UnsafeVCs.scanWeak(trace);
   }
 
   public static void releaseGlobal() {
+    if (Dr.RENORMALIZE) Renormalization.release();
     Dr.readers().releaseGlobalGC();
   }
 
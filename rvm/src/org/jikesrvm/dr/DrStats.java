@@ -127,18 +127,47 @@ public class DrStats {
       new Stats.ThreadSafeCounter("FibLocks", false, ENABLED);
   public static final Stats.ThreadSafeCounter lockVCs =
       new Stats.ThreadSafeCounter("FibLockVCs", false, ENABLED);
+  public static final Stats.ThreadSafeCounter lazyLockReleases =
+      new Stats.ThreadSafeCounter("FibLazyLockReleases", false, ENABLED);
+  public static final Stats.ThreadSafeCounter lazyLockInflations =
+      new Stats.ThreadSafeCounter("FibLazyLockInflations", false, ENABLED);
   public static final Stats.ThreadSafeCounter vcEpochHB =
       new Stats.ThreadSafeCounter("FibVCEpochHB", false, ENABLED);
   public static final Stats.ThreadSafeCounter vcMapHB =
       new Stats.ThreadSafeCounter("FibVCMapHB", false, ENABLED);
+  public static final Stats.ThreadSafeCounter vcJoin =
+      new Stats.ThreadSafeCounter("FibVCJoin", false, ENABLED);
+  public static final Stats.ThreadSafeCounter vcJoinSkipped =
+      new Stats.ThreadSafeCounter("FibVCJoinSkipped", false, ENABLED);
+  public static final Stats.ThreadSafeCounter smallMapOverflows =
+      new Stats.ThreadSafeCounter("FibSmallMapOverflows", false, ENABLED);
+  public static final Stats.ThreadSafeCounter gcDeflatedMaps =
+      new Stats.ThreadSafeCounter("FibGcDeflatedMaps", false, ENABLED);
   
   // Arrays
   public static final Stats.ThreadSafeCounter arrayShadows =
       new Stats.ThreadSafeCounter("FibArrayShadows", false, ENABLED);
+  public static final Stats.ThreadSafeCounter arrayShadowChunks =
+      new Stats.ThreadSafeCounter("FibArrayShadowChunks", false, ENABLED);
+  public static final Stats.ThreadSafeCounter arrayCoarseChunks =
+      new Stats.ThreadSafeCounter("FibArrayCoarseChunks", false, ENABLED);
+  public static final Stats.ThreadSafeCounter arrayChunkSplits =
+      new Stats.ThreadSafeCounter("FibArrayChunkSplits", false, ENABLED);
   public static final Stats.ThreadSafeCounter aload =
       new Stats.ThreadSafeCounter("FibArrayRead", false, ENABLED);
   public static final Stats.ThreadSafeCounter astore =
       new Stats.ThreadSafeCounter("FibArrayWrite", false, ENABLED);
+  public static final Stats.ThreadSafeCounter arraycopy =
+      new Stats.ThreadSafeCounter("FibArraycopy", false, ENABLED);
+  public static final Stats.ThreadSafeCounter arraycopySlowElements =
+      new Stats.ThreadSafeCounter("FibArraycopySlowElements", false, ENABLED);
+  
+  public static final Stats.ThreadSafeCounter checkFilterHit =
+      new Stats.ThreadSafeCounter("FibCheckFilterHit", false, ENABLED);
+  public static final Stats.ThreadSafeCounter checkFilterMiss =
+      new Stats.ThreadSafeCounter("FibCheckFilterMiss", false, ENABLED);
+  public static final Stats.ThreadSafeCounter checkFilterFlushes =
+      new Stats.ThreadSafeCounter("FibCheckFilterFlushes", false, ENABLED);
   
   // Synchronization
 
@@ -150,10 +179,36 @@ public class DrStats {
       new Stats.ThreadSafeCounter("FibVolatileRead", false, ENABLED);
   public static final Stats.ThreadSafeCounter volatileWrite =
       new Stats.ThreadSafeCounter("FibVolatileWrite", false, ENABLED);
+  public static final Stats.ThreadSafeCounter volatileWriteRetry =
+      new Stats.ThreadSafeCounter("FibVolatileWriteRetry", false, ENABLED);
+  public static final Stats.ThreadSafeCounter volatileReadRetry =
+      new Stats.ThreadSafeCounter("FibVolatileReadRetry", false, ENABLED);
+  public static final Stats.ThreadSafeCounter unsafeAcquire =
+      new Stats.ThreadSafeCounter("FibUnsafeAcquire", false, ENABLED);
+  public static final Stats.ThreadSafeCounter unsafeRelease =
+      new Stats.ThreadSafeCounter("FibUnsafeRelease", false, ENABLED);
+  public static final Stats.ThreadSafeCounter unsafeVCs =
+      new Stats.ThreadSafeCounter("FibUnsafeVCs", false, ENABLED);
+  public static final Stats.ThreadSafeCounter unsafeVCGrowths =
+      new Stats.ThreadSafeCounter("FibUnsafeVCGrowths", false, ENABLED);
+  public static final Stats.ThreadSafeCounter unsafeVCRehashes =
+      new Stats.ThreadSafeCounter("FibUnsafeVCRehashes", false, ENABLED);
+  public static final Stats.ThreadSafeCounter unsafeVCsDropped =
+      new Stats.ThreadSafeCounter("FibUnsafeVCsDropped", false, ENABLED);
+  public static final Stats.ThreadSafeCounter unsafeVolatileFields =
+      new Stats.ThreadSafeCounter("FibUnsafeVolatileFields", false, ENABLED);
   public static final Stats.ThreadSafeCounter syncNonEscaped =
       new Stats.ThreadSafeCounter("FibSyncNonEscaped", false, ENABLED);
   public static final Stats.ThreadSafeCounter clockOverflow =
       new Stats.ThreadSafeCounter("FibClockOverflow", false, ENABLED);
+  public static final Stats.ThreadSafeCounter recycledTids =
+      new Stats.ThreadSafeCounter("FibRecycledTids", false, ENABLED);
+  public static final Stats.ThreadSafeCounter renormalizations =
+      new Stats.ThreadSafeCounter("FibClockRenormalizations", false, ENABLED);
+  public static final Stats.ThreadSafeCounter renormalizationRequests =
+      new Stats.ThreadSafeCounter("FibClockRenormalizationRequests", false, ENABLED);
+  public static final Stats.ThreadSafeCounter renormalizationsBlocked =
+      new Stats.ThreadSafeCounter("FibClockRenormalizationsBlocked", false, ENABLED);
   
   // All writes.
   public static final Stats.ThreadSafeCounter write =
@@ -368,6 +423,22 @@ public class DrStats {
   
   public static final Stats.ThreadSafeCounter requestExclSelfService =
       new Stats.ThreadSafeCounter("FibRequestExclSelfService", false, ENABLED);
+  public static final Stats.ThreadSafeCounter asyncRequests =
+      new Stats.ThreadSafeCounter("FibAsyncRequests", false, ENABLED);
+  public static final Stats.ThreadSafeCounter asyncRequestsMerged =
+      new Stats.ThreadSafeCounter("FibAsyncRequestsMerged", false, ENABLED);
+  public static final Stats.ThreadSafeCounter asyncLogFull =
+      new Stats.ThreadSafeCounter("FibAsyncLogFull", false, ENABLED);
+  public static final Stats.ThreadSafeCounter asyncUnchecked =
+      new Stats.ThreadSafeCounter("FibAsyncUnchecked", false, ENABLED);
+  public static final Stats.ThreadSafeCounter asyncRaces =
+      new Stats.ThreadSafeCounter("FibAsyncRaces", false, ENABLED);
+  public static final Stats.ThreadSafeCounter requestBatches =
+      new Stats.ThreadSafeCounter("FibRequestBatches", false, ENABLED);
+  public static final Stats.ThreadSafeCounter requestBatchEntries =
+      new Stats.ThreadSafeCounter("FibRequestBatchEntries", false, ENABLED);
+  public static final Stats.ThreadSafeCounter requestBatchEntriesServed =
+      new Stats.ThreadSafeCounter("FibRequestBatchEntriesServed", false, ENABLED);
   public static final Stats.ThreadSafeCounter requestExclSelfServiceFail =
       new Stats.ThreadSafeCounter("FibRequestExclSelfServiceFail", false, ENABLED);
   
@@ -447,6 +518,15 @@ public class DrStats {
       new Stats.ThreadSafeCounter("FibYieldsWhileAwaitingResponse", false, ENABLED);
   public static final Stats.ThreadSafeCounter heavyWaitsWhileAwaitingResponse =
       new Stats.ThreadSafeCounter("FibHeavyWaitsWhileAwaitingResponse", false, ENABLED);
+  public static final Stats.ThreadSafeCounter heavyWakeups =
+      new Stats.ThreadSafeCounter("FibHeavyWakeups", false, ENABLED);
+  // Time requesters spend in each phase of waiting for responses and acks.
+  public static final Stats.ThreadSafeCounter awaitSpinNanos =
+      new Stats.ThreadSafeCounter("FibAwaitSpinNanos", false, ENABLED);
+  public static final Stats.ThreadSafeCounter awaitYieldNanos =
+      new Stats.ThreadSafeCounter("FibAwaitYieldNanos", false, ENABLED);
+  public static final Stats.ThreadSafeCounter awaitHeavyNanos =
+      new Stats.ThreadSafeCounter("FibAwaitHeavyNanos", false, ENABLED);
 
   public static final Stats.UnsyncHistogram triesAwaitingReservedReadWord =
       new Stats.UnsyncHistogram("FibTriesAwaitingReservedReadWord", true, Integer.MAX_VALUE, ENABLED);
@@ -529,6 +609,15 @@ public class DrStats {
       new Stats.ThreadSafeCounter("FibNonRecursiveUnblock", false, ENABLED);
   public static final Stats.ThreadSafeSumCounter unblock =
       new Stats.ThreadSafeSumCounter("FibUnblock", ENABLED, recursiveUnblock, nonRecursiveUnblock);
+  // Lazy blocking in native code and JNI.
+  public static final Stats.ThreadSafeCounter lazyBlock =
+      new Stats.ThreadSafeCounter("FibLazyBlock", false, ENABLED);
+  public static final Stats.ThreadSafeCounter lazyBlockPublished =
+      new Stats.ThreadSafeCounter("FibLazyBlockPublished", false, ENABLED);
+  public static final Stats.ThreadSafeCounter fastLazyUnblock =
+      new Stats.ThreadSafeCounter("FibFastLazyUnblock", false, ENABLED);
+  public static final Stats.ThreadSafeCounter slowLazyUnblock =
+      new Stats.ThreadSafeCounter("FibSlowLazyUnblock", false, ENABLED);
 
   public static final Stats.ThreadSafeCounter fastProtocolYield =
       new Stats.ThreadSafeCounter("FibFastProtocolYield", false, ENABLED);
@@ -615,6 +704,33 @@ public class DrStats {
       new Stats.ThreadSafeCounter("FibPinThreshold", false, ENABLED);
   public static final Stats.ThreadSafeCounter thresholdReached =
       new Stats.ThreadSafeCounter("FibThresholdReached", false, ENABLED);
+  public static final Stats.ThreadSafeCounter siteCasPromotions =
+      new Stats.ThreadSafeCounter("FibSiteCasPromotions", false, ENABLED);
+  public static final Stats.ThreadSafeCounter siteCasStarts =
+      new Stats.ThreadSafeCounter("FibSiteCasStarts", false, ENABLED);
+  public static final Stats.ThreadSafeCounter thresholdTableEvictions =
+      new Stats.ThreadSafeCounter("FibThresholdTableEvictions", false, ENABLED);
+  public static final Stats.ThreadSafeCounter thresholdTableRehashes =
+      new Stats.ThreadSafeCounter("FibThresholdTableRehashes", false, ENABLED);
+  public static final Stats.ThreadSafeCounter thresholdTableDropped =
+      new Stats.ThreadSafeCounter("FibThresholdTableDropped", false, ENABLED);
+
+  // Sampling
+  public static final Stats.ThreadSafeCounter samplingBurstsChecked =
+      new Stats.ThreadSafeCounter("FibSamplingBurstsChecked", false, ENABLED);
+  public static final Stats.ThreadSafeCounter samplingBurstsSkipped =
+      new Stats.ThreadSafeCounter("FibSamplingBurstsSkipped", false, ENABLED);
+
+  public static final Stats.ThreadSafeCounter checkToggles =
+      new Stats.ThreadSafeCounter("FibCheckToggles", false, ENABLED);
+
+  // Race reports
+  public static final Stats.ThreadSafeCounter racePairs =
+      new Stats.ThreadSafeCounter("FibRacePairs", false, ENABLED);
+  public static final Stats.ThreadSafeCounter racePairsDropped =
+      new Stats.ThreadSafeCounter("FibRacePairsDropped", false, ENABLED);
+  public static final Stats.ThreadSafeCounter raceReportAccessSites =
+      new Stats.ThreadSafeCounter("FibRaceReportAccessSites", false, ENABLED);
   
   // Stride Epoch Maps
   public static final Stats.ThreadSafeCounter strideBlobsAllocated =  
@@ -0,0 +1,271 @@
+package org.jikesrvm.dr;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.jikesrvm.ArchitectureSpecific.StackframeLayoutConstants;
+import org.jikesrvm.Callbacks;
+import org.jikesrvm.Callbacks.ExitMonitor;
+import org.jikesrvm.VM;
+import org.jikesrvm.classloader.Context;
+import org.jikesrvm.classloader.MemberReference;
+import org.jikesrvm.classloader.RVMMethod;
+import org.jikesrvm.compilers.common.CompiledMethod;
+import org.jikesrvm.compilers.common.CompiledMethods;
+import org.jikesrvm.dr.metadata.AccessHistory;
+import org.jikesrvm.mm.mminterface.MemoryManager;
+import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.scheduler.RVMThread;
+import org.jikesrvm.scheduler.Synchronization;
+import org.mmtk.utility.statistics.Stats;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Interruptible;
+import org.vmmagic.pragma.NoInline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Offset;
+import org.vmmagic.unboxed.Word;
+import org.vmmagic.unboxed.WordArray;
+
+/**
+ * Race reports by site pair.
+ *
+ * A site is an application method and line, packed in a long as
+ * (method member id + 1) << 32 | line, or 0 if unknown.  The current site
+ * of a race is found by walking the stack of the racing thread to the
+ * first application frame, so nothing is recorded on race-free paths.
+ *
+ * The prior site of a race is a hint at the access the racing access
+ * conflicts with: the last recorded site at the location, which is that
+ * of the location's last race, or of a sampled access that changed the
+ * location's history.  Each thread samples one in
+ * drRaceReportSamplePeriod() checked accesses (a countdown on the access
+ * path); only a sampled access compares the history before and after and,
+ * if it changed, walks the stack.  So the prior site may be stale or
+ * unknown ("?"), and a location frozen at its first race has no later
+ * races to pair.  Sites are stored in a small table indexed by history
+ * address and forgotten after any GC, since histories may move.  Entries
+ * are unsynchronized hints.
+ *
+ * Races are deduplicated by (current, prior) site pair in a lock-free
+ * open-addressed table: a slot is claimed by CAS on its tag, published by
+ * its ready flag, and then only its count changes.  The pairs and their
+ * counts are written to drRaceReportFile() at exit.
+ */
+@Uninterruptible
+public final class RaceReports {
+
+  private static final int LOG_PAIRS = 12;
+  private static final int PAIRS = 1 << LOG_PAIRS;
+  private static final int LOG_LOCATIONS = 12;
+  private static final int LOCATIONS = 1 << LOG_LOCATIONS;
+
+  // Site pairs.
+  private static final int[] tags = Dr.RACE_REPORTS ? new int[PAIRS] : null;
+  private static final int[] ready = Dr.RACE_REPORTS ? new int[PAIRS] : null;
+  private static final long[] currentSites = Dr.RACE_REPORTS ? new long[PAIRS] : null;
+  private static final long[] priorSites = Dr.RACE_REPORTS ? new long[PAIRS] : null;
+  private static final int[] counts = Dr.RACE_REPORTS ? new int[PAIRS] : null;
+
+  // Last access site per location.
+  private static final WordArray locations = Dr.RACE_REPORTS ? WordArray.create(LOCATIONS) : null;
+  private static final int[] locationGcs = Dr.RACE_REPORTS ? new int[LOCATIONS] : null;
+  private static final long[] locationSites = Dr.RACE_REPORTS ? new long[LOCATIONS] : null;
+
+  static {
+    if (Dr.RACE_REPORTS) {
+      Callbacks.addExitMonitor(new ExitMonitor() {
+        //@Override
+        public void notifyExit(int value) {
+          write(Dr.config().drRaceReportFile());
+        }
+      });
+    }
+  }
+
+  /**
+   * Record a race at md/historyOffset by the current thread.
+   * @param md
+   * @param historyOffset
+   */
+  @NoInline
+  public static void race(Object md, Offset historyOffset) {
+    race(md, historyOffset, currentSite());
+  }
+
+  /**
+   * Record a race at md/historyOffset by an access at site.
+   * @param md
+   * @param historyOffset
+   * @param site
+   */
+  @NoInline
+  public static void race(Object md, Offset historyOffset, long site) {
+    final Address history = AccessHistory.address(md, historyOffset);
+    final int loc = location(history);
+    final long prior = locations.get(loc).EQ(history.toWord()) && locationGcs[loc] == Stats.gcCount() ? locationSites[loc] : 0L;
+    record(site, prior);
+    if (site != 0L) recordSite(loc, history, site);
+  }
+
+  /**
+   * Should the current thread record the site of this checked access?
+   * True once every drRaceReportSamplePeriod() calls.
+   */
+  @Inline
+  public static boolean sampleAccess() {
+    final RVMThread t = RVMThread.getCurrentThread();
+    if (--t.drReportCountdown > 0) return false;
+    t.drReportCountdown = Dr.config().drRaceReportSamplePeriod();
+    return true;
+  }
+
+  /**
+   * @return the state of the history at md/historyOffset, to pass to
+   * accessed() after a sampled access.
+   */
+  @Inline
+  public static Word state(Object md, Offset historyOffset) {
+    return AccessHistory.loadReadWord(md, historyOffset).xor(AccessHistory.loadWriteWord(md, historyOffset));
+  }
+
+  /**
+   * After a sampled access to md/historyOffset by the current thread:
+   * record its site as the location's last access site if it changed the
+   * history.
+   * @param md
+   * @param historyOffset
+   * @param before the state() of the history before the access
+   */
+  @Inline
+  public static void accessed(Object md, Offset historyOffset, Word before) {
+    if (state(md, historyOffset).NE(before)) recordAccess(md, historyOffset);
+  }
+
+  @NoInline
+  private static void recordAccess(Object md, Offset historyOffset) {
+    final long site = currentSite();
+    if (site == 0L) return;
+    final Address history = AccessHistory.address(md, historyOffset);
+    recordSite(location(history), history, site);
+    if (Dr.STATS) DrStats.raceReportAccessSites.inc();
+  }
+
+  @Inline
+  private static void recordSite(int loc, Address history, long site) {
+    locationSites[loc] = site;
+    locationGcs[loc] = Stats.gcCount();
+    locations.set(loc, history.toWord());
+  }
+
+  @Inline
+  private static int location(Address history) {
+    return hash(history.toWord().rshl(2).toInt(), LOG_LOCATIONS);
+  }
+
+  /**
+   * Count one race at the pair (current, prior).
+   */
+  private static void record(long current, long prior) {
+    final int tag = hash((int)(current ^ (current >>> 32)) * 31 + (int)(prior ^ (prior >>> 32)), 31) | 1;
+    for (int i = 0; i < PAIRS; i++) {
+      final int s = (tag + i) & (PAIRS - 1);
+      int t = tags[s];
+      if (t == 0) {
+        if (Synchronization.tryCompareAndSwap(tags, intOffset(s), 0, tag)) {
+          currentSites[s] = current;
+          priorSites[s] = prior;
+          counts[s] = 1;
+          Magic.writeFloor();
+          ready[s] = 1;
+          if (Dr.STATS) DrStats.racePairs.inc();
+          return;
+        }
+        t = tags[s];
+      }
+      if (t == tag) {
+        while (ready[s] == 0) {
+          Magic.pause();
+          Magic.readCeiling();
+        }
+        if (currentSites[s] == current && priorSites[s] == prior) {
+          Synchronization.fetchAndAdd(counts, intOffset(s), 1);
+          return;
+        }
+      }
+    }
+    if (Dr.STATS) DrStats.racePairsDropped.inc();
+  }
+
+  @Inline
+  private static int hash(int key, int bits) {
+    return (key * 0x9E3779B1) >>> (32 - bits);
+  }
+
+  @Inline
+  private static Offset intOffset(int i) {
+    return Offset.fromIntZeroExtend(i << 2);
+  }
+
+  /**
+   * Find the site of the innermost application frame of the current thread.
+   * @return the site, or 0 if there is none.
+   */
+  @NoInline
+  public static long currentSite() {
+    Address fp = Magic.getFramePointer();
+    Address ip = Magic.getReturnAddress(fp);
+    fp = Magic.getCallerFramePointer(fp);
+    while (Magic.getCallerFramePointer(fp).NE(StackframeLayoutConstants.STACKFRAME_SENTINEL_FP)) {
+      if (MemoryManager.addressInVM(ip)) {
+        final int cmid = Magic.getCompiledMethodID(fp);
+        if (cmid != StackframeLayoutConstants.INVISIBLE_METHOD_ID) {
+          final CompiledMethod cm = CompiledMethods.getCompiledMethod(cmid);
+          if (cm != null && cm.getCompilerType() != CompiledMethod.TRAP) {
+            final RVMMethod m = cm.getMethod();
+            if (m.getStaticContext() == Context.APP_CONTEXT) {
+              final int line = cm.findLineNumberForInstruction(cm.getInstructionOffset(ip));
+              return ((long)(m.getId() + 1) << 32) | (line & 0xFFFFFFFFL);
+            }
+          }
+        }
+      }
+      ip = Magic.getReturnAddress(fp);
+      fp = Magic.getCallerFramePointer(fp);
+    }
+    return 0L;
+  }
+
+  /**
+   * Write all site pairs and their counts to file, one per line, as
+   * "count current-site prior-site".
+   * @param file
+   */
+  @Interruptible
+  private static void write(String file) {
+    int pairs = 0;
+    try {
+      final PrintStream out = new PrintStream(new FileOutputStream(file));
+      for (int s = 0; s < PAIRS; s++) {
+        if (ready[s] != 0) {
+          out.println(counts[s] + "\t" + siteString(currentSites[s]) + "\t" + siteString(priorSites[s]));
+          pairs++;
+        }
+      }
+      out.close();
+    } catch (IOException e) {
+      VM.sysWriteln("Could not write race report ", file);
+      return;
+    }
+    VM.sysWrite("Wrote race report ", file);
+    VM.sysWriteln(": ", pairs, " site pairs");
+  }
+
+  @Interruptible
+  private static String siteString(long site) {
+    if (site == 0L) return "?";
+    final MemberReference m = MemberReference.getMemberRef((int)(site >>> 32) - 1);
+    return m.getType().getName() + "." + m.getName() + m.getDescriptor() + ":" + (int)site;
+  }
+}
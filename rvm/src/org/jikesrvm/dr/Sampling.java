@@ -0,0 +1,114 @@
+package org.jikesrvm.dr;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.classloader.RVMMethod;
+import org.jikesrvm.scheduler.RVMThread;
+import org.vmmagic.pragma.Entrypoint;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.NoInline;
+import org.vmmagic.pragma.Uninterruptible;
+
+/**
+ * Bursty per-method sampling of race checks, as in LiteRace.
+ *
+ * Each instrumented method calls enter with its slot on entry.  A method's
+ * invocations are checked or skipped in bursts of -X:vm:drSampleBurst
+ * invocations: a method is sampled once every period bursts, and each time
+ * it is sampled its period grows by -X:vm:drSampleDecay, up to
+ * -X:vm:drSampleMaxPeriod.  Cold methods are thus checked often and hot
+ * methods rarely.  The decision is kept in the current thread for the
+ * accesses that follow, and after each call returns the caller calls resume
+ * to take back its own method's decision.  A caller that catches an
+ * exception runs under the thrower's decision until its next call returns.
+ *
+ * Only read and write checks are sampled.  Synchronization is always
+ * tracked, so every sampled check is against exact happens-before and a
+ * reported race is a real race.  Methods share the slots of a fixed hashed
+ * table, and updates are unsynchronized: periods are only hints.
+ */
+@Uninterruptible
+public final class Sampling {
+
+  private static final int LOG_METHODS = 12;
+
+  /**
+   * Sampling period of each method slot (0 means 1).
+   */
+  private static final int[] periods = Dr.SAMPLING ? new int[1 << LOG_METHODS] : null;
+  /**
+   * Bursts to skip before each method slot is sampled again.
+   */
+  private static final int[] skips = Dr.SAMPLING ? new int[1 << LOG_METHODS] : null;
+  /**
+   * Invocations left in each method slot's current burst.
+   */
+  private static final int[] countdowns = Dr.SAMPLING ? new int[1 << LOG_METHODS] : null;
+  /**
+   * Is each method slot's current burst checked?
+   */
+  private static final boolean[] sampled = Dr.SAMPLING ? new boolean[1 << LOG_METHODS] : null;
+
+  /**
+   * The slot of method, passed by its compiled code to enter and resume.
+   * @param method
+   * @return
+   */
+  public static int slot(final RVMMethod method) {
+    return ((method.getId() + 1) * 0x9E3779B1) >>> (32 - LOG_METHODS);
+  }
+
+  /**
+   * Should the current thread check this access?
+   */
+  @Inline
+  public static boolean sample() {
+    return RVMThread.getCurrentThread().drSampling;
+  }
+
+  /**
+   * Count an invocation of the method with this slot, and check or skip
+   * the accesses that follow by its current burst.
+   * @param slot
+   */
+  @Entrypoint
+  public static void enter(final int slot) {
+    final int n = countdowns[slot] - 1;
+    if (n > 0) {
+      countdowns[slot] = n;
+    } else {
+      nextBurst(slot);
+    }
+    RVMThread.getCurrentThread().drSampling = sampled[slot];
+  }
+
+  /**
+   * After a call returns, check or skip the accesses that follow by the
+   * current burst of the calling method, with this slot.
+   * @param slot
+   */
+  @Entrypoint
+  public static void resume(final int slot) {
+    RVMThread.getCurrentThread().drSampling = sampled[slot];
+  }
+
+  /**
+   * Decide whether the method slot samples its next burst.
+   * @param slot
+   */
+  @NoInline
+  private static void nextBurst(final int slot) {
+    if (skips[slot] > 0) {
+      skips[slot]--;
+      sampled[slot] = false;
+      if (Dr.STATS) DrStats.samplingBurstsSkipped.inc();
+    } else {
+      final int p = periods[slot] > 0 ? periods[slot] : 1;
+      skips[slot] = p - 1;
+      final long next = (long)p * VM.drSampleDecay;
+      periods[slot] = next < VM.drSampleMaxPeriod ? (int)next : VM.drSampleMaxPeriod;
+      sampled[slot] = true;
+      if (Dr.STATS) DrStats.samplingBurstsChecked.inc();
+    }
+    countdowns[slot] = VM.drSampleBurst;
+  }
+}
@@ -71,8 +71,8 @@ public final class CASFastTrack extends FastTrack {
 
     if ((Epoch.isEpoch(r) && VC.epochHB(r, nowVC))
         || ((Epoch.isMapRef(r)
-            && (Dr.config().drCasFineGrained() && casHB(md, historyOffset, Epoch.asMapRef(r), nowVC)
-                || !Dr.config().drCasFineGrained() && VC.hb(Epoch.asMapRef(r), nowVC)))
+            && (Dr.CAS_FINE_GRAINED && casHB(Epoch.asMapRef(r), nowVC)
+                || !Dr.CAS_FINE_GRAINED && VC.hb(Epoch.asMapRef(r), nowVC)))
         || Epoch.isNone(r))) {
       // SET writer
       AccessHistory.storeWriteWord(md, historyOffset, now);
@@ -80,40 +80,41 @@ public final class CASFastTrack extends FastTrack {
       AccessHistory.releaseReadWord(md, historyOffset, now);
     } else {
       race(true, md, historyOffset, AccessHistory.loadWriteWord(md, historyOffset), r);
-      return;
-//      if (Dr.config().fibPatchRaces()) {
-//        if (Epoch.isMapRef(r)) {
-//          Dr.readers().install(md, historyOffset, Epoch.asMapRef(r));
-//        } else {
-//          AccessHistory.releaseReadWord(md, historyOffset, r);
-//        }
-//      }
+      if (recordOnRace()) {
+        // SET writer as if ordered
+        AccessHistory.storeWriteWord(md, historyOffset, now);
+        // UNLOCK reader
+        AccessHistory.releaseReadWord(md, historyOffset, now);
+      }
     }
   }
 
   /**
-   * Does the given reader map happen before the given vc?
-   * If not report a race for this location.
+   * Does the given reader map happen before the given vc?  If so, reserve
+   * all its entries so that no read slips in before the write is recorded.
+   * If not, restore the entries reserved so far and leave the race to the
+   * caller, which reports it once and may reinstall the map.
    * 
-   * @param md
-   * @param historyOffset
    * @param map
    * @param nowVC
    * @return
    */
-  private static boolean casHB(final Object md, final Offset historyOffset,
-      final WordArray map, final WordArray nowVC) {
+  private static boolean casHB(final WordArray map, final WordArray nowVC) {
+    final WordArray reserved = RVMThread.getCurrentThread().drReservedReads;
     for (int tid = 0; tid < Epoch.MAX_THREADS; tid++) {
       final Word e = Dr.readers().get(map, tid);
-      if (!VC.epochHB(e, nowVC) || !Dr.readers().attemptReserve(map, tid, e)) {
-        race(true, md, historyOffset); //, AccessHistory.loadWriteWord(md, historyOffset), map.toWord());
-//        if (Dr.config().fibPatchRaces()) {
-//          for (; tid >= 0; tid--) {
-//            Dr.readers().set(map, tid, Epoch.NONE); // Cheating, since no way to recover old...
-//          }
-//        }
+      if (!VC.epochHB(e, nowVC)) {
+        for (int i = tid - 1; i >= 0; i--) {
+          Dr.readers().release(map, i, reserved.get(i));
+        }
         return false;
       }
+      if (Dr.readers().attemptReserve(map, tid, e)) {
+        reserved.set(tid, e);
+      } else {
+        // tid just read again: check its new epoch.
+        tid--;
+      }
     }
     return true;
   }
@@ -141,7 +142,7 @@ public final class CASFastTrack extends FastTrack {
         // Read in same epoch as last read by this thread.
         if (Dr.STATS) DrStats.readSharedSameEpoch.inc();
         return;
-      } else if (Dr.config().drCasFineGrained() && !Epoch.isReserved(e)) {
+      } else if (Dr.CAS_FINE_GRAINED && !Epoch.isReserved(e)) {
         // Read in newer epoch than last read by this thread.
         // Check write hb read and CAS to record read.
         final Word w = AccessHistory.loadWriteWord(md, historyOffset);
@@ -176,15 +177,8 @@ public final class CASFastTrack extends FastTrack {
     // Check write hb read.
     if (!VC.epochHB(w, threadVC)) {
       race(false, md, historyOffset, w, r);
-      return;
-//      if (Dr.config().fibPatchRaces()) {
-//        if (Epoch.isMapRef(r)) {
-//          Dr.readers().install(md, historyOffset, Epoch.asMapRef(r));
-//        } else {
-//          AccessHistory.releaseReadWord(md, historyOffset, r);
-//        }
-//        return;
-//      }
+      // Otherwise record the read as if ordered, still holding the reader.
+      if (!recordOnRace()) return;
     }
 
     if (Epoch.isEpoch(r)) {
@@ -3,7 +3,10 @@ package org.jikesrvm.dr.fasttrack;
 import org.jikesrvm.VM;
 import org.jikesrvm.dr.Dr;
 import org.jikesrvm.dr.DrDebug;
+import org.jikesrvm.dr.DataRaceException;
+import org.jikesrvm.dr.DrControl;
 import org.jikesrvm.dr.DrStats;
+import org.jikesrvm.dr.RaceReports;
 import org.jikesrvm.dr.metadata.AccessHistory;
 import org.jikesrvm.dr.metadata.Epoch;
 import org.jikesrvm.dr.metadata.VC;
@@ -11,6 +14,7 @@ import org.jikesrvm.scheduler.RVMThread;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.NoInline;
 import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.pragma.UninterruptibleNoWarn;
 import org.vmmagic.pragma.Unpreemptible;
 import org.vmmagic.unboxed.Offset;
 import org.vmmagic.unboxed.Word;
@@ -72,14 +76,8 @@ public abstract class FastTrack {
    * @param historyOffset
    */
   public static void race(boolean isWrite, Object mdObject, Offset historyOffset) {
-    if (Dr.STATS) {
-      DrStats.races.inc();
-    }
-    if (Dr.config().drFirstRacePerLocation()) {
-      freeze(mdObject, historyOffset);
-    }
-    if (RVMThread.getCurrentThread().incDrRaces() > 1L) return;
-    if (Dr.REPORTS) {
+    if (!noteRace(mdObject, historyOffset)) return;
+    if (RVMThread.getCurrentThread().incDrRaces() == 1L && Dr.REPORTS) {
       DrDebug.lock();
       DrDebug.twriteln("######## RACE (first in this thread) ########");
       DrDebug.twrite(); VM.sysWrite(isWrite ? " W " : " R ",
@@ -91,17 +89,25 @@ public abstract class FastTrack {
       DrDebug.twriteln("#############################################");
       DrDebug.unlock();
     }
+    act(isWrite, mdObject, historyOffset);
   }
 
+  /**
+   * Report a race found by the CAS algorithm, which holds the read word
+   * locked: lr is its value before locking.  If recordOnRace(), the caller
+   * records the access, which unlocks the read word.
+   */
   public static void race(boolean isWrite, Object mdObject, Offset historyOffset, Word lw, Word lr) {
-    if (Dr.STATS) {
-      DrStats.races.inc();
+    if (!freezeOnRace() && !recordOnRace()) {
+      // Skip the access: restore the history to unlock it.
+      if (Epoch.isMapRef(lr)) {
+        Dr.readers().install(mdObject, historyOffset, Epoch.asMapRef(lr));
+      } else {
+        AccessHistory.releaseReadWord(mdObject, historyOffset, lr);
+      }
     }
-    if (Dr.config().drFirstRacePerLocation()) {
-      freeze(mdObject, historyOffset);
-    }
-    if (RVMThread.getCurrentThread().incDrRaces() > 1L) return;
-    if (Dr.REPORTS) {
+    if (!noteRace(mdObject, historyOffset)) return;
+    if (RVMThread.getCurrentThread().incDrRaces() == 1L && Dr.REPORTS) {
       DrDebug.lock();
       DrDebug.twriteln("######## RACE (first in this thread) ########");
       DrDebug.twrite(); VM.sysWrite(isWrite ? " W " : " R ",
@@ -113,9 +119,123 @@ public abstract class FastTrack {
       DrDebug.twriteln("#############################################");
       DrDebug.unlock();
     }
-  } 
+    act(isWrite, mdObject, historyOffset);
+  }
+
+  /**
+   * Has a race been seen under -X:vm:drRaceBehavior=skipAll?
+   */
+  private static boolean skippingAll = false;
+
+  /**
+   * Has a race been seen under -X:vm:drRaceBehavior=skipAll, so that
+   * checking is off for good?  Always false unless Dr.RACE_SKIP_ALL.
+   */
+  @Inline
+  public static boolean skippingAll() {
+    return Dr.RACE_SKIP_ALL && skippingAll;
+  }
+
+  /**
+   * Freeze a location when it races?  Requires drFirstRacePerLocation(),
+   * and -X:vm:drRaceBehavior chooses: denial and skipAcc (and its alias
+   * patch) never freeze.
+   */
+  @Inline
+  public static boolean freezeOnRace() {
+    return Dr.config().drFirstRacePerLocation()
+        && VM.drRaceBehavior != VM.RACE_DENIAL
+        && VM.drRaceBehavior != VM.RACE_PATCH
+        && VM.drRaceBehavior != VM.RACE_SKIP_ACC;
+  }
+
+  /**
+   * Record a racing access in the history of a location that is not frozen,
+   * as if it had not raced?  Under skipAcc (and its alias patch) the
+   * history is left as it was before the access.  Checkers that record
+   * check this after race() returns.
+   */
+  @Inline
+  public static boolean recordOnRace() {
+    return !freezeOnRace()
+        && VM.drRaceBehavior != VM.RACE_PATCH
+        && VM.drRaceBehavior != VM.RACE_SKIP_ACC;
+  }
+
+  /**
+   * Freeze (if the policy says so) and count a race.
+   * @return false if races are no longer reported.
+   */
+  public static boolean noteRace(Object md, Offset historyOffset) {
+    if (freezeOnRace()) {
+      freeze(md, historyOffset);
+    }
+    if (skippingAll) return false;
+    if (VM.drRaceBehavior == VM.RACE_SKIP_ALL) {
+      if (!Dr.RACE_SKIP_ALL && !Dr.TOGGLE) {
+        VM.sysFail("-X:vm:drRaceBehavior=skipAll needs a dr config with drRaceSkipAll() or drToggleChecks()");
+      }
+      // Stop checking (see DrRuntime.checking()).
+      skippingAll = true;
+      if (Dr.TOGGLE) DrControl.setChecking(false);
+    }
+    if (Dr.STATS) {
+      DrStats.races.inc();
+    }
+    if (Dr.RACE_REPORTS) {
+      RaceReports.race(md, historyOffset);
+    }
+    return true;
+  }
+
+  /**
+   * Halt or throw in the racing thread if the policy says so.
+   */
+  @NoInline
+  private static void act(boolean isWrite, Object md, Offset historyOffset) {
+    if (VM.drRaceBehavior == VM.RACE_HALT) {
+      DrDebug.lock();
+      DrDebug.twrite(); VM.sysWriteln(isWrite ? "Write race on " : "Read race on ",
+          AccessHistory.address(md, historyOffset), ".  Halting.");
+      RVMThread.dumpStack();
+      DrDebug.unlock();
+      VM.sysExit(VM.EXIT_STATUS_DATA_RACE);
+    } else if (VM.drRaceBehavior == VM.RACE_EXCEPTION) {
+      if (!Dr.RACE_EXCEPTIONS) {
+        VM.sysFail("-X:vm:drRaceBehavior=exception needs a dr config with drRaceExceptions()");
+      }
+      // Thrown once the whole access is done (see throwPendingRace()), so
+      // that no batch, coarse chunk split, or lock is left half done.
+      RVMThread.getCurrentThread().drPendingRace = isWrite ? PENDING_WRITE_RACE : PENDING_READ_RACE;
+    }
+  }
+
+  public static final int PENDING_READ_RACE = 1;
+  public static final int PENDING_WRITE_RACE = 2;
+
+  /**
+   * Throw the race found by the access just analyzed, if any.  Called by
+   * DrRuntime's access entrypoints once the analysis is complete.  Compiles
+   * to nothing unless Dr.RACE_EXCEPTIONS.
+   */
+  @Inline
+  public static void throwPendingRace() {
+    if (Dr.RACE_EXCEPTIONS && RVMThread.getCurrentThread().drPendingRace != 0) throwRace();
+  }
+
+  /**
+   * Throw in the racing thread.  Called with the analysis complete, so it
+   * is safe to allocate and unwind.
+   */
+  @NoInline
+  @UninterruptibleNoWarn("Allocates and throws in the racing thread")
+  private static void throwRace() {
+    final RVMThread t = RVMThread.getCurrentThread();
+    final boolean isWrite = t.drPendingRace == PENDING_WRITE_RACE;
+    t.drPendingRace = 0;
+    throw new DataRaceException(isWrite);
+  }
 
-  
   /**
    * Set read and write word to origin epoch (Epoch.TAG) that happens before
    * all non-zero epochs.  Will cause all HB analyses to treat as in same
@@ -116,10 +116,7 @@ public final class UnsyncFastTrack extends FastTrack {
         ? !VC.hb(Epoch.asMapRef(lastReadEpoch), threadVC)
             : !VC.epochHB(lastReadEpoch, threadVC)) {
       race(true, md, historyOffset);
-      return;
-//      if (Dr.config().fibPatchRaces()) {
-//        return;
-//      }
+      if (!recordOnRace()) return;
     }
     
     AccessHistory.storeWriteWord(md, historyOffset, epoch);
@@ -211,10 +208,7 @@ public final class UnsyncFastTrack extends FastTrack {
       final Word lastWriteEpoch = AccessHistory.loadWriteWord(md, historyOffset);
       if (!VC.epochHB(lastWriteEpoch, threadVC)) {
         race(false, md, historyOffset);
-        return;
-//        if (Dr.config().fibPatchRaces()) {
-//          return;
-//        }
+        if (!recordOnRace()) return;
       }
       // Set thread's entry in read map.
       Dr.readers().set(Epoch.asMapRef(lastReadWord), epoch);
@@ -229,10 +223,7 @@ public final class UnsyncFastTrack extends FastTrack {
         final Word lastWriteEpoch = AccessHistory.loadWriteWord(md, historyOffset);
         if (!VC.epochHB(lastWriteEpoch, threadVC)) {
           race(false, md, historyOffset);
-          return;
-//          if (Dr.config().fibPatchRaces()) {
-//            return;
-//          }
+          if (!recordOnRace()) return;
         }
         if (Dr.STATS) DrStats.readRemote.inc();
         // Inflate.
@@ -0,0 +1,89 @@
+package org.jikesrvm.dr.fib;
+
+import org.jikesrvm.dr.Dr;
+import org.jikesrvm.dr.DrStats;
+import org.jikesrvm.dr.metadata.ObjectShadow;
+import org.jikesrvm.objectmodel.ObjectModel;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Offset;
+
+/**
+ * Per-site learning of which histories are contended enough to use CAS
+ * mode instead of FIB.
+ *
+ * A site is a field: the type of the object holding the history and the
+ * history's offset, or the history's address for statics.  Array element
+ * histories have no site and keep the per-location policy.  Sites share
+ * the slots of a fixed hashed table, so colliding sites learn together.
+ *
+ * Each slot counts the histories that reached their conflict threshold and
+ * switched to CAS mode.  Every switch halves the threshold for the rest of
+ * the site's histories, and once fibSiteCasAfter() histories of a site have
+ * switched, its histories start in CAS mode at their first access.
+ * Updates are unsynchronized: counts are only hints.
+ */
+@Uninterruptible
+public final class ContentionSites {
+
+  private static final int LOG_SLOTS = 12;
+
+  /**
+   * Number of histories of each slot that switched to CAS mode.
+   */
+  private static final int[] promotions = Dr.SITE_ADAPTIVE_CAS ? new int[1 << LOG_SLOTS] : null;
+
+  private static final int CAS_AFTER = Dr.config().fibSiteCasAfter();
+
+  /**
+   * Get the site slot of the history at md/historyOffset.
+   * @param md
+   * @param historyOffset
+   * @return the slot, or -1 if the history has no site.
+   */
+  @Inline
+  public static int site(final Object md, final Offset historyOffset) {
+    final int key;
+    if (md == null) {
+      key = historyOffset.toWord().rshl(2).toInt();
+    } else if (ObjectShadow.isArrayHistories(md)) {
+      return -1;
+    } else {
+      key = ObjectModel.getObjectType(md).getId() * 0x9E3779B1 + historyOffset.toInt();
+    }
+    return (key * 0x9E3779B1) >>> (32 - LOG_SLOTS);
+  }
+
+  /**
+   * Number of conflicts after which a history of site switches to CAS mode.
+   * @param site
+   * @param base - the per-location threshold
+   */
+  @Inline
+  public static int threshold(final int site, final int base) {
+    if (site < 0) return base;
+    final int t = base >> promotions[site];
+    return t > 0 ? t : 1;
+  }
+
+  /**
+   * Record that a history of site switched to CAS mode.
+   * @param site
+   */
+  public static void promote(final int site) {
+    if (site < 0) return;
+    if (promotions[site] < 31) promotions[site]++;
+    if (Dr.STATS) DrStats.siteCasPromotions.inc();
+  }
+
+  /**
+   * Should the history at md/historyOffset start in CAS mode?
+   * @param md
+   * @param historyOffset
+   */
+  @Inline
+  public static boolean startsInCas(final Object md, final Offset historyOffset) {
+    final int site = site(md, historyOffset);
+    return site >= 0 && promotions[site] >= CAS_AFTER;
+  }
+}
@@ -1,22 +1,26 @@
 package org.jikesrvm.dr.fib;
 
-//import static org.jikesrvm.runtime.SysCall.sysCall;
+import static org.jikesrvm.runtime.SysCall.sysCall;
 
 import org.jikesrvm.SizeConstants;
 import org.jikesrvm.VM;
+import org.jikesrvm.classloader.RVMField;
 import org.jikesrvm.compilers.common.CompiledMethods;
 import org.jikesrvm.dr.Dr;
 import org.jikesrvm.dr.DrDebug;
 import org.jikesrvm.dr.DrRuntime;
 import org.jikesrvm.dr.DrStats;
+import org.jikesrvm.dr.RaceReports;
 import org.jikesrvm.dr.fasttrack.FastTrack;
 import org.jikesrvm.dr.metadata.AccessHistory;
 import org.jikesrvm.dr.metadata.Epoch;
+import org.jikesrvm.dr.metadata.Renormalization;
 import org.jikesrvm.dr.metadata.VC;
 import org.jikesrvm.mm.mminterface.MemoryManager;
 import org.jikesrvm.objectmodel.ObjectModel;
 import org.jikesrvm.runtime.Entrypoints;
 import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.runtime.Time;
 import org.jikesrvm.scheduler.RVMThread;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.NoInline;
@@ -37,21 +41,49 @@ import org.vmmagic.unboxed.WordArray;
  * 
  * 
  * TODO All per-thread data here should eventually move into RVMThread
- * to save the indirection, improve locality, etc. (transferRequests should
- * probably be in the same cache line as takeYieldPoint like octetRequests).
+ * to save the indirection, improve locality, etc.  (The requests and
+ * response words and the block depth already have, to share a cache line
+ * with takeYieldpoint like octetRequests.)
  * 
  * TODO do some layout engineering to get thread-local stuff together
  * on a single (or few) cache line, with requests and responses separate.
+ * (For now, the padding fields at the end keep each FibComm off the cache
+ * lines of the next object in memory, often another thread's FibComm.
+ * The constructor checks that the field layout put them last.)
  * 
  */
 @Uninterruptible
 public final class FibComm implements SizeConstants {
   
-  static {
-    if (VM.VerifyAssertions) {
-      VM._assert(Epoch.MAX_THREADS <= 32,
-          "We use 32-bit vectors for requests and for ack responses, supporting up to 32 threads.");
-    }
+  /**
+   * Are there too many threads for single-word request and ack bit vectors?
+   * 
+   * If so, requests use a two-level set: member bits live in the words of
+   * requestSet/ackSet (one word per BITS_IN_WORD threads), which are only
+   * touched while holding the queue LOCKED, and the requests word holds a
+   * summary bit per member word.  Bit 0 is reserved as the owner's EMPTY
+   * bit, so member words share summary bits round-robin once there are
+   * more than BITS_IN_WORD - 1 of them.  Ack responses become a count of
+   * acks instead of a bit vector of ackers.
+   */
+  static final boolean WIDE = Epoch.MAX_THREADS > BITS_IN_WORD;
+  /**
+   * Number of member words in WIDE mode.
+   */
+  private static final int REQUEST_WORDS = (Epoch.MAX_THREADS + BITS_IN_WORD - 1) >> LOG_BITS_IN_WORD;
+  /**
+   * Number of summary bits in WIDE mode.
+   */
+  private static final int SUMMARY_BITS = BITS_IN_WORD - 1;
+  
+  /**
+   * WIDE mode: summary bit for member word w.
+   * @param w
+   * @return
+   */
+  @Inline
+  private static Word summaryBit(final int w) {
+    return Word.one().lsh(1 + (w % SUMMARY_BITS));
   }
   
   /**
@@ -68,13 +100,28 @@ public final class FibComm implements SizeConstants {
   
   /**
    * Owner's bit for use in bit vectors.
+   * In WIDE mode, this is the owner's bit within its request group.
    */
   protected final Word BIT;
   
   /**
-   * Bit vector of threads that have made a request to this.owner.
+   * WIDE mode: index of owner's member word and the summary bit for that word.
+   * Otherwise, GROUP_BIT == BIT.
    */
-  private volatile Word requests;
+  private final int GROUP;
+  private final Word GROUP_BIT;
+  
+  /**
+   * WIDE mode: member bits of requesting threads (and of those requesting just
+   * acks).  Guarded by holding requests LOCKED.
+   */
+  private final WordArray requestSet = WIDE ? WordArray.create(REQUEST_WORDS) : null;
+  private final WordArray ackSet = WIDE ? WordArray.create(REQUEST_WORDS) : null;
+  
+  // The requests word (bit vector of threads that have made a request to
+  // this.owner), the response word, and the block depth live in
+  // RVMThread (drRequests, drResponse, drBlockDepth), next to
+  // takeYieldpoint.
   
   /**
    * Bit vector of threads whose requests to this thread are just for acks.
@@ -123,7 +170,67 @@ public final class FibComm implements SizeConstants {
   private Offset offset = Offset.zero();
   
   private Word targetEpoch = Epoch.NONE;
-  
+
+  // BATCHES
+
+  /**
+   * Maximum number of histories in a request batch.
+   */
+  public static final int BATCH_SIZE = BITS_IN_WORD;
+
+  /**
+   * Histories this.owner needs transferred from a single owner, batchOwner.
+   * Entry 0 is the anchor: it is requested through the normal protocol,
+   * and the rest of the batch rides along with it.  The owner (or a thread
+   * self-serving on its behalf) transfers as many of the rest as it can
+   * while handling the anchor, and marks them in batchServed.
+   */
+  private final Object[] batchObjects = Dr.BUFFER ? new Object[BATCH_SIZE] : null;
+  private final WordArray batchOffsets = Dr.BUFFER ? WordArray.create(BATCH_SIZE) : null;
+  private int batchSize = 0;
+  private int batchOwner = -1;
+  private boolean batchIsWrite = false;
+  /**
+   * Bit k is set iff batch entry k was transferred to this.owner.
+   * Written by the server before the anchor's response.
+   */
+  private Word batchServed = Word.zero();
+
+  // ASYNCHRONOUS REQUESTS
+
+  /**
+   * Log EXCL -> EXCL requests and proceed instead of awaiting a response?
+   * Not supported in WIDE mode.
+   */
+  public static final boolean ASYNC = Dr.ASYNC_REQUESTS && !WIDE;
+
+  /**
+   * Maximum number of pending entries in an asynchronous request log.
+   */
+  private static final int ASYNC_LOG_SIZE = 32;
+
+  /**
+   * Pending log of this.owner's asynchronous requests.  Each entry records an
+   * access this.owner made to a history owned by another thread, this.owner's
+   * epoch at the access, and what this.owner knew of the owner then.  The
+   * state word of an entry is zero once handled, or names the owner and the
+   * kind of access while pending.  Pending entries are written only while
+   * holding their owner's queue, so the owner reads them consistently while
+   * handling its queue, and then zeroes their states.
+   */
+  private final Object[] asyncObjects = ASYNC ? new Object[ASYNC_LOG_SIZE] : null;
+  private final WordArray asyncOffsets = ASYNC ? WordArray.create(ASYNC_LOG_SIZE) : null;
+  private final WordArray asyncEpochs = ASYNC ? WordArray.create(ASYNC_LOG_SIZE) : null;
+  private final WordArray asyncKnowledge = ASYNC ? WordArray.create(ASYNC_LOG_SIZE) : null;
+  private final WordArray asyncStates = ASYNC ? WordArray.create(ASYNC_LOG_SIZE) : null;
+  private volatile int asyncCount = 0;
+
+  /**
+   * The owner that this.owner's synchronous request in effect is sent to, or null.
+   * Distinguishes a synchronous request from a queue entry for logged requests.
+   */
+  private FibComm requestedFrom = null;
+
   /**
    * For debugging/printing purposes only.
    * True if the request in effect requires only ACK and not transfer.
@@ -131,11 +238,6 @@ public final class FibComm implements SizeConstants {
    */
   private boolean deflating = false;
 
-  /**
-   * Remote thread(s) place(s) response(s) to this.owner's requests here.
-   */
-  private volatile Word response = NO_RESPONSE;
-  
 //  private static final WordArray responses = MemoryManager.newNonMovingWordArray(Epoch.MAX_THREADS * Epoch.MAX_THREADS);
 //  
 //  private static Address responseSlot(int requester, int responder) {
@@ -154,31 +256,34 @@ public final class FibComm implements SizeConstants {
   private static final Word SHARED_RESPONSE = EXCL_RESPONSE.not();
   // private static final Word RETRY_RESPONSE = RACE_RESPONSE.not();
   
-//  /**
-//   * Enable heavy waiting for slow responses?
-//   */
-//  private static final boolean HEAVY_WAITS = Dr.config().fibHeavyTransfers();
-//  
-//  /**
-//   * Is this thread currently heavy waiting?
-//   */
-//  private volatile boolean heavyWaiting = false;
+  /**
+   * Enable heavy waiting for slow responses?  If so, a requester that is
+   * still waiting after spinsBeforeYield() spins and yieldsBeforeHeavyWait()
+   * yields blocks and waits on its octetMonitor until a responder wakes it.
+   */
+  private static final boolean HEAVY_WAITS = Dr.config().fibHeavyTransfers();
   
   /**
-   * How deep is reentrancy of blocking?
+   * Is this thread currently heavy waiting?
    */
-  private int blockDepth = 0;
+  private volatile boolean heavyWaiting = false;
+  
   /**
    * How deep is reentrancy of blocking?
    */
   public int getBlockDepth() {
-    return blockDepth;
+    return thread.drBlockDepth;
   }
   /**
    * Debugging: where did blocking start?
    */
   private int blockSourceMethodID, blockSourceCallerMethodID, blockSourceCallerCallerMethodID;
 
+  /**
+   * Is the outermost block lazy (see blockLazily())?  Accessed only by owner.
+   */
+  private boolean blockedLazily = false;
+
   
   /**
    * How many times should a spin loop spin before calling RVMThread.yield*?
@@ -188,14 +293,32 @@ public final class FibComm implements SizeConstants {
     return VM.octetWaitSpinCount;
   }
   
+  /**
+   * How many times should a wait loop yield before a heavy wait?
+   */
+  @Inline
+  public static final int yieldsBeforeHeavyWait(){
+    return VM.octetWaitYieldCount;
+  }
+  
   public FibComm(final RVMThread thread, int tid, WordArray vc) {
     if (VM.VerifyAssertions) VM._assert(thread.isDrThread());
     this.thread = thread;
-    this.BIT = Word.one().lsh(tid);
-    this.EMPTY = this.BIT;
+    if (WIDE) {
+      this.BIT = Word.one().lsh(tid & (BITS_IN_WORD - 1));
+      this.GROUP = tid >> LOG_BITS_IN_WORD;
+      this.GROUP_BIT = summaryBit(GROUP);
+      this.EMPTY = Word.one();
+    } else {
+      this.BIT = Word.one().lsh(tid);
+      this.GROUP = 0;
+      this.GROUP_BIT = this.BIT;
+      this.EMPTY = this.BIT;
+    }
     this.BLOCKED = this.EMPTY.not();
-    this.requests = this.EMPTY;
+    thread.drRequests = this.EMPTY;
     this.vc = vc;
+    if (VM.VerifyAssertions) checkPadding();
     if (PRINT) {
       DrDebug.lock();
       DrDebug.twrite(thread); VM.sysWriteln(" has BIT = ", BIT);
@@ -209,8 +332,8 @@ public final class FibComm implements SizeConstants {
   
   @Inline
   private boolean attemptRequests(final Word old, final Word noo) {
-    if (ObjectReference.fromObject(this).toAddress().attempt(old, noo,
-        Entrypoints.drFibCommRequestsField.getOffset())) {
+    if (ObjectReference.fromObject(thread).toAddress().attempt(old, noo,
+        Entrypoints.drRequestsField.getOffset())) {
       if (PRINT_DETAIL) printAttemptRequests(old, noo);
       Magic.readCeiling();
       return true;
@@ -245,16 +368,48 @@ public final class FibComm implements SizeConstants {
     }
   }
   
+  /**
+   * Record this thread's request in remote's (LOCKED) queue.
+   * @param remote
+   * @param remoteReqs - remote's requests word before it was locked
+   * @param ackOnly - is this just a request for an ack?
+   * @return the requests word to store to unlock remote's queue.
+   */
+  @Inline
+  private Word enqueueIn(final FibComm remote, final Word remoteReqs, final boolean ackOnly) {
+    if (WIDE) {
+      remote.requestSet.set(GROUP, remote.requestSet.get(GROUP).or(this.BIT));
+      if (ackOnly) remote.ackSet.set(GROUP, remote.ackSet.get(GROUP).or(this.BIT));
+    } else if (ackOnly) {
+      remote.ackRequests = remote.ackRequests.or(this.BIT);
+    }
+    return remoteReqs.or(this.GROUP_BIT);
+  }
+  
+  /**
+   * Is tid among the requesters in reqs?  For debugging output only.
+   * @param reqs
+   * @param tid
+   * @return
+   */
+  private boolean hasRequestFrom(final Word reqs, final int tid) {
+    if (WIDE) {
+      return !reqs.and(summaryBit(tid >> LOG_BITS_IN_WORD)).isZero()
+          && !requestSet.get(tid >> LOG_BITS_IN_WORD).and(Word.one().lsh(tid & (BITS_IN_WORD - 1))).isZero();
+    }
+    return !reqs.and(Word.one().lsh(tid)).isZero();
+  }
+  
   @Inline
   private Word prepareRequests() {
-    return ObjectReference.fromObject(this).toAddress().prepareWord(Entrypoints.drFibCommRequestsField.getOffset());
+    return ObjectReference.fromObject(thread).toAddress().prepareWord(Entrypoints.drRequestsField.getOffset());
   }
   
   @Inline
   private void setRequests(final Word x) {
     if (PRINT_DETAIL) printSetRequests(x);
     Magic.writeFloor();
-    requests = x;
+    thread.drRequests = x;
   }
   private void printSetRequests(final Word x) {
     if (PRINT_DETAIL) {
@@ -277,14 +432,14 @@ public final class FibComm implements SizeConstants {
   
   @Inline
   private boolean attemptResponse(Word old, Word noo) {
-    boolean x = ObjectReference.fromObject(this).toAddress().attempt(old, noo, Entrypoints.drFibCommResponseField.getOffset());
+    boolean x = ObjectReference.fromObject(thread).toAddress().attempt(old, noo, Entrypoints.drResponseField.getOffset());
     Magic.readCeiling();
     return x;
   }
   
   @Inline
   private Word prepareResponse() {
-    return ObjectReference.fromObject(this).toAddress().prepareWord(Entrypoints.drFibCommResponseField.getOffset());
+    return ObjectReference.fromObject(thread).toAddress().prepareWord(Entrypoints.drResponseField.getOffset());
   }
   
 
@@ -416,30 +571,30 @@ public final class FibComm implements SizeConstants {
     VM.sysWriteln("  isAlive()   = ", thread.isAlive());
     VM.sysWriteln("  isBlocked() = ", thread.isBlocked());
     VM.sysWriteln("  isInJava()  = ", thread.isInJava());
-    VM.sysWriteln("  FIB blocked = depth ", blockDepth);
+    VM.sysWriteln("  FIB blocked = depth ", thread.drBlockDepth);
     VM.sysWriteln("  request     = ", AccessHistory.address(object, offset));
     VM.sysWriteln("    object    = ", ObjectReference.fromObject(object).toAddress());
     VM.sysWriteln("    offset    = ", offset);
     VM.sysWrite  ("    target    = ");  Epoch.print(targetEpoch); VM.sysWriteln();
     // VM.sysWriteln("    del       = ",   ObjectReference.fromObject(del).toAddress());
     VM.sysWriteln("  deflating   = ", VM.VerifyAssertions ? (deflating ? "true" : "false") : "??? [Enable assertions]");
-    if (response.EQ(NO_RESPONSE)) {
+    if (thread.drResponse.EQ(NO_RESPONSE)) {
       VM.sysWriteln("  response    = NO_RESPONSE");
-    } else if (response.EQ(RACE_RESPONSE)) {
+    } else if (thread.drResponse.EQ(RACE_RESPONSE)) {
       VM.sysWriteln("  response    = RACE_RESPONSE");
-    } else if (response.EQ(SHARED_RESPONSE)) {
+    } else if (thread.drResponse.EQ(SHARED_RESPONSE)) {
       VM.sysWriteln("  response    = SHARED_RESPONSE");
-    } else if (response.EQ(EXCL_RESPONSE)) {
+    } else if (thread.drResponse.EQ(EXCL_RESPONSE)) {
       VM.sysWriteln("  response    = EXCL_RESPONSE");
     } else {
-      final Word r = response;
+      final Word r = thread.drResponse;
       VM.sysWrite("  response    = ", r);
       if (Epoch.isEpoch(r)) {
         VM.sysWriteln(" [epoch T", Epoch.tid(r), ":", Epoch.clock(r), " ]");
       }
     }
     VM.sysWriteln("  responseRef = ", ObjectReference.fromObject(responseRef).toAddress());
-    final Word reqs = requests;
+    final Word reqs = thread.drRequests;
     if (reqs.EQ(this.EMPTY)) {
       VM.sysWriteln("  requests    = EMPTY");
     } else if (reqs.EQ(this.BLOCKED)) {
@@ -449,7 +604,7 @@ public final class FibComm implements SizeConstants {
     } else {
       VM.sysWriteln("  requests    = ");
       for (int tid = 0; tid < Epoch.MAX_THREADS; tid++) {
-        if (!reqs.and(Word.one().lsh(tid)).isZero() && tid != thread.getDrID()) {
+        if (hasRequestFrom(reqs, tid) && tid != thread.getDrID()) {
           final FibComm frm = DrRuntime.getDrThread(tid).drFibComm;
           VM.sysWriteln("    + T", frm.thread.getDrID(), "      waiting for ", AccessHistory.address(frm.object, frm.offset));
         }
@@ -458,10 +613,181 @@ public final class FibComm implements SizeConstants {
   }
   
   // Called by REQUESTER
-  
-  
-  
-  
+
+  /**
+   * Which thread must transfer the history at md/historyOffset before this.owner
+   * can access it?
+   * @param md
+   * @param historyOffset
+   * @return the owner's tid, or -1 if the access will not request a plain
+   *   EXCL -> EXCL transition.
+   */
+  @Inline
+  public int batchOwnerOf(final Object md, final Offset historyOffset) {
+    if (VM.VerifyAssertions) VM._assert(Dr.BUFFER && this.thread == RVMThread.getCurrentThread());
+    final Word rw = AccessHistory.loadReadWord(md, historyOffset);
+    if (!Epoch.isEpoch(rw) || Epoch.isAlt(rw) || FastTrack.isFrozen(rw)
+        || Epoch.sameTid(rw, this.thread.getDrEpoch())) {
+      return -1;
+    }
+    return Epoch.tid(rw);
+  }
+
+  /**
+   * Can a history owned by owner join the current batch?
+   * @param owner
+   * @param isWrite
+   */
+  @Inline
+  public boolean batchAccepts(final int owner, final boolean isWrite) {
+    return batchSize == 0
+        || (batchOwner == owner && batchIsWrite == isWrite && batchSize < BATCH_SIZE);
+  }
+
+  /**
+   * Add a history to the current batch.  Call only if batchAccepts(owner, isWrite).
+   * @param md
+   * @param historyOffset
+   * @param owner
+   * @param isWrite
+   */
+  @Inline
+  public void addToBatch(final Object md, final Offset historyOffset, final int owner, final boolean isWrite) {
+    if (VM.VerifyAssertions) VM._assert(batchAccepts(owner, isWrite));
+    if (batchSize == 0) {
+      batchOwner = owner;
+      batchIsWrite = isWrite;
+      batchServed = Word.zero();
+    }
+    batchObjects[batchSize] = md;
+    batchOffsets.set(batchSize, historyOffset.toWord());
+    batchSize++;
+  }
+
+  public int batchSize() {
+    return batchSize;
+  }
+
+  public boolean batchIsWrite() {
+    return batchIsWrite;
+  }
+
+  public Object batchObject(final int k) {
+    return batchObjects[k];
+  }
+
+  public Offset batchOffset(final int k) {
+    return batchOffsets.get(k).toOffset();
+  }
+
+  /**
+   * Was batch entry k transferred along with the anchor?
+   * Meaningful only after the anchor has been accessed.
+   * @param k
+   */
+  public boolean batchServed(final int k) {
+    return !batchServed.and(Word.one().lsh(k)).isZero();
+  }
+
+  /**
+   * Empty the batch.
+   */
+  public void clearBatch() {
+    for (int k = 0; k < batchSize; k++) {
+      batchObjects[k] = null;
+    }
+    batchSize = 0;
+    batchOwner = -1;
+    batchServed = Word.zero();
+  }
+
+  /**
+   * Is there a batch anchored at md/historyOffset for histories owned by owner.owner?
+   * @param md
+   * @param historyOffset
+   * @param isWrite
+   * @param owner
+   */
+  @Inline
+  private boolean hasBatchAt(final Object md, final Offset historyOffset, final boolean isWrite, final FibComm owner) {
+    return Dr.BUFFER && batchSize > 1
+        && batchOwner == owner.thread.getDrID()
+        && batchIsWrite == isWrite
+        && batchObjects[0] == md
+        && batchOffsets.get(0).EQ(historyOffset.toWord());
+  }
+
+  /**
+   * State word of a pending asynchronous request to owner.
+   * @param owner
+   * @param isWrite
+   */
+  @Inline
+  private static Word asyncState(final FibComm owner, final boolean isWrite) {
+    return Word.fromIntZeroExtend(((owner.thread.getDrID() + 1) << 1) | (isWrite ? 1 : 0));
+  }
+
+  /**
+   * Log an asynchronous request for remote to transfer md/historyOffset.
+   * Call while holding remote's queue LOCKED.
+   * @param remote
+   * @param md
+   * @param historyOffset
+   * @param isWrite
+   * @return false if the log is full and the request must be made synchronously.
+   */
+  @Unpreemptible
+  private boolean logAsync(final FibComm remote, final Object md, final Offset historyOffset, final boolean isWrite) {
+    final Word state = asyncState(remote, isWrite);
+    final Word writeState = asyncState(remote, true);
+    boolean handled = true;
+    for (int k = 0; k < asyncCount; k++) {
+      final Word s = asyncStates.get(k);
+      if (!s.isZero()) {
+        handled = false;
+        if ((s.EQ(state) || s.EQ(writeState))
+            && asyncObjects[k] == md && asyncOffsets.get(k).EQ(historyOffset.toWord())) {
+          // An earlier logged access of this kind (or a write) covers this one.
+          if (Dr.STATS) DrStats.asyncRequestsMerged.inc();
+          return true;
+        }
+      }
+    }
+    if (handled) {
+      for (int k = 0; k < asyncCount; k++) {
+        asyncObjects[k] = null;
+      }
+      asyncCount = 0;
+    } else if (asyncCount == ASYNC_LOG_SIZE) {
+      if (Dr.STATS) DrStats.asyncLogFull.inc();
+      return false;
+    }
+    final int k = asyncCount;
+    asyncObjects[k] = md;
+    asyncOffsets.set(k, historyOffset.toWord());
+    asyncEpochs.set(k, thread.getDrEpoch());
+    asyncKnowledge.set(k, VC.get(thread.drThreadVC, remote.thread.getDrID()));
+    Magic.writeFloor();
+    asyncStates.set(k, state);
+    asyncCount = k + 1;
+    if (Dr.STATS) DrStats.asyncRequests.inc();
+    return true;
+  }
+
+  /**
+   * Rebase the epochs of pending asynchronous requests.
+   * Called with the world stopped during renormalization.
+   */
+  public void rebaseAsyncLog() {
+    for (int k = 0; k < asyncCount; k++) {
+      if (!asyncStates.get(k).isZero()) {
+        asyncEpochs.set(k, Renormalization.rebase(asyncEpochs.get(k)));
+        asyncKnowledge.set(k, Renormalization.rebase(asyncKnowledge.get(k)));
+      }
+    }
+  }
+
+
   /**
    * Request a race check and ownership state transition for the given access.
    * NOTE: call on the requester's FRM.
@@ -547,6 +873,10 @@ public final class FibComm implements SizeConstants {
             if (VM.VerifyAssertions) {
               checkSaneRequest(md, historyOffset, remote, newReadWord, isWrite);
             }
+            // Holding the remote queue also lets us serve the rest of a batch.
+            if (hasBatchAt(md, historyOffset, isWrite, remote)) {
+              remote.serveBatch(this, Word.zero());
+            }
             // ATOMIC REQUEST
             // If owned by the same remote thread, self-serve the request.
             // Self-serve the request.  INCLUDES unlocking remote queue.
@@ -580,7 +910,10 @@ public final class FibComm implements SizeConstants {
           // Locked the remote queue.
           if (VM.VerifyAssertions) DrRuntime.stashGcCount();
           newReadWord = AccessHistory.loadReadWord(md, historyOffset);
-          if (Dr.config().fibAdaptiveCas() && Epoch.isAlt(newReadWord)) {
+          if (Dr.LAZY_BLOCKING && remote.publishLazyBlock(remoteReqs)) {
+            // The remote thread is blocked lazily in native code, and its
+            // queue is now BLOCKED.  Self-serve on retry.
+          } else if (Dr.config().fibAdaptiveCas() && Epoch.isAlt(newReadWord)) {
             result = (isWrite
                 ? FibFastTrack.writeCas(md, historyOffset, newReadWord, RVMThread.getCurrentThread().getDrEpoch())
                     : FibFastTrack.readCas(md, historyOffset, newReadWord, RVMThread.getCurrentThread().getDrEpoch()));
@@ -592,9 +925,20 @@ public final class FibComm implements SizeConstants {
             if (VM.VerifyAssertions) {
               checkSaneRequest(md, historyOffset, remote, newReadWord, isWrite);
             }
+            if (ASYNC && logAsync(remote, md, historyOffset, isWrite)) {
+              // Proceed without waiting: remote validates the logged access
+              // the next time it handles its queue.
+              Magic.writeFloor();
+              remote.setRequests(enqueueIn(remote, remoteReqs, false));
+              Magic.writeFloor();
+              remote.thread.takeYieldpoint = 1;
+              result = true;
+              break;
+            }
             // If the owner has not changed, enqueue the request.
             // Record the requested check/transition.
             this.isWrite = isWrite;
+            if (ASYNC) this.requestedFrom = remote;
             this.object = md;
             this.offset = historyOffset;
             this.targetEpoch = newReadWord;
@@ -602,7 +946,7 @@ public final class FibComm implements SizeConstants {
             Magic.writeFloor();
             // Enqueue the request (this thread's FRM) in the remote queue,
             // simultaneously unlocking the remote queue.
-            remote.setRequests(remoteReqs.or(this.BIT));
+            remote.setRequests(enqueueIn(remote, remoteReqs, false));
             Magic.writeFloor();
             // Tell the remote thread to take its next yieldpoint.
             remote.thread.takeYieldpoint = 1;
@@ -711,7 +1055,7 @@ public final class FibComm implements SizeConstants {
   private void checkSaneRequest(final Object md, final Offset historyOffset,
       FibComm remote, final Word newReadWord, boolean isWrite) {
     // Requesting from a thread that's requesting it from us and has not received a response?
-    if (md != null && remote.object == md && remote.offset == historyOffset && remote.response.EQ(NO_RESPONSE)) {
+    if (md != null && remote.object == md && remote.offset == historyOffset && remote.thread.drResponse.EQ(NO_RESPONSE)) {
         DrDebug.lock();
         DrDebug.twrite(); VM.sysWrite("and "); DrDebug.twrite(remote.thread);
         VM.sysWrite("both request ", AccessHistory.address(md, historyOffset), " from each other, with current status ");
@@ -889,9 +1233,9 @@ public final class FibComm implements SizeConstants {
         DrDebug.unlock();
       }
       // Overwrite old metadata in case of race.
-      if (Dr.config().drFirstRacePerLocation()) {
+      if (FastTrack.freezeOnRace()) {
         FastTrack.freeze(md, historyOffset);
-      } else {
+      } else if (FastTrack.recordOnRace()) {
         if (isWrite) AccessHistory.storeWriteWord(md, historyOffset, now);
         Magic.writeFloor();
         AccessHistory.storeReadWord(md, historyOffset, shouldCas ? Epoch.asAlt(now) : now);
@@ -958,44 +1302,53 @@ public final class FibComm implements SizeConstants {
     if (VM.VerifyAssertions) VM._assert(this.thread == RVMThread.getCurrentThread());
 
     final int maxSpins = spinsBeforeYield();
+    final int maxYields = maxSpins + yieldsBeforeHeavyWait();
     int tries = 0;
+    final long startTime = Dr.STATS ? Time.nanoTime() : 0L;
+    long yieldTime = 0L, heavyTime = 0L;
     // Wait for response.
     Magic.fence();
-    Word w = response;
+    Word w = thread.drResponse;
     while (w.EQ(NO_RESPONSE)) {
       // Spin until a response appears.
-      if (Dr.STATS && tries == maxSpins) DrStats.slowResponses.inc();
+      if (Dr.STATS && tries == maxSpins) {
+        DrStats.slowResponses.inc();
+        yieldTime = Time.nanoTime();
+      }
       if (++tries > maxSpins) {
         // If spinning a long time, start responding while waiting.
         if (Dr.STATS) DrStats.yieldsWhileAwaitingResponse.inc();
-//        if (HEAVY_WAITS && tries > maxSpins + VM.octetWaitYieldCount) {
-//          // If spinning too long, revert to a heavy monitor wait.
-//          awaitResponseHeavy();
-//          if (VM.VerifyAssertions) VM._assert(response.NE(NO_RESPONSE));
-//        } else {
+        if (HEAVY_WAITS && tries > maxYields && !thread.octetMonitor.isZero()) {
+          // If spinning too long, revert to a heavy monitor wait.
+          if (Dr.STATS) heavyTime = Time.nanoTime();
+          awaitResponseHeavy(NO_RESPONSE);
+          if (VM.VerifyAssertions) VM._assert(thread.drResponse.NE(NO_RESPONSE));
+        } else {
           // Otherwise, respond to clear queue, then yield.
           if (CHECK_SPIN) checkSpin(tries, MAX_WAIT_SPINS, "awaitResponse, yield-spin");
           respond();
           RVMThread.yieldNoHandshake();
-//        }
+        }
       } else {
         // If spinning a relatively short time, just pause.
         if (CHECK_SPIN) checkSpin(tries, MAX_WAIT_SPINS, "awaitResponse, pause-spin");
         Magic.pause();
       }
       Magic.readCeiling();
-      w = response;
+      w = thread.drResponse;
     }
+    if (Dr.STATS) countWaitTime(startTime, yieldTime, heavyTime);
     
     reportTransition(object, offset, targetEpoch, maxSpins, tries, w);
 
     // Read and clear the response.
     Magic.readCeiling();
-    response = NO_RESPONSE;
+    thread.drResponse = NO_RESPONSE;
     object = null;
     offset = Offset.zero();
     isWrite = false;
     targetEpoch = Epoch.NONE;
+    if (ASYNC) requestedFrom = null;
     // del = null;
     
     return w;
@@ -1049,35 +1402,88 @@ public final class FibComm implements SizeConstants {
 //    return w;
 //  }
 
-//  /**
-//   * Use heavy monitor to block awaiting response.
-//   */
-//  private void awaitResponseHeavy() {
-//    if (response.EQ(NO_RESPONSE)) {
-//      // Heavy wait.
-//      if (Dr.STATS) DrStats.heavyResponses.inc();
-//      this.heavyWaiting = true;
-//      block();
-//      if (response.EQ(NO_RESPONSE)) {
-//        Magic.fence();
-//        Magic.readCeiling();
-//        sysCall.sysMonitorEnter(this.thread.octetMonitor);
-//        while (response.EQ(NO_RESPONSE)) {
-//          if (Dr.STATS) DrStats.heavyWaitsWhileAwaitingResponse.inc();
-//          sysCall.sysMonitorWait(this.thread.octetMonitor);
-//        }
-//      }
-//      this.heavyWaiting = false;
-//      unblock();
-//      sysCall.sysMonitorExit(this.thread.octetMonitor);
-//    }
-//  }
+  /**
+   * Has the awaited response arrived?
+   * @param awaitedValue - the awaited response, or NO_RESPONSE to await any
+   */
+  @Inline
+  private boolean responseArrived(Word awaitedValue) {
+    final Word w = thread.drResponse;
+    return awaitedValue.EQ(NO_RESPONSE) ? w.NE(NO_RESPONSE) : w.EQ(awaitedValue);
+  }
+
+  /**
+   * Use heavy monitor to block awaiting response.
+   * Block first, so that requesters act on this thread's behalf instead of
+   * waiting for it to respond.  heavyWaiting is set (and fenced) before the
+   * response is checked and responders fence between storing a response and
+   * checking heavyWaiting, so either this thread sees the response or its
+   * responder sees heavyWaiting and broadcasts.  The broadcast happens under
+   * octetMonitor, so it cannot fall between the check and the wait.
+   * @param awaitedValue - the awaited response, or NO_RESPONSE to await any
+   */
+  @UninterruptibleNoWarn("Calls block().")
+  private void awaitResponseHeavy(Word awaitedValue) {
+    if (VM.VerifyAssertions) VM._assert(HEAVY_WAITS && this.thread == RVMThread.getCurrentThread());
+    if (Dr.STATS) DrStats.heavyResponses.inc();
+    block();
+    sysCall.sysMonitorEnter(this.thread.octetMonitor);
+    this.heavyWaiting = true;
+    Magic.fence();
+    while (!responseArrived(awaitedValue)) {
+      if (Dr.STATS) DrStats.heavyWaitsWhileAwaitingResponse.inc();
+      if (VM.VerifyAssertions) {
+        // Wake up periodically so that a lost wakeup shows up as a slow
+        // response rather than a hang.
+        sysCall.sysMonitorTimedWaitAbsolute(this.thread.octetMonitor, Time.nanoTime() + 100 * 1000 * 1000);
+      } else {
+        sysCall.sysMonitorWait(this.thread.octetMonitor);
+      }
+      Magic.readCeiling();
+    }
+    this.heavyWaiting = false;
+    sysCall.sysMonitorExit(this.thread.octetMonitor);
+    unblock(false);
+  }
+
+  /**
+   * Wake the owner of this FibComm if it is heavy waiting.  Call after
+   * changing its response.
+   */
+  @Inline
+  private void wakeHeavyWaiter() {
+    if (HEAVY_WAITS) {
+      Magic.fence();
+      if (this.heavyWaiting) {
+        if (Dr.STATS) DrStats.heavyWakeups.inc();
+        sysCall.sysMonitorEnter(this.thread.octetMonitor);
+        sysCall.sysMonitorBroadcast(this.thread.octetMonitor);
+        sysCall.sysMonitorExit(this.thread.octetMonitor);
+      }
+    }
+  }
+
+  /**
+   * Count the time a wait spent in each phase.  Phases not reached have
+   * start time 0.
+   * @param spinTime - when spinning started
+   * @param yieldTime - when yielding started
+   * @param heavyTime - when the heavy wait started
+   */
+  private static void countWaitTime(long spinTime, long yieldTime, long heavyTime) {
+    final long end = Time.nanoTime();
+    final long heavyStart = heavyTime != 0L ? heavyTime : end;
+    final long yieldStart = yieldTime != 0L ? yieldTime : heavyStart;
+    DrStats.awaitSpinNanos.inc(yieldStart - spinTime);
+    DrStats.awaitYieldNanos.inc(heavyStart - yieldStart);
+    DrStats.awaitHeavyNanos.inc(end - heavyStart);
+  }
 
 
   private void reportTransition(Object md, Offset historyOffset, Word lrw,
       final int maxSpins, int tries, Word resp) {
     if (Dr.STATS) {
-      if (tries <= maxSpins && requests.NE(EMPTY)) {
+      if (tries <= maxSpins && thread.drRequests.NE(EMPTY)) {
         DrStats.missedYieldOpportunityWhileAwaitingResponse.incBin(tries);
       }
       DrStats.triesAwaitingResponse.incBin(tries, resp != RACE_RESPONSE);
@@ -1123,6 +1529,7 @@ public final class FibComm implements SizeConstants {
    * @param md
    * @param historyOffset
    * @return bit vector of entries where acks were requested
+   *   (in WIDE mode, the number of acks requested)
    */
   protected Word requestAcks(Object md, Offset historyOffset, WordArray readers) {
     if (VM.VerifyAssertions) {
@@ -1143,7 +1550,8 @@ public final class FibComm implements SizeConstants {
       if (remoteTid != localTid) {
         final Word e = Dr.readers().get(readers, remoteTid);
         if (Epoch.isEpoch(e)) {
-          awaitEntries = awaitEntries.or(requestAck(DrRuntime.getDrThread(remoteTid).drFibComm));
+          final Word ack = requestAck(DrRuntime.getDrThread(remoteTid).drFibComm);
+          awaitEntries = WIDE ? awaitEntries.plus(ack) : awaitEntries.or(ack);
         } else if (Epoch.isMapRef(e)) {
           DrDebug.lock();
           DrDebug.twrite(); VM.sysWriteln("Found map ref ", e.toAddress(), " as entry in map ", ObjectReference.fromObject(readers).toAddress());
@@ -1200,6 +1608,10 @@ public final class FibComm implements SizeConstants {
       } else if (remoteReqs.EQ(LOCKED)) {
         // wait
       } else if (remote.attemptRequests(remoteReqs, LOCKED)){
+        if (Dr.LAZY_BLOCKING && remote.publishLazyBlock(remoteReqs)) {
+          // Blocked lazily in native code: self-serve on retry.
+          continue;
+        }
 //        if (PRINT) {
 //          DrDebug.lock();
 //          DrDebug.twrite(); VM.sysWriteln("!ack ", )
@@ -1208,12 +1620,12 @@ public final class FibComm implements SizeConstants {
 ////          VM.sysWriteln("      remoteReqs ", remoteReqs, " -> ", remoteReqs.or(this.BIT));
 //          DrDebug.unlock();
 //        }
-        remote.ackRequests = remote.ackRequests.or(this.BIT);
+        final Word unlocked = enqueueIn(remote, remoteReqs, true);
         Magic.writeFloor();
-        remote.setRequests(remoteReqs.or(this.BIT));
+        remote.setRequests(unlocked);
         // Tell remote thread to yield.
         remote.thread.takeYieldpoint = 1;
-        return remote.BIT;
+        return WIDE ? Word.one() : remote.BIT;
       }
       Magic.pause();
     }
@@ -1224,7 +1636,8 @@ public final class FibComm implements SizeConstants {
    * Used to await acks from all threads given by the bit set bv.
    * (In other words, wait for response == bv.)
    * 
-   * @param awaitedValue - bit vector of threads that should ack.
+   * @param awaitedValue - bit vector of threads that should ack
+   *   (in WIDE mode, the number of threads that should ack).
    */
   @Unpreemptible
   protected void awaitResponse(Word awaitedValue) {
@@ -1232,14 +1645,18 @@ public final class FibComm implements SizeConstants {
       VM._assert(this.thread == RVMThread.getCurrentThread());
       VM._assert(0 == this.getBlockDepth(), "Requests shoud be made only when unblocked.");
     }
-    if (!awaitedValue.and(this.BIT).isZero()) VM.sysFail("Awaiting yourself!");
+    if (!WIDE && !awaitedValue.and(this.BIT).isZero()) VM.sysFail("Awaiting yourself!");
     
     if (PRINT) {
       DrDebug.lock();
       DrDebug.twrite(); VM.sysWrite("  +await ");
-      for (int tid = 0; tid < Epoch.MAX_THREADS; tid++) {
-        if (!awaitedValue.and(Word.one().lsh(tid)).isZero()) {
-          VM.sysWrite(" T", tid);
+      if (WIDE) {
+        VM.sysWrite(awaitedValue.toInt(), " acks");
+      } else {
+        for (int tid = 0; tid < Epoch.MAX_THREADS; tid++) {
+          if (!awaitedValue.and(Word.one().lsh(tid)).isZero()) {
+            VM.sysWrite(" T", tid);
+          }
         }
       }
       VM.sysWriteln();
@@ -1247,25 +1664,31 @@ public final class FibComm implements SizeConstants {
     }
     
     final int maxSpins = spinsBeforeYield();
+    final int maxYields = maxSpins + yieldsBeforeHeavyWait();
     int tries = 0;    
+    final long startTime = Dr.STATS ? Time.nanoTime() : 0L;
+    long yieldTime = 0L, heavyTime = 0L;
     // Wait for all threads to turn on their bits in response.
-    while (response.NE(awaitedValue)) {
+    while (thread.drResponse.NE(awaitedValue)) {
       // Spin until a response appears.
+      if (Dr.STATS && tries == maxSpins) yieldTime = Time.nanoTime();
       if (++tries > maxSpins) {
-//        if (HEAVY_WAITS && tries > maxSpins + VM.octetWaitYieldCount) {
-//            // Heavy wait.
-//            awaitResponseHeavy(awaitedValue);
-//            if (VM.VerifyAssertions) VM._assert(response.EQ(awaitedValue));
-//        } else {
+        if (HEAVY_WAITS && tries > maxYields && !thread.octetMonitor.isZero()) {
+          // Heavy wait.
+          if (Dr.STATS) heavyTime = Time.nanoTime();
+          awaitResponseHeavy(awaitedValue);
+          if (VM.VerifyAssertions) VM._assert(thread.drResponse.EQ(awaitedValue));
+        } else {
           if (CHECK_SPIN) checkSpin(tries, MAX_WAIT_SPINS, awaitedValue, "awaitAcks, yield-spin");
           respond();
           RVMThread.yieldNoHandshake();
-//        }
+        }
       } else {
         if (CHECK_SPIN) checkSpin(tries, MAX_WAIT_SPINS, awaitedValue, "awaitAcks, pause-spin");
         Magic.pause();
       }
     }
+    if (Dr.STATS) countWaitTime(startTime, yieldTime, heavyTime);
 
     Magic.readCeiling();
     if (PRINT) {
@@ -1276,7 +1699,7 @@ public final class FibComm implements SizeConstants {
     if (VM.VerifyAssertions) {
       this.deflating = false;
     }
-    this.response = NO_RESPONSE;
+    thread.drResponse = NO_RESPONSE;
     this.responseRef = null;
     this.object = null;
     this.offset = Offset.zero();
@@ -1322,28 +1745,6 @@ public final class FibComm implements SizeConstants {
 //    slot.store(NO_RESPONSE);
 //  }
 
-//  /**
-//   * Use a heavy monitor to await the given response value.
-//   * @param awaitedValue
-//   */
-//  private void awaitResponseHeavy(Word awaitedValue) {
-//    if (Dr.STATS) DrStats.heavyResponses.inc();
-//    this.heavyWaiting = true;
-//    block();
-//    if (response.NE(awaitedValue)) {
-//      Magic.fence();
-//      Magic.readCeiling();
-//      sysCall.sysMonitorEnter(this.thread.octetMonitor);
-//      while (response.NE(awaitedValue)) {
-//        if (Dr.STATS) DrStats.heavyWaitsWhileAwaitingResponse.inc();
-//        sysCall.sysMonitorWait(this.thread.octetMonitor);
-//      }
-//    }
-//    this.heavyWaiting = false;
-//    unblock();
-//    sysCall.sysMonitorExit(this.thread.octetMonitor);
-//  }
-//  
   
   // HOOKS called by OWNER
   
@@ -1360,7 +1761,7 @@ public final class FibComm implements SizeConstants {
       VM._assert(Dr.COMMUNICATION);
       VM._assert(this.thread == RVMThread.getCurrentThread());
     }
-    if (++blockDepth != 1) {
+    if (++thread.drBlockDepth != 1) {
       if (Dr.STATS) DrStats.recursiveBlock.inc();
       return;
     }
@@ -1383,6 +1784,87 @@ public final class FibComm implements SizeConstants {
     }
   }
   
+  /**
+   * Block lazily, just after the owner thread CASes its execStatus to
+   * IN_NATIVE or IN_JNI.  Requests already queued are handled and the queue
+   * blocked as in block().  Otherwise the queue stays open and no CAS is
+   * needed: a requester that locks it and then finds the owner in native
+   * publishes BLOCKED on its behalf (see publishLazyBlock()).
+   *
+   * The owner stores its execStatus, fences (by the CAS), and loads its
+   * queue; a requester locks the queue (by CAS) and loads the owner's
+   * execStatus.  So either the owner sees the request here and handles it,
+   * or the requester sees the owner in native and does not enqueue.
+   */
+  @UninterruptibleNoWarn("May allocate read map.")
+  @Inline
+  public void blockLazily() {
+    if (VM.VerifyAssertions) {
+      VM._assert(Dr.LAZY_BLOCKING);
+      VM._assert(this.thread == RVMThread.getCurrentThread());
+      VM._assert(ownerInNative());
+    }
+    if (++thread.drBlockDepth != 1) {
+      if (Dr.STATS) DrStats.recursiveBlock.inc();
+      return;
+    }
+    blockedLazily = true;
+    if (prepareRequests().EQ(this.EMPTY)) {
+      if (Dr.STATS) DrStats.lazyBlock.inc();
+      return;
+    }
+    
+    int tries = 0;
+    Word reqs;
+    // Lock the queue, unless a requester has already blocked it.
+    do {
+      reqs = prepareRequests();
+      while (reqs.EQ(LOCKED)) {
+        if (CHECK_SPIN) checkSpin(++tries, MAX_WAIT_SPINS, "lock to block lazily");
+        Magic.pause();
+        reqs = prepareRequests();
+      }
+      if (reqs.EQ(this.EMPTY) || reqs.EQ(this.BLOCKED)) {
+        if (Dr.STATS) DrStats.lazyBlock.inc();
+        return;
+      }
+    } while (!attemptRequests(reqs, LOCKED));
+    processRequests(reqs.and(this.EMPTY.not()));
+    Magic.writeFloor();
+    setRequests(this.BLOCKED);
+    if (Dr.STATS) DrStats.slowBlock.inc();
+  }
+  
+  /**
+   * Called by a requester that just locked this queue, which held reqs.
+   * If the queue was empty and the owner is in native code or JNI, publish
+   * BLOCKED for the owner, which unlocks the queue.
+   * @param reqs - the queue before it was locked
+   * @return true if the queue is now BLOCKED, false if it is still locked.
+   */
+  @Inline
+  private boolean publishLazyBlock(final Word reqs) {
+    if (VM.VerifyAssertions) VM._assert(thread.drRequests.EQ(LOCKED));
+    if (reqs.EQ(this.EMPTY) && ownerInNative()) {
+      if (Dr.STATS) DrStats.lazyBlockPublished.inc();
+      setRequests(this.BLOCKED);
+      return true;
+    }
+    return false;
+  }
+  
+  /**
+   * Is the owner of this FibComm in native code or JNI?  If a requester
+   * holding this queue LOCKED finds it so, the owner is blocked lazily (or
+   * about to be), and stays out of Java until the queue is unlocked.
+   */
+  @Inline
+  private boolean ownerInNative() {
+    final int s = thread.getExecStatus();
+    return s == RVMThread.IN_NATIVE || s == RVMThread.IN_JNI
+        || s == RVMThread.BLOCKED_IN_NATIVE || s == RVMThread.BLOCKED_IN_JNI;
+  }
+  
   /**
    * Handle incoming request queue.
    * @param blocking - block queue iff true
@@ -1469,33 +1951,72 @@ public final class FibComm implements SizeConstants {
   private void processRequests(final Word reqs) {
     if (VM.VerifyAssertions) {
       VM._assert(this.thread == RVMThread.getCurrentThread());
-      VM._assert(this.requests == LOCKED);
+      VM._assert(thread.drRequests == LOCKED);
       VM._assert(!reqs.isZero());
       VM._assert(reqs.and(this.EMPTY).isZero());
     }
+    if (WIDE) {
+      processWideRequests(reqs);
+      return;
+    }
     if (Dr.STATS) {
-      int entries = 0;
-      for (int i = 0; i < Epoch.MAX_THREADS; i++) {
-        if (!reqs.and(Word.fromIntZeroExtend(1<<i)).isZero()) {
-          entries++;
-        }
-      }
-      DrStats.requestQueueSize.incBin(entries);
+      DrStats.requestQueueSize.incBin(countBits(reqs));
     }
     
     final Word ackReqs = ackRequests;
-    if (ackReqs.isZero()) {
-      // Part A: process intended EXCL->EXCL transitions.
-      processTransitionRequests(reqs, false);
-    } else {
-      // Part A: process intended EXCL->EXCL transitions.
-      processTransitionRequests(reqs.and(ackReqs.not()), false);
+    // Some requesters may have only logged asynchronous requests.
+    final Word xferReqs = (ASYNC ? drainAsync(reqs) : reqs).and(ackReqs.not());
+    if (Dr.BUFFER) serveBatches(xferReqs);
+    // Part A: process intended EXCL->EXCL transitions.
+    if (!ASYNC || !xferReqs.isZero()) {
+      processTransitionRequests(xferReqs, false);
+    }
+    if (!ackReqs.isZero()) {
       // Part B: process intended SHARED->EXCL transitions.
-      processAckRequests(ackReqs);
+      processAckRequests(ackReqs, 0);
       ackRequests = Word.zero();
     }
   }
   
+  /**
+   * Process requests from the member words whose summary bits are set in reqs,
+   * in the same order as processRequests: all transitions, then all acks.
+   * Batches are not served here: their entries fall back to individual requests.
+   * @param reqs
+   */
+  @Unpreemptible
+  private void processWideRequests(final Word reqs) {
+    int entries = 0;
+    FibComm pending = null;
+    for (int g = 0; g < REQUEST_WORDS; g++) {
+      if (!reqs.and(summaryBit(g)).isZero()) {
+        final Word members = requestSet.get(g);
+        requestSet.set(g, Word.zero());
+        if (Dr.STATS) entries += countBits(members);
+        pending = accumulateTransitionRequests(members.and(ackSet.get(g).not()), g << LOG_BITS_IN_WORD, pending);
+      }
+    }
+    if (Dr.STATS) {
+      DrStats.requestQueueSize.incBin(entries);
+    }
+    respondToTransitionRequests(pending);
+    for (int g = 0; g < REQUEST_WORDS; g++) {
+      final Word acks = ackSet.get(g);
+      if (!acks.isZero()) {
+        ackSet.set(g, Word.zero());
+        processAckRequests(acks, g << LOG_BITS_IN_WORD);
+      }
+    }
+  }
+  
+  private static int countBits(final Word bv) {
+    int n = 0;
+    for (Word w = bv; !w.isZero(); w = w.and(w.minus(Word.one()))) {
+      n++;
+    }
+    return n;
+  }
+  
   /**
    * Prepare to unblock the owner thread (including just after yield points).
    * The queue must be either BLOCKED or LOCKED.
@@ -1509,8 +2030,8 @@ public final class FibComm implements SizeConstants {
       VM._assert(this.thread == RVMThread.getCurrentThread());
     }
 
-    if (blockDepth > 0) {
-      if (--blockDepth > 0) {
+    if (thread.drBlockDepth > 0) {
+      if (--thread.drBlockDepth > 0) {
         DrStats.recursiveUnblock.inc();
         return;
       } else {
@@ -1533,6 +2054,27 @@ public final class FibComm implements SizeConstants {
     }
     int tries = 0;
     Word old;
+    if (Dr.LAZY_BLOCKING && blockedLazily) {
+      blockedLazily = false;
+      // Leaving native is already ordered before the queue load: by the
+      // execStatus CAS on the fast path, or by the fence in
+      // RVMThread.leaveNativeBlockedImpl() on the slow path.
+      old = prepareRequests();
+      if (!old.EQ(LOCKED) && !old.EQ(this.BLOCKED)) {
+        // Still open: requests that arrive now are handled at the next yieldpoint.
+        if (Dr.STATS) DrStats.fastLazyUnblock.inc();
+        return;
+      }
+      // The queue was blocked while in native: wait for any requester
+      // holding it, then reopen it.
+      do {
+        old = prepareRequests();
+        if (CHECK_SPIN) checkSpin(++tries, MAX_WAIT_SPINS, "lazy unblock");
+      } while (old.EQ(LOCKED) || (old.EQ(this.BLOCKED) && !attemptRequests(this.BLOCKED, this.EMPTY)));
+      Magic.readCeiling();
+      if (Dr.STATS) DrStats.slowLazyUnblock.inc();
+      return;
+    }
     do {
       old = prepareRequests();
       if (VM.VerifyAssertions) VM._assert(old.EQ(LOCKED) || old.EQ(this.BLOCKED));
@@ -1602,18 +2144,11 @@ public final class FibComm implements SizeConstants {
   private void placeResponse(Word r) {
     if (VM.VerifyAssertions) VM._assert(this.thread != RVMThread.getCurrentThread());
     Magic.writeFloor();
-    if (Dr.config().drFirstRacePerLocation() && r.EQ(RACE_RESPONSE)) {
+    if (r.EQ(RACE_RESPONSE) && FastTrack.freezeOnRace()) {
       FastTrack.freeze(this.object, this.offset);
     }
-    this.response = r;
-//    if (HEAVY_WAITS) {
-//      Magic.fence();
-//      if (this.heavyWaiting) {
-//        sysCall.sysMonitorEnter(this.thread.octetMonitor);
-//        sysCall.sysMonitorBroadcast(this.thread.octetMonitor);
-//        sysCall.sysMonitorExit(this.thread.octetMonitor);
-//      }
-//    }
+    thread.drResponse = r;
+    wakeHeavyWaiter();
   }
 
   /**
@@ -1623,6 +2158,21 @@ public final class FibComm implements SizeConstants {
    */
   @Unpreemptible
   private Word processTransitionRequests(final Word xferReqs, boolean delOnly) {
+    respondToTransitionRequests(accumulateTransitionRequests(xferReqs, 0, null));
+    // Every request in xferReqs has been handled.
+    return Word.zero();
+  }
+  
+  /**
+   * Stage 1 of processing transition requests from the threads whose bits are
+   * set in xferReqs, where bit i stands for thread base + i.
+   * @param xferReqs
+   * @param base
+   * @param pendingResponses
+   * @return new list of pending responses
+   */
+  @Unpreemptible
+  private FibComm accumulateTransitionRequests(final Word xferReqs, final int base, final FibComm pendingResponses) {
     if (Dr.STATS) {
       DrStats.yieldsRespondExcl.inc();
     }
@@ -1630,10 +2180,10 @@ public final class FibComm implements SizeConstants {
       DrDebug.lock();
       DrDebug.twrite();  VM.sysWrite("processTransitionRequests ", xferReqs, ": ");
       if (VM.VerifyAssertions) {
-        for (int tid = 0; tid < Epoch.MAX_THREADS; tid++) {
-          final Word bit = Word.one().lsh(tid);
+        for (int i = 0; i < BITS_IN_WORD && base + i < Epoch.MAX_THREADS; i++) {
+          final Word bit = Word.one().lsh(i);
           if (!xferReqs.and(bit).isZero()) {
-            DrDebug.twrite(DrRuntime.getDrThread(tid)); VM.sysWrite("  ");
+            DrDebug.twrite(DrRuntime.getDrThread(base + i)); VM.sysWrite("  ");
           }
         }
       }
@@ -1642,10 +2192,10 @@ public final class FibComm implements SizeConstants {
     }
     
     if (VM.VerifyAssertions) {
-      for (int tid = 0; tid < Epoch.MAX_THREADS; tid++) {
-        final Word bit = Word.one().lsh(tid);
+      for (int i = 0; i < BITS_IN_WORD && base + i < Epoch.MAX_THREADS; i++) {
+        final Word bit = Word.one().lsh(i);
         if (!xferReqs.and(bit).isZero()) {
-          final FibComm req = DrRuntime.getDrThread(tid).drFibComm;
+          final FibComm req = DrRuntime.getDrThread(base + i).drFibComm;
           final Word currentReadWord = AccessHistory.loadReadWord(req.object, req.offset);
           if (!Epoch.sameTid(this.thread.getDrEpoch(), currentReadWord)) {
             DrDebug.lock();
@@ -1661,27 +2211,35 @@ public final class FibComm implements SizeConstants {
       }
     }
     
-    Word ret = xferReqs;
     // Stage 1.
     // Resolve any easy requests, such as concurrent write requests (obvious races),
     // stale requests (owner has changed since request issued), or concurrent read requests
     // that will inflate to read-shared.
     // The remaining unprocessed queue contains all those requests that are true
     // EXCL->EXCL transitions on locations exclusive to (and not in deflation by) this.owner.
-    FibComm pending = null;
-    for (int tid = 0; tid < Epoch.MAX_THREADS; tid++) {
-      final Word bit = Word.one().lsh(tid);
+    FibComm pending = pendingResponses;
+    for (int i = 0; i < BITS_IN_WORD && base + i < Epoch.MAX_THREADS; i++) {
+      final Word bit = Word.one().lsh(i);
       if (!xferReqs.and(bit).isZero()) {
-        final FibComm x = DrRuntime.getDrThread(tid).drFibComm;
+        final FibComm x = DrRuntime.getDrThread(base + i).drFibComm;
         if (Epoch.isAlt(AccessHistory.loadReadWord(x.object, x.offset))) {
           VM.sysFail("should not be alt");
         }
         pending = checkAndAccumulate(x, pending);
-        ret = ret.and(bit.not());
         if (Dr.STATS) requestsReceivedInCurrentEpoch++;
       }
     }
-    
+    return pending;
+  }
+  
+  /**
+   * Stage 2 of processing transition requests: respond to the deferred
+   * (read) requests accumulated in Stage 1.
+   * @param pendingResponses
+   */
+  @Unpreemptible
+  private void respondToTransitionRequests(final FibComm pendingResponses) {
+    FibComm pending = pendingResponses;
     // Stage 2.
     // Walk through remaining transition requests in received order.
     int tries = 0;
@@ -1749,8 +2307,6 @@ public final class FibComm implements SizeConstants {
       DrDebug.twriteln("processTransitionRequests done");
       DrDebug.unlock();
     }
-
-    return ret;
   }
 
   private void reportRespondShare(FibComm pending, FibComm req, Object obj, Offset off) {
@@ -2036,15 +2592,267 @@ public final class FibComm implements SizeConstants {
   private void respondReadShare(final FibComm request, final Word readEpoch1, final Word readEpoch2) {
     Dr.readers().set(respondReadShare(request, readEpoch1), readEpoch2);
   }
-  
+
+  /**
+   * Serve the batches of the transition requesters given by the bit vector
+   * xferReqs before any of their anchors is processed.
+   * @param xferReqs
+   */
+  @Unpreemptible
+  private void serveBatches(final Word xferReqs) {
+    for (int i = 0; i < BITS_IN_WORD && i < Epoch.MAX_THREADS; i++) {
+      if (!xferReqs.and(Word.one().lsh(i)).isZero()) {
+        final FibComm req = DrRuntime.getDrThread(i).drFibComm;
+        if (req.hasBatchAt(req.object, req.offset, req.isWrite, this)) {
+          serveBatch(req, xferReqs);
+        }
+      }
+    }
+  }
+
+  /**
+   * Transfer to req those entries of its batch (after the anchor) that are
+   * still exclusive to this.owner and whose last access happens before req.
+   * Any other entry is left for req to request on its own, so every
+   * conflicting case (races, read sharing, concurrent requests for the same
+   * history) stays on the normal protocol.
+   *
+   * Call either as this.owner while handling requests, or as req while
+   * self-serving with this.owner's queue held.
+   *
+   * @param req
+   * @param anchors - bit vector of requesters whose anchors are pending
+   *   in this round; batch entries matching any anchor are skipped.
+   */
+  @Unpreemptible
+  private void serveBatch(final FibComm req, final Word anchors) {
+    final Word ownerEpoch = this.thread.getDrEpoch();
+    final Word reqEpoch = req.thread.getDrEpoch();
+    final WordArray reqVC = req.thread.drThreadVC;
+    final boolean isWrite = req.batchIsWrite;
+    Word served = Word.zero();
+    int n = 0;
+    for (int k = 1; k < req.batchSize; k++) {
+      final Object md = req.batchObjects[k];
+      final Offset historyOffset = req.batchOffsets.get(k).toOffset();
+      if (isAnchor(anchors, md, historyOffset)) continue;
+      final Word rw = AccessHistory.loadReadWord(md, historyOffset);
+      if (!Epoch.isEpoch(rw) || Epoch.isAlt(rw) || FastTrack.isFrozen(rw)
+          || !Epoch.sameTid(ownerEpoch, rw) || !VC.epochHB(rw, reqVC)) {
+        continue;
+      }
+      if (!isWrite && Dr.config().fibPreemptiveReadShare()
+          && Epoch.sameEpoch(AccessHistory.loadWriteWord(md, historyOffset), rw)) {
+        // Would preemptively read-share: leave it to the normal protocol.
+        continue;
+      }
+      final boolean shouldCas = Dr.config().fibAdaptiveCas() && FibCas.threshold(md, historyOffset);
+      if (isWrite) {
+        AccessHistory.storeWriteWord(md, historyOffset, reqEpoch);
+        Magic.writeFloor();
+      }
+      AccessHistory.storeReadWord(md, historyOffset, shouldCas ? Epoch.asAlt(reqEpoch) : reqEpoch);
+      served = served.or(Word.one().lsh(k));
+      n++;
+    }
+    Magic.writeFloor();
+    req.batchServed = served;
+    if (Dr.STATS) {
+      DrStats.requestBatches.inc();
+      DrStats.requestBatchEntriesServed.inc(n);
+    }
+  }
+
+  /**
+   * Validate the pending asynchronous requests to this.owner from the
+   * requesters given by the bit vector reqs, and answer any synchronous
+   * request that those entries already resolved.
+   * @param reqs
+   * @return the requesters in reqs that still await a synchronous transition.
+   */
+  @Unpreemptible
+  private Word drainAsync(final Word reqs) {
+    final Word readState = asyncState(this, false);
+    final Word writeState = asyncState(this, true);
+    Word sync = Word.zero();
+    for (int i = 0; i < BITS_IN_WORD && i < Epoch.MAX_THREADS; i++) {
+      final Word bit = Word.one().lsh(i);
+      if (reqs.and(bit).isZero()) continue;
+      final FibComm req = DrRuntime.getDrThread(i).drFibComm;
+      Magic.readCeiling();
+      final int n = req.asyncCount;
+      for (int k = 0; k < n; k++) {
+        final Word s = req.asyncStates.get(k);
+        if (s.EQ(readState) || s.EQ(writeState)) {
+          final boolean isWrite = s.EQ(writeState);
+          final Object md = req.asyncObjects[k];
+          final Offset historyOffset = req.asyncOffsets.get(k).toOffset();
+          final Word epoch = req.asyncEpochs.get(k);
+          if (!validateAsync(req, md, historyOffset, epoch, req.asyncKnowledge.get(k), isWrite)) {
+            reportAsyncRace(req, md, historyOffset, epoch, isWrite);
+          }
+          req.asyncStates.set(k, Word.zero());
+        }
+      }
+      if (req.requestedFrom == this) {
+        if (Epoch.sameTid(AccessHistory.loadReadWord(req.object, req.offset), this.thread.getDrEpoch())) {
+          sync = sync.or(bit);
+        } else {
+          // A logged access moved the history away from this.owner.  The
+          // requester is waiting, so the same check is exact for it.
+          final boolean drf = validateAsync(req, req.object, req.offset, req.thread.getDrEpoch(),
+              VC.get(req.thread.drThreadVC, this.thread.getDrID()), req.isWrite);
+          req.placeResponse(drf ? EXCL_RESPONSE : RACE_RESPONSE);
+        }
+      }
+    }
+    return sync;
+  }
+
+  /**
+   * Check an access by req, logged in epoch, against the history and make
+   * the transition.
+   *
+   * The logged knowledge of this.owner orders its accesses before the
+   * logged access.  A later access by this.owner counts as ordered if
+   * this.owner has since learned of the logged epoch, and other accesses
+   * are checked against req's current VC.  Both may overestimate ordering,
+   * so deferred checks can miss races but do not report false ones.
+   * @param req
+   * @param md
+   * @param historyOffset
+   * @param epoch - req's epoch at the access
+   * @param knowledge - req's VC entry for this.owner at the access
+   * @param isWrite
+   * @return false iff the access races.
+   */
+  @Unpreemptible
+  private boolean validateAsync(final FibComm req, final Object md, final Offset historyOffset,
+      final Word epoch, final Word knowledge, final boolean isWrite) {
+    final WordArray reqVC = req.thread.drThreadVC;
+    final Word rw = AccessHistory.loadReadWord(md, historyOffset);
+    final Word ww = AccessHistory.loadWriteWord(md, historyOffset);
+    if (FastTrack.isFrozen(rw)) return true;
+    final boolean writeOrdered = asyncOrdered(ww, epoch, knowledge, reqVC);
+
+    if (Epoch.isMapRef(rw)) {
+      // An earlier logged read inflated the history.
+      final WordArray readers = Epoch.asMapRef(rw);
+      if (writeOrdered && (!isWrite || Dr.readers().hb(readers, reqVC))) {
+        if (isWrite) {
+          AccessHistory.storeWriteWord(md, historyOffset, epoch);
+          Magic.writeFloor();
+          AccessHistory.storeReadWord(md, historyOffset, epoch);
+        } else {
+          Dr.readers().set(readers, epoch);
+        }
+        return true;
+      }
+      return false;
+    }
+    if (!Epoch.isEpoch(rw) || Epoch.isAlt(rw)) {
+      // Left EXCL by a path other than this queue: nothing sound to check.
+      if (Dr.STATS) DrStats.asyncUnchecked.inc();
+      return true;
+    }
+
+    final boolean readOrdered = asyncOrdered(rw, epoch, knowledge, reqVC);
+    if (writeOrdered && (readOrdered || !isWrite)) {
+      if (!readOrdered) {
+        // Concurrent reads: inflate to a read map.
+        final WordArray readers = Dr.readers().create();
+        Dr.readers().set(readers, rw);
+        Dr.readers().set(readers, epoch);
+        Magic.writeFloor();
+        Dr.readers().install(md, historyOffset, readers);
+        if (Dr.STATS) DrStats.respondShare.inc();
+      } else if (!Epoch.sameTid(rw, this.thread.getDrEpoch()) || rw.LE(knowledge)) {
+        // Otherwise a later access by this.owner stays the last access.
+        if (isWrite) AccessHistory.storeWriteWord(md, historyOffset, epoch);
+        Magic.writeFloor();
+        AccessHistory.storeReadWord(md, historyOffset, epoch);
+      }
+      return true;
+    }
+    if (FastTrack.recordOnRace()) {
+      if (isWrite) AccessHistory.storeWriteWord(md, historyOffset, epoch);
+      Magic.writeFloor();
+      AccessHistory.storeReadWord(md, historyOffset, epoch);
+    }
+    return false;
+  }
+
+  /**
+   * Is the access recorded in x ordered with req's logged access in epoch,
+   * when req then knew knowledge of this.owner?
+   */
+  @Inline
+  private boolean asyncOrdered(final Word x, final Word epoch, final Word knowledge, final WordArray reqVC) {
+    if (Epoch.isNone(x) || Epoch.sameTid(x, epoch)) return true;
+    if (Epoch.sameTid(x, this.thread.getDrEpoch())) {
+      return x.LE(knowledge) || VC.epochHB(epoch, this.thread.drThreadVC);
+    }
+    return VC.epochHB(x, reqVC);
+  }
+
+  /**
+   * Report a race found by validating a logged access of req.  The racing
+   * thread has moved on, so -X:vm:drRaceBehavior only decides whether to
+   * freeze the location.
+   */
+  @NoInline
+  private static void reportAsyncRace(final FibComm req, final Object md, final Offset historyOffset,
+      final Word epoch, final boolean isWrite) {
+    if (Dr.STATS) {
+      DrStats.races.inc();
+      DrStats.asyncRaces.inc();
+    }
+    if (Dr.RACE_REPORTS) {
+      // The logged access's site is unknown here.
+      RaceReports.race(md, historyOffset, 0L);
+    }
+    if (FastTrack.freezeOnRace()) {
+      FastTrack.freeze(md, historyOffset);
+    }
+    if (req.thread.incDrRaces() > 1L) return;
+    if (Dr.REPORTS) {
+      DrDebug.lock();
+      DrDebug.twriteln("######## DEFERRED RACE (first in requesting thread) ########");
+      DrDebug.twrite(req.thread); VM.sysWrite(isWrite ? " W " : " R ",
+          AccessHistory.address(md, historyOffset), " during ");
+      Epoch.print(epoch);
+      VM.sysWriteln();
+      AccessHistory.print(md, historyOffset);
+      DrDebug.twriteln("#############################################################");
+      DrDebug.unlock();
+    }
+  }
+
+  /**
+   * Is md/historyOffset the anchor request of any thread in anchors?
+   * @param anchors
+   * @param md
+   * @param historyOffset
+   */
+  private static boolean isAnchor(final Word anchors, final Object md, final Offset historyOffset) {
+    for (int i = 0; !anchors.isZero() && i < BITS_IN_WORD && i < Epoch.MAX_THREADS; i++) {
+      if (!anchors.and(Word.one().lsh(i)).isZero()) {
+        final FibComm req = DrRuntime.getDrThread(i).drFibComm;
+        if (req.object == md && req.offset == historyOffset) return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Respond to ack requests.
    * Note it is OK to respond to an ACK while waiting for a request to finish,
    * even if that request involves setting an entry in a read set.
    * 
-   * @param ackReqs
+   * @param ackReqs - bit i stands for thread base + i
+   * @param base
    */
-  private void processAckRequests(final Word ackReqs) { //, final boolean isRequesting) {
+  private void processAckRequests(final Word ackReqs, final int base) { //, final boolean isRequesting) {
     if (Dr.STATS) {
       DrStats.yieldsRespondAck.inc();
     }
@@ -2054,16 +2862,17 @@ public final class FibComm implements SizeConstants {
       DrDebug.unlock();
     }
     
-    for (int tid = 0; tid < Epoch.MAX_THREADS; tid++) {
-      final Word bit = Word.one().lsh(tid);
+    for (int i = 0; i < BITS_IN_WORD && base + i < Epoch.MAX_THREADS; i++) {
+      final Word bit = Word.one().lsh(i);
       if (!ackReqs.and(bit).isZero()) {
-        final FibComm req = DrRuntime.getDrThread(tid).drFibComm;
+        final FibComm req = DrRuntime.getDrThread(base + i).drFibComm;
         Word bv;
         int tries = 0;
         do {
           bv = req.prepareResponse();
           if (CHECK_SPIN) checkSpin(++tries, MAX_WAIT_SPINS, "ack");
-        } while (!req.attemptResponse(bv, bv.or(this.BIT)));
+        } while (!req.attemptResponse(bv, WIDE ? bv.plus(Word.one()) : bv.or(this.BIT)));
+        req.wakeHeavyWaiter();
         if (PRINT) {
           DrDebug.lock();
           DrDebug.twrite();
@@ -2136,4 +2945,32 @@ public final class FibComm implements SizeConstants {
     }
   }
 
+  // Padding: one cache line (Dr.BYTES_IN_CACHE_LINE) after all other
+  // fields.  Reference fields are laid out first and the rest in declaration
+  // order, so these come last.  Checked by checkPadding().
+  @SuppressWarnings("unused")
+  private int pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7,
+      pad8, pad9, pad10, pad11, pad12, pad13, pad14, pad15;
+
+  private static final int PAD_FIELDS = 16;
+
+  /**
+   * Make sure that the padding fields fill one contiguous cache line's worth
+   * of bytes after every other field.  The field layout does not promise
+   * declaration order.
+   */
+  private void checkPadding() {
+    final int first = Entrypoints.drFibCommPad0Field.getOffset().toInt();
+    final int last = Entrypoints.drFibCommPad15Field.getOffset().toInt();
+    VM._assert(PAD_FIELDS << LOG_BYTES_IN_INT == Dr.BYTES_IN_CACHE_LINE);
+    VM._assert(last - first == (PAD_FIELDS - 1) << LOG_BYTES_IN_INT, "FibComm padding fields are not contiguous.");
+    int pads = 0;
+    for (RVMField f : ObjectModel.getObjectType(this).getInstanceFields()) {
+      final int offset = f.getOffset().toInt();
+      VM._assert(offset <= last, "FibComm padding fields are not last.");
+      if (offset >= first) pads++;
+    }
+    VM._assert(pads == PAD_FIELDS, "FibComm padding fields are interleaved with other fields.");
+  }
+
 }
@@ -129,16 +129,26 @@ public final class FibFastTrack extends FastTrack {
   }    
 
   private static void writeFirst(final Object md, final Offset historyOffset, final Word epoch) {
-    if (AccessHistory.attemptReadWord(md, historyOffset, Epoch.NONE, epoch)) {
+    final Word first = firstReadWord(md, historyOffset, epoch);
+    if (Epoch.isAlt(first)) {
+      // Start in CAS mode: as in writeCas, reserve the read word and
+      // publish the write word before the read word, so that no CAS-mode
+      // reader sees this write's read word with the old write word.
+      if (AccessHistory.attemptReadReserved(md, historyOffset, Epoch.NONE)) {
+        AccessHistory.storeWriteWord(md, historyOffset, epoch);
+        Magic.writeFloor();
+        AccessHistory.storeReadWord(md, historyOffset, first);
+        if (Dr.STATS) DrStats.writeFirst.inc();
+        return;
+      }
+    } else if (AccessHistory.attemptReadWord(md, historyOffset, Epoch.NONE, first)) {
       // We take ownership.
       AccessHistory.storeWriteWord(md, historyOffset, epoch);
       if (Dr.STATS) DrStats.writeFirst.inc();
       return;
-    } else {
-      if (Dr.STATS) DrStats.writeFirstConflict.inc();
-      race(true, md, historyOffset);
-      return;
     }
+    if (Dr.STATS) DrStats.writeFirstConflict.inc();
+    race(true, md, historyOffset);
   }
   
   @Unpreemptible
@@ -196,11 +206,22 @@ public final class FibFastTrack extends FastTrack {
       // boolean race = false;
       // For each thread that had an entry to start, check for races against its current entry.
       boolean result = true;
-      for (int i = 0; i < Epoch.MAX_THREADS; i++) {
-        if (!entries.and(Word.one().lsh(i)).isZero()
-            && !VC.epochHB(Dr.readers().get(readers, i), threadVC)) {
-          result = false;
-          break;
+      if (FibComm.WIDE) {
+        // Wide request sets count acks instead of naming ackers: check every reader.
+        for (int i = 0; i < Epoch.MAX_THREADS; i++) {
+          final Word e = Dr.readers().get(readers, i);
+          if (Epoch.isEpoch(e) && !VC.epochHB(e, threadVC)) {
+            result = false;
+            break;
+          }
+        }
+      } else {
+        for (int i = 0; i < Epoch.MAX_THREADS; i++) {
+          if (!entries.and(Word.one().lsh(i)).isZero()
+              && !VC.epochHB(Dr.readers().get(readers, i), threadVC)) {
+            result = false;
+            break;
+          }
         }
       }
 
@@ -347,9 +368,22 @@ public final class FibFastTrack extends FastTrack {
     return manager.requestTransition(md, historyOffset, lastReadWord, false);
   }
 
+  /**
+   * Read word for the first access to a history: in CAS mode if its site
+   * has proven contended.
+   */
+  @Inline
+  private static Word firstReadWord(final Object md, final Offset historyOffset, final Word epoch) {
+    if (Dr.SITE_ADAPTIVE_CAS && ContentionSites.startsInCas(md, historyOffset)) {
+      if (Dr.STATS) DrStats.siteCasStarts.inc();
+      return Epoch.asAlt(epoch);
+    }
+    return epoch;
+  }
+
   @Unpreemptible
   private static boolean readFirst(final Object md, final Offset historyOffset, final Word now) {
-    if (AccessHistory.attemptReadWord(md, historyOffset, Epoch.NONE, now)) {
+    if (AccessHistory.attemptReadWord(md, historyOffset, Epoch.NONE, firstReadWord(md, historyOffset, now))) {
       // Now we own it.
       if (Dr.STATS) DrStats.readFirst.inc();
       return true;
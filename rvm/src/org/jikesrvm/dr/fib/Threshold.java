@@ -43,6 +43,9 @@ public class Threshold {
 
       return false;
     }
+    if (Dr.SITE_ADAPTIVE_CAS) {
+      return siteThreshold(md, historyOffset, count);
+    }
     count = count.plus(Word.one()).and(COUNTER_MASK);
     storeCount(md, historyOffset, count);
     
@@ -61,6 +64,26 @@ public class Threshold {
     return count.isZero();
   }
   
+  /**
+   * Bill a conflict against the learned threshold of the history's site.
+   * @param md
+   * @param historyOffset
+   * @param count - current count
+   * @return true iff the threshold is reached.
+   */
+  private static boolean siteThreshold(Object md, Offset historyOffset, Word count) {
+    final int site = ContentionSites.site(md, historyOffset);
+    count = count.plus(Word.one());
+    if (count.LT(Word.fromIntZeroExtend(ContentionSites.threshold(site, 1 << COUNTER_BITS)))) {
+      storeCount(md, historyOffset, count);
+      return false;
+    }
+    storeCount(md, historyOffset, Word.zero());
+    if (Dr.STATS) DrStats.thresholdReached.inc();
+    ContentionSites.promote(site);
+    return true;
+  }
+
   protected static void resetCount(Object md, Offset historyOffset) {
     if (FibCas.PRINT) {
       DrDebug.lock();
@@ -85,25 +108,25 @@ public class Threshold {
   }
   
   /**
-   * Load the counter.
+   * Load the counter from the side table.
    * 
    * @param md
    * @param historyOffset
    * @return
    */
   protected static Word loadCount(Object md, Offset historyOffset) {
-    return AccessHistory.loadExtra2(md, historyOffset);
+    return ThresholdTable.load(md, historyOffset);
   }
   
   /**
-   * Store the counter.
+   * Store the counter in the side table.
    * 
    * @param md
    * @param historyOffset
    * @param count
    */
   protected static void storeCount(Object md, Offset historyOffset, Word count) {
-    AccessHistory.storeExtra2(md, historyOffset,count);
+    ThresholdTable.store(md, historyOffset, count);
   }  
   
 
@@ -0,0 +1,238 @@
+package org.jikesrvm.dr.fib;
+
+import org.jikesrvm.SizeConstants;
+import org.jikesrvm.VM;
+import org.jikesrvm.dr.Dr;
+import org.jikesrvm.dr.DrStats;
+import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.scheduler.Synchronization;
+import org.mmtk.plan.TraceLocal;
+import org.mmtk.utility.statistics.Stats;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.NoInline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Offset;
+import org.vmmagic.unboxed.Word;
+import org.vmmagic.unboxed.WordArray;
+
+/**
+ * Side table of FIB/CAS conflict counters, keyed by history address, so
+ * that histories need no extra words for Threshold.
+ *
+ * The table is split into STRIPES independently locked stripes of
+ * STRIPE_SLOTS entries.  A history hashes (by address) to a home slot in
+ * one stripe and lives in one of the MAX_PROBES slots following it within
+ * that stripe.  An entry is (holder, offset, count), and a zero count marks
+ * a free slot.  Storing a zero count removes the entry.  When a stripe has
+ * no free slot in range, the entry in the home slot is evicted: counts are
+ * only hints.
+ *
+ * Holders are weak: the table stores their addresses, and scanWeak(),
+ * called in the weak reference phase of every GC, forwards those of live
+ * holders and removes the entries of dead ones.  Moved holders invalidate
+ * home slots, so the first use after a GC rehashes the whole table.
+ */
+@Uninterruptible
+public final class ThresholdTable implements SizeConstants {
+
+  private static final int LOG_STRIPES = 4;
+  private static final int STRIPES = 1 << LOG_STRIPES;
+  private static final int LOG_STRIPE_SLOTS = 8;
+  private static final int STRIPE_SLOTS = 1 << LOG_STRIPE_SLOTS;
+  private static final int LOG_SLOTS = LOG_STRIPES + LOG_STRIPE_SLOTS;
+  private static final int SLOTS = 1 << LOG_SLOTS;
+  private static final int MAX_PROBES = 8;
+
+  /**
+   * Address of the object holding each entry's history (not traced), or
+   * zero for statics.
+   */
+  private static final WordArray holders = Dr.ADAPTIVE_CAS ? WordArray.create(SLOTS) : null;
+  /**
+   * Offset of each entry's history (the absolute address for statics).
+   */
+  private static final WordArray offsets = Dr.ADAPTIVE_CAS ? WordArray.create(SLOTS) : null;
+  /**
+   * Conflict count of each entry, or zero if the slot is free.
+   */
+  private static final WordArray counts = Dr.ADAPTIVE_CAS ? WordArray.create(SLOTS) : null;
+
+  /**
+   * Spare arrays for rehashing.
+   */
+  private static final WordArray spareHolders = Dr.ADAPTIVE_CAS ? WordArray.create(SLOTS) : null;
+  private static final WordArray spareOffsets = Dr.ADAPTIVE_CAS ? WordArray.create(SLOTS) : null;
+  private static final WordArray spareCounts = Dr.ADAPTIVE_CAS ? WordArray.create(SLOTS) : null;
+
+  /**
+   * Lock word of each stripe: 0 if free.
+   */
+  private static final int[] locks = Dr.ADAPTIVE_CAS ? new int[STRIPES] : null;
+
+  /**
+   * GC count when the table was last hashed.
+   */
+  private static int hashedAt = 0;
+
+  @Inline
+  private static Word address(final Object md) {
+    return ObjectReference.fromObject(md).toAddress().toWord();
+  }
+
+  @Inline
+  private static int home(final Word holder, final Offset historyOffset) {
+    final int a = holder.toAddress().plus(historyOffset).toWord().rshl(2).toInt();
+    return (a * 0x9E3779B1) >>> (32 - LOG_SLOTS);
+  }
+
+  @Inline
+  private static int stripe(final int home) {
+    return home >>> LOG_STRIPE_SLOTS;
+  }
+
+  @Inline
+  private static int probe(final int home, final int i) {
+    return (home & ~(STRIPE_SLOTS - 1)) | ((home + i) & (STRIPE_SLOTS - 1));
+  }
+
+  @Inline
+  private static Offset lockOffset(final int stripe) {
+    return Offset.fromIntZeroExtend(stripe << 2);
+  }
+
+  @Inline
+  private static void lock(final int stripe) {
+    while (!Synchronization.testAndSet(locks, lockOffset(stripe), 1));
+  }
+
+  @Inline
+  private static void unlock(final int stripe) {
+    Synchronization.fetchAndStore(locks, lockOffset(stripe), 0);
+  }
+
+  /**
+   * Find the slot of md/historyOffset.  Call with its stripe locked.
+   * @return the slot, or -1 if absent.
+   */
+  @Inline
+  private static int find(final Word holder, final Offset historyOffset, final int home) {
+    for (int i = 0; i < MAX_PROBES; i++) {
+      final int s = probe(home, i);
+      if (!counts.get(s).isZero() && holders.get(s).EQ(holder) && offsets.get(s).EQ(historyOffset.toWord())) {
+        return s;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Find a slot for a new entry.  Call with its stripe locked.
+   */
+  @Inline
+  private static int claim(final int home) {
+    for (int i = 0; i < MAX_PROBES; i++) {
+      final int s = probe(home, i);
+      if (counts.get(s).isZero()) return s;
+    }
+    if (Dr.STATS) DrStats.thresholdTableEvictions.inc();
+    return home;
+  }
+
+  /**
+   * Load the conflict count of the history at md/historyOffset.
+   * @param md
+   * @param historyOffset
+   * @return the count, or zero if none.
+   */
+  public static Word load(final Object md, final Offset historyOffset) {
+    if (hashedAt != Stats.gcCount()) rehash();
+    final Word holder = address(md);
+    final int home = home(holder, historyOffset);
+    lock(stripe(home));
+    final int s = find(holder, historyOffset, home);
+    final Word count = s < 0 ? Word.zero() : counts.get(s);
+    unlock(stripe(home));
+    return count;
+  }
+
+  /**
+   * Store the conflict count of the history at md/historyOffset.
+   * A zero count removes its entry.
+   * @param md
+   * @param historyOffset
+   * @param count
+   */
+  public static void store(final Object md, final Offset historyOffset, final Word count) {
+    if (hashedAt != Stats.gcCount()) rehash();
+    final Word holder = address(md);
+    final int home = home(holder, historyOffset);
+    lock(stripe(home));
+    int s = find(holder, historyOffset, home);
+    if (count.isZero()) {
+      if (s >= 0) counts.set(s, Word.zero());
+    } else {
+      if (s < 0) {
+        s = claim(home);
+        holders.set(s, holder);
+        offsets.set(s, historyOffset.toWord());
+      }
+      counts.set(s, count);
+    }
+    unlock(stripe(home));
+  }
+
+  /**
+   * Rehash all entries after their holders may have moved.
+   */
+  @NoInline
+  private static void rehash() {
+    for (int i = 0; i < STRIPES; i++) lock(i);
+    final int gcCount = Stats.gcCount();
+    if (hashedAt != gcCount) {
+      for (int s = 0; s < SLOTS; s++) {
+        spareHolders.set(s, holders.get(s));
+        spareOffsets.set(s, offsets.get(s));
+        spareCounts.set(s, counts.get(s));
+        counts.set(s, Word.zero());
+      }
+      for (int s = 0; s < SLOTS; s++) {
+        final Word count = spareCounts.get(s);
+        if (!count.isZero()) {
+          final Word holder = spareHolders.get(s);
+          final Offset historyOffset = spareOffsets.get(s).toOffset();
+          final int t = claim(home(holder, historyOffset));
+          holders.set(t, holder);
+          offsets.set(t, historyOffset.toWord());
+          counts.set(t, count);
+        }
+      }
+      Magic.sync();
+      hashedAt = gcCount;
+      if (Dr.STATS) DrStats.thresholdTableRehashes.inc();
+    }
+    for (int i = STRIPES - 1; i >= 0; i--) unlock(i);
+  }
+
+  /**
+   * Forward the holders of live entries and remove the entries of dead
+   * ones, keeping the counts of survivors.  Called in the weak reference
+   * phase of every GC, once the strong closure is complete; the next use
+   * rehashes the table.
+   * @param trace
+   */
+  public static void scanWeak(final TraceLocal trace) {
+    if (VM.VerifyAssertions) VM._assert(Dr.ADAPTIVE_CAS);
+    for (int s = 0; s < SLOTS; s++) {
+      if (!counts.get(s).isZero() && !holders.get(s).isZero()) {
+        final ObjectReference holder = holders.get(s).toAddress().toObjectReference();
+        if (trace.isLive(holder)) {
+          holders.set(s, trace.getForwardedReference(holder).toAddress().toWord());
+        } else {
+          counts.set(s, Word.zero());
+          if (Dr.STATS) DrStats.thresholdTableDropped.inc();
+        }
+      }
+    }
+  }
+}
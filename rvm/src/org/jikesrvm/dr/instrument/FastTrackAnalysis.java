@@ -10,6 +10,7 @@ import org.jikesrvm.compilers.opt.PlainFastTrackOptInstr;
 import org.jikesrvm.compilers.opt.PlainFastTrackOptSelection;
 import org.jikesrvm.compilers.opt.RedundantBarrierRemover;
 import org.jikesrvm.compilers.opt.ir.Instruction;
+import org.jikesrvm.dr.Dr;
 import org.jikesrvm.dr.DrRuntime;
 import org.jikesrvm.octet.ClientAnalysis;
 import org.jikesrvm.octet.Octet;
@@ -122,10 +123,14 @@ public class FastTrackAnalysis extends ClientAnalysis {
     return new PlainFastTrackOptInstr(lateInstr, redundantBarrierRemover);
   }
 
-  /** Let client analyses throw exceptions from barriers. */
+  /**
+   * Let client analyses throw exceptions from barriers.  Access barriers
+   * throw DataRaceException when built with Dr.RACE_EXCEPTIONS, so the opt
+   * compiler must keep calls in their inlined bodies as PEIs.
+   */
   @Inline
   public boolean barriersCanThrowExceptions() {
-    return false;
+    return Dr.RACE_EXCEPTIONS;
   }
 
   /** Decide whether we should instrument instructions having redundant barriers. Field sensitive analysis might need to turn this on to instrument accesses that have redundant barriers.*/
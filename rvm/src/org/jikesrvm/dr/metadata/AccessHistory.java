@@ -201,6 +201,9 @@ public final class AccessHistory implements SizeConstants {
         }
       }
     }
+    if (Dr.RENORMALIZE && Renormalization.isActive()) {
+      Renormalization.rebaseHistory(historyAddress);
+    }
   }
   public static void scan(TransitiveClosure trace, ObjectReference objectRef, Address historyAddress) {
     for (int i = 0; i < WORDS_IN_HISTORY; i++) {
@@ -220,6 +223,9 @@ public final class AccessHistory implements SizeConstants {
         }
       }
     }
+    if (Dr.RENORMALIZE && Renormalization.isActive()) {
+      Renormalization.rebaseHistory(historyAddress);
+    }
   }
 
   
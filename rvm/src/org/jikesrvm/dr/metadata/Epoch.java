@@ -108,6 +108,12 @@ public class Epoch implements SizeConstants {
    * Mask to select clock bits.
    */
   private static final Word CLOCK_MASK = Word.fromIntZeroExtend(MAX_CLOCK << CLOCK_START);
+  /**
+   * Clock at which a full-heap GC is requested to renormalize clocks
+   * (Dr.RENORMALIZE), halfway to MAX_CLOCK.
+   */
+  public static final int RENORMALIZE_CLOCK = MAX_CLOCK >> 1;
+  private static final Word RENORMALIZE_CLOCK_BITS = Word.fromIntZeroExtend(RENORMALIZE_CLOCK << CLOCK_START);
   
   private static final int INITIAL_CLOCK = 1;
   private static final Word CLOCK_ONE = Word.fromIntSignExtend(INITIAL_CLOCK).lsh(CLOCK_START);
@@ -239,6 +245,18 @@ public class Epoch implements SizeConstants {
     return epoch.and(CLOCK_MASK).rshl(CLOCK_START).toInt();
   }
   
+  /**
+   * Replace the clock of an epoch, keeping its tid and tag bits.
+   * @param epoch
+   * @param clock
+   * @return
+   */
+  @Inline
+  public static Word withClock(final Word epoch, final int clock) {
+    if (VM.VerifyAssertions) VM._assert(clock >= 0 && clock <= MAX_CLOCK);
+    return epoch.and(CLOCK_MASK.not()).or(Word.fromIntZeroExtend(clock).lsh(CLOCK_START));
+  }
+  
   /**
    * Has any epoch overflowed yet?  (racy flag)
    */
@@ -249,6 +267,10 @@ public class Epoch implements SizeConstants {
    * or (if already max) the same epoch.  (i.e.,
    * increment is sticky)
    * 
+   * Reaching RENORMALIZE_CLOCK requests a full-heap GC, which renormalizes
+   * clocks.  A sticky clock merges epochs, so overflow exits when
+   * assertions are enabled.
+   * 
    * @param epoch
    * @return
    */
@@ -256,13 +278,12 @@ public class Epoch implements SizeConstants {
   public static Word inc(final Word epoch) {
     // Overflow check.
     if (epoch.and(CLOCK_MASK).EQ(CLOCK_MASK)) {
-//      if (VM.VerifyAssertions) {
-//        // When checking assertions,
-//        // treat overflow as failure.
-//        DrDebug.twriteln("FAILURE: Clock overflow.");
-//        VM.sysExit(124);
-//      } else
-      {
+      if (VM.VerifyAssertions) {
+        // When checking assertions,
+        // treat overflow as failure.
+        DrDebug.twriteln("FAILURE: Clock overflow.  Use fewer epochTidBits() or drRenormalizeClocks().");
+        VM.sysExit(124);
+      } else {
         // When not checking assertions,
         // treat overflow as a warning (first time)
         // and "stick" clock to max.
@@ -274,7 +295,11 @@ public class Epoch implements SizeConstants {
         return epoch;
       }
     }
-    return epoch.plus(CLOCK_ONE);
+    final Word next = epoch.plus(CLOCK_ONE);
+    if (Dr.RENORMALIZE && next.and(CLOCK_MASK).EQ(RENORMALIZE_CLOCK_BITS)) {
+      Renormalization.requestGC();
+    }
+    return next;
   }
   
   /**
@@ -14,6 +14,7 @@ import org.jikesrvm.objectmodel.JavaHeaderConstants;
 import org.jikesrvm.objectmodel.MiscHeader;
 import org.jikesrvm.objectmodel.ObjectModel;
 import org.jikesrvm.objectmodel.TIB;
+import org.jikesrvm.runtime.Magic;
 import org.jikesrvm.scheduler.RVMThread;
 import org.mmtk.plan.TransitiveClosure;
 import org.vmmagic.pragma.Inline;
@@ -21,8 +22,10 @@ import org.vmmagic.pragma.Interruptible;
 import org.vmmagic.pragma.NoInline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.pragma.UninterruptibleNoWarn;
+import org.vmmagic.pragma.Unpreemptible;
 import org.vmmagic.unboxed.Address;
 import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Offset;
 import org.vmmagic.unboxed.Word;
 import org.vmmagic.unboxed.WordArray;
 
@@ -35,6 +38,8 @@ import org.vmmagic.unboxed.WordArray;
  * Metadata in data arrays:
  *   - extra header word: reference to dedicated metadata array
  *     (contains access histories for data array elements)
+ *     or, for long arrays with Dr.CHUNKED_ARRAY_SHADOWS, to an Object[]
+ *     spine of lazily allocated metadata arrays (chunks)
  * Metadata in metadata arrays:
  *   - extra header word: reference to lock VC for corresponding data array
  *   
@@ -109,6 +114,16 @@ public class ObjectShadow implements SizeConstants {
     return ObjectModel.testAvailableBit(objectRef.toObject(), ARRAY_SHADOW_BIT_INDEX);
   }
   
+  /**
+   * Is md an array shadow or chunk holding element histories?
+   * @param md
+   * @return
+   */
+  @Inline
+  public static boolean isArrayHistories(final Object md) {
+    return isArrayShadow(ObjectReference.fromObject(md));
+  }
+
   /**
    * Get the shadow array holding access histories for this array.
    * Call on arrays only.
@@ -151,15 +166,24 @@ public class ObjectShadow implements SizeConstants {
   private static Object initArrayShadow(final Object array, final Word headerWord) {
     if (VM.VerifyAssertions) VM._assert(!Epoch.isMapRef(headerWord));
     // If it's null, create a shadow and CAS a pointer to it in the header word.
-    MemoryManager.startAllocatingInUninterruptibleCode();
-    final Object s = WordArray.create(ObjectModel.getArrayLength(array) * AccessHistory.WORDS_IN_HISTORY);
-    MemoryManager.stopAllocatingInUninterruptibleCode();
-    
-    // Mark as array shadow.
-    if (VM.VerifyAssertions) {
-      VM._assert(!ObjectModel.testAvailableBit(s, ARRAY_SHADOW_BIT_INDEX));
+    final int length = ObjectModel.getArrayLength(array);
+    final Object s;
+    if (isChunked(array)) {
+      // Spine only: chunks are allocated on first access.
+      MemoryManager.startAllocatingInUninterruptibleCode();
+      s = new Object[(length + Dr.ARRAY_CHUNK_ELEMENTS - 1) >>> Dr.LOG_ARRAY_CHUNK_ELEMENTS];
+      MemoryManager.stopAllocatingInUninterruptibleCode();
+    } else {
+      MemoryManager.startAllocatingInUninterruptibleCode();
+      s = WordArray.create(length * AccessHistory.WORDS_IN_HISTORY);
+      MemoryManager.stopAllocatingInUninterruptibleCode();
+
+      // Mark as array shadow.
+      if (VM.VerifyAssertions) {
+        VM._assert(!ObjectModel.testAvailableBit(s, ARRAY_SHADOW_BIT_INDEX));
+      }
+      ObjectModel.setAvailableBit(s, ARRAY_SHADOW_BIT_INDEX, true);
     }
-    ObjectModel.setAvailableBit(s, ARRAY_SHADOW_BIT_INDEX, true);
     
     // CAS it into place.
     if (attemptHeader(array, headerWord, ObjectReference.fromObject(s).toAddress().toWord())) {
@@ -176,7 +200,345 @@ public class ObjectShadow implements SizeConstants {
       return w.toAddress().toObjectReference().toObject();
     }
   }
-  
+
+  // Chunked array shadows (Dr.CHUNKED_ARRAY_SHADOWS)
+  //
+  // The shadow of an array longer than Dr.ARRAY_CHUNK_ELEMENTS is an Object[]
+  // spine whose slots refer to chunks: ordinary (tagged) array shadows for
+  // ARRAY_CHUNK_ELEMENTS consecutive elements each, allocated on first access.
+  // The spine stands in for the flat shadow everywhere else, including
+  // holding the array's lock metadata in its header.  The GC traces spine
+  // slots like any other reference array.
+
+  /**
+   * Does array have a chunked shadow?  Decided by length alone.
+   * @param array
+   * @return
+   */
+  @Inline
+  private static boolean isChunked(final Object array) {
+    return Dr.CHUNKED_ARRAY_SHADOWS && ObjectModel.getArrayLength(array) > Dr.ARRAY_CHUNK_ELEMENTS;
+  }
+
+  /**
+   * Get the metadata array holding the access history of array[index].
+   * Use with arrayHistoryOffset(array, index).
+   * @param array
+   * @param index
+   * @return
+   */
+  @Inline
+  public static Object getArrayHistories(final Object array, final int index) {
+    final Object s = getArrayShadow(array);
+    if (!isChunked(array)) return s;
+    final int chunk = index >>> Dr.LOG_ARRAY_CHUNK_ELEMENTS;
+    final Object c = ObjectReference.fromObject(s).toAddress().loadObjectReference(chunkOffset(chunk)).toObject();
+    if (c != null) return c;
+    // SLOW PATH: lazy initialization.
+    return initArrayChunk(array, (Object[])s, chunk);
+  }
+
+  /**
+   * Get the offset of the access history of array[index] in
+   * getArrayHistories(array, index).
+   * @param array
+   * @param index
+   * @return
+   */
+  @Inline
+  public static Offset arrayHistoryOffset(final Object array, final int index) {
+    return AccessHistory.arrayHistoryOffset(
+        isChunked(array) ? index & (Dr.ARRAY_CHUNK_ELEMENTS - 1) : index);
+  }
+
+  /**
+   * Get the first index after index whose history is not in
+   * getArrayHistories(array, index).
+   * @param array
+   * @param index
+   * @return
+   */
+  @Inline
+  public static int arrayHistoriesLimit(final Object array, final int index) {
+    if (isChunked(array)) {
+      return Math.min(ObjectModel.getArrayLength(array),
+          ((index >>> Dr.LOG_ARRAY_CHUNK_ELEMENTS) + 1) << Dr.LOG_ARRAY_CHUNK_ELEMENTS);
+    }
+    return ObjectModel.getArrayLength(array);
+  }
+
+  @Inline
+  private static Offset chunkOffset(final int chunk) {
+    return Offset.fromIntZeroExtend(chunk << LOG_BYTES_IN_ADDRESS);
+  }
+
+  /**
+   * Allocate chunk number chunk of array's shadow and CAS it into the spine.
+   * @param array
+   * @param spine
+   * @param chunk
+   * @return the installed chunk
+   */
+  @NoInline
+  @UninterruptibleNoWarn
+  private static Object initArrayChunk(final Object array, final Object[] spine, final int chunk) {
+    final Object c = Dr.COARSE_ARRAY_CHUNKS ? newCoarseChunk() : newFineChunk(array, chunk);
+
+    if (ObjectReference.fromObject(spine).toAddress().attempt(
+        ObjectReference.nullReference(), ObjectReference.fromObject(c), chunkOffset(chunk))) {
+      if (Barriers.NEEDS_OBJECT_ASTORE_BARRIER) {
+        Barriers.objectArrayWritePreBarrier(spine, chunk, c);
+      }
+      if (Dr.STATS) DrStats.arrayShadowChunks.inc();
+      return c;
+    } else {
+      final Object w = ObjectReference.fromObject(spine).toAddress().loadObjectReference(chunkOffset(chunk)).toObject();
+      if (VM.VerifyAssertions) VM._assert(w != null);
+      return w;
+    }
+  }
+
+  /**
+   * Allocate a chunk with one history per element of chunk number chunk of
+   * array.
+   * @param array
+   * @param chunk
+   * @return
+   */
+  @Inline
+  @UninterruptibleNoWarn
+  private static Object newFineChunk(final Object array, final int chunk) {
+    final int first = chunk << Dr.LOG_ARRAY_CHUNK_ELEMENTS;
+    final int elements = Math.min(Dr.ARRAY_CHUNK_ELEMENTS, ObjectModel.getArrayLength(array) - first);
+    MemoryManager.startAllocatingInUninterruptibleCode();
+    final Object c = WordArray.create(elements * AccessHistory.WORDS_IN_HISTORY);
+    MemoryManager.stopAllocatingInUninterruptibleCode();
+    ObjectModel.setAvailableBit(c, ARRAY_SHADOW_BIT_INDEX, true);
+    return c;
+  }
+
+  // Coarse array chunks (Dr.COARSE_ARRAY_CHUNKS)
+  //
+  // A chunk starts coarse: a single (tagged) history shared by all of its
+  // elements, plus a mark array referenced from the chunk's header.  Word 0
+  // of the marks is the epoch of the owner's last access to the chunk and
+  // word 1 the epoch of its last write (the owner is the thread that created
+  // the chunk); the rest is a bitmap with a read bit and a write bit per
+  // element.  While only the owner accesses the chunk, every element it
+  // touched has a history by the owner, and the coarse history holds the
+  // latest of them, so it is exact for elements touched in the owner's
+  // current epoch and conservative (a later clock of the same thread) for
+  // the others.
+  //
+  // The first access by another thread splits the chunk: seal the
+  // coarse chunk by CAS of its header to SEALED_CHUNK, build one history per
+  // element from the coarse history and the marks, and store the fine chunk
+  // in the spine.  Chunks never become coarse again.
+  //
+  // An owner access that sets a new mark, or the first access of its kind
+  // in a new epoch (the only kinds that can change the coarse history),
+  // fences and rechecks the seal afterwards; if the chunk
+  // was sealed meanwhile, the access is redone on the fine chunk.  Nobody
+  // allocates while a chunk is sealed, so waiting for the fine chunk cannot
+  // hold up a GC.
+
+  /**
+   * Results of markCoarseChunk.
+   */
+  public static final int COARSE_SPLIT = 0;
+  public static final int COARSE_MARKED = 1;
+  public static final int COARSE_NEW_MARK = 2;
+
+  /**
+   * Header of a coarse chunk once it has been split.  Neither a reference
+   * nor an epoch, and distinct from the VC header tag (Epoch.RESERVED), so
+   * that GC does not take a sealed chunk for a VC.
+   */
+  private static final Word SEALED_CHUNK = Epoch.RESERVED.or(Word.fromIntZeroExtend(BYTES_IN_ADDRESS));
+  static {
+    if (VM.VerifyAssertions) {
+      VM._assert(!Epoch.isRef(SEALED_CHUNK) && !Epoch.isEpoch(SEALED_CHUNK));
+      VM._assert(SEALED_CHUNK.NE(Epoch.RESERVED));
+    }
+  }
+
+  private static final Offset COARSE_LAST_ACCESS_OFFSET = Offset.zero();
+  private static final Offset COARSE_LAST_WRITE_OFFSET = Offset.fromIntZeroExtend(BYTES_IN_WORD);
+  private static final int WORDS_IN_COARSE_MARK_HEADER = 2;
+  private static final int WORDS_IN_COARSE_MARKS =
+      WORDS_IN_COARSE_MARK_HEADER + ((Dr.ARRAY_CHUNK_ELEMENTS << 1) + BITS_IN_WORD - 1 >>> LOG_BITS_IN_WORD);
+
+  /**
+   * Allocate a coarse chunk owned by the current thread in its current epoch.
+   * @return
+   */
+  @Inline
+  @UninterruptibleNoWarn
+  private static Object newCoarseChunk() {
+    MemoryManager.startAllocatingInUninterruptibleCode();
+    final WordArray marks = WordArray.create(WORDS_IN_COARSE_MARKS);
+    final WordArray c = WordArray.create(AccessHistory.WORDS_IN_HISTORY);
+    MemoryManager.stopAllocatingInUninterruptibleCode();
+    marks.set(0, RVMThread.getCurrentThread().getDrEpoch());
+    marks.set(1, Epoch.NONE);
+    ObjectModel.setAvailableBit(c, ARRAY_SHADOW_BIT_INDEX, true);
+    setHeaderRef(c, marks);
+    if (Dr.STATS) DrStats.arrayCoarseChunks.inc();
+    return c;
+  }
+
+  /**
+   * Is md, as returned by getArrayHistories(array, ...), a coarse chunk?
+   * @param array
+   * @param md
+   * @return
+   */
+  @Inline
+  public static boolean isCoarseChunk(final Object array, final Object md) {
+    return Dr.COARSE_ARRAY_CHUNKS && isChunked(array) && !loadHeader(md).isZero();
+  }
+
+  @Inline
+  private static int markBit(final int index, final boolean isWrite) {
+    return ((index & (Dr.ARRAY_CHUNK_ELEMENTS - 1)) << 1) + (isWrite ? 1 : 0);
+  }
+  @Inline
+  private static Offset markOffset(final int bit) {
+    return Offset.fromIntZeroExtend((WORDS_IN_COARSE_MARK_HEADER + (bit >>> LOG_BITS_IN_WORD)) << LOG_BYTES_IN_WORD);
+  }
+  @Inline
+  private static Word markMask(final int bit) {
+    return Word.one().lsh(bit & (BITS_IN_WORD - 1));
+  }
+
+  /**
+   * Record an access to array[index] by a thread in epoch in coarse chunk
+   * coarse, if the chunk may still be used for it.
+   * @param coarse
+   * @param index
+   * @param isWrite
+   * @param epoch
+   * @return COARSE_SPLIT if the access must go to a fine chunk,
+   *         COARSE_MARKED if the element was already marked and the access
+   *           cannot change the coarse history,
+   *         COARSE_NEW_MARK if this access marked it or may change the
+   *           coarse history.
+   */
+  @Inline
+  public static int markCoarseChunk(final Object coarse, final int index, final boolean isWrite, final Word epoch) {
+    final Word h = loadHeader(coarse);
+    if (!Epoch.isRef(h)) return COARSE_SPLIT;
+    final Address marks = h.toAddress();
+    final Word lastAccess = marks.loadWord(COARSE_LAST_ACCESS_OFFSET);
+    if (!Epoch.sameTid(lastAccess, epoch)) return COARSE_SPLIT;
+    final int bit = markBit(index, isWrite);
+    final Word w = marks.loadWord(markOffset(bit));
+    // A read in an epoch that has seen any access, or a write in an epoch
+    // that has seen a write, leaves the coarse history as it is.
+    final boolean current = isWrite ? marks.loadWord(COARSE_LAST_WRITE_OFFSET).EQ(epoch) : lastAccess.EQ(epoch);
+    if (current && !w.and(markMask(bit)).isZero()) return COARSE_MARKED;
+    if (!current) {
+      marks.store(epoch, COARSE_LAST_ACCESS_OFFSET);
+      if (isWrite) marks.store(epoch, COARSE_LAST_WRITE_OFFSET);
+    }
+    marks.store(w.or(markMask(bit)), markOffset(bit));
+    return COARSE_NEW_MARK;
+  }
+
+  /**
+   * After an access that set a new mark in coarse: was coarse still unsealed
+   * once the access was complete?
+   * @param coarse
+   * @return
+   */
+  @Inline
+  public static boolean coarseChunkIntact(final Object coarse) {
+    Magic.fence();
+    return Epoch.isRef(loadHeader(coarse));
+  }
+
+  /**
+   * Is objectRef a coarse chunk that has not been split?  Its header refers
+   * to its marks, where an array shadow's header may refer only to a VC.
+   * @param objectRef
+   * @return
+   */
+  @Inline
+  private static boolean isCoarseChunk(final ObjectReference objectRef) {
+    if (!Dr.COARSE_ARRAY_CHUNKS || !isArrayShadow(objectRef)) return false;
+    final Word h = headerAddress(objectRef).loadWord();
+    return Epoch.isRef(h) && !VC.isVC(h.toAddress().toObjectReference());
+  }
+
+  /**
+   * Is objectRef a coarse chunk that has been split?
+   * @param objectRef
+   * @return
+   */
+  @Inline
+  private static boolean isSealedChunk(final ObjectReference objectRef) {
+    return Dr.COARSE_ARRAY_CHUNKS && headerAddress(objectRef).loadWord().EQ(SEALED_CHUNK);
+  }
+
+  /**
+   * Split the coarse chunk holding array[index], or wait for the thread
+   * splitting it.
+   * @param array
+   * @param index
+   * @param coarse
+   * @return the fine chunk that replaced coarse
+   */
+  @NoInline
+  @UninterruptibleNoWarn
+  public static Object splitCoarseChunk(final Object array, final int index, final Object coarse) {
+    final int chunk = index >>> Dr.LOG_ARRAY_CHUNK_ELEMENTS;
+    if (Epoch.isRef(loadHeader(coarse))) {
+      final Object fine = newFineChunk(array, chunk);
+      // Reload after allocation: the GC may have moved the marks.
+      final Word h = loadHeader(coarse);
+      if (Epoch.isRef(h) && attemptHeader(coarse, h, SEALED_CHUNK)) {
+        final Address from = ObjectReference.fromObject(coarse).toAddress();
+        final Offset readOffset = Offset.fromIntSignExtend(AccessHistory.READ_WORD_OFFSET);
+        final Offset writeOffset = Offset.fromIntSignExtend(AccessHistory.WRITE_WORD_OFFSET);
+        // Let any update in progress by the owner finish.
+        while (from.loadWord(readOffset).EQ(Epoch.RESERVED) || from.loadWord(writeOffset).EQ(Epoch.RESERVED)) {
+          Magic.pause();
+        }
+        final Address marks = h.toAddress();
+        final Address to = ObjectReference.fromObject(fine).toAddress();
+        final int elements = ((WordArray)fine).length() / AccessHistory.WORDS_IN_HISTORY;
+        for (int i = 0; i < elements; i++) {
+          final int readBit = markBit(i, false);
+          final int writeBit = markBit(i, true);
+          final boolean read = !marks.loadWord(markOffset(readBit)).and(markMask(readBit)).isZero();
+          final boolean written = !marks.loadWord(markOffset(writeBit)).and(markMask(writeBit)).isZero();
+          if (!read && !written) continue;
+          final Address history = to.plus(AccessHistory.arrayHistoryOffset(i));
+          for (int w = 0; w < AccessHistory.WORDS_IN_HISTORY; w++) {
+            final Offset o = Offset.fromIntZeroExtend(w << LOG_BYTES_IN_WORD);
+            if ((o.EQ(readOffset) && !read) || (o.EQ(writeOffset) && !written)) continue;
+            history.store(from.loadWord(o), o);
+          }
+        }
+        Magic.writeFloor();
+        final Object[] spine = (Object[])getArrayShadow(array);
+        ObjectReference.fromObject(spine).toAddress().store(ObjectReference.fromObject(fine), chunkOffset(chunk));
+        if (Barriers.NEEDS_OBJECT_ASTORE_BARRIER) {
+          Barriers.objectArrayWritePreBarrier(spine, chunk, fine);
+        }
+        if (Dr.STATS) DrStats.arrayChunkSplits.inc();
+        return fine;
+      }
+    }
+    // Another thread is splitting: wait for its fine chunk.
+    final Address slot = ObjectReference.fromObject(getArrayShadow(array)).toAddress().plus(chunkOffset(chunk));
+    Object c;
+    while ((c = slot.loadObjectReference().toObject()) == coarse) {
+      Magic.pause();
+    }
+    Magic.readCeiling();
+    return c;
+  }
   
   /**
    * Get the EpochMap/vector clock for this object's lock.
@@ -206,7 +568,164 @@ public class ObjectShadow implements SizeConstants {
     }
     // FIXME: ignores ESCAPE
   }
-  
+
+  // Lazy lock VCs (Dr.LAZY_LOCK_VCS)
+  //
+  // A lock's header holds null, a VC, or the epoch e of the last thread u
+  // to release it.  While the header holds e, the lock is in u's pending
+  // list, and u inflates all pending locks before its VC grows.  So if the
+  // header still holds e, u's current VC (with u's own entry set back to e)
+  // is exactly u's VC at the release, and another thread can inflate the
+  // lock from it.  Inflation races are settled by CAS on the header.
+
+  /**
+   * Capacity of each thread's pending lock list.
+   */
+  public static final int MAX_PENDING_LOCKS = 16;
+
+  /**
+   * Get the object whose header holds object's lock metadata.
+   * @param object
+   * @return
+   */
+  @Inline
+  private static Object lockHolder(final Object object) {
+    if (Dr.ARRAY_SHADOWS && ObjectModel.getObjectType(object).isArrayType()) {
+      return getArrayShadow(object);
+    }
+    return object;
+  }
+
+  /**
+   * Get the VC the current thread must join to acquire object's lock,
+   * or null if the current thread already knows everything the lock does.
+   * Only call this when the object is currently locked by the current thread.
+   * @param object
+   * @return
+   */
+  @Unpreemptible
+  public static WordArray getAcquireVC(final Object object) {
+    if (VM.VerifyAssertions) {
+      VM._assert(Dr.LAZY_LOCK_VCS);
+      VM._assert(VM.runningVM);
+      VM._assert(!ObjectModel.getObjectType(object).getTypeRef().isMagicType());
+    }
+    final Object holder = lockHolder(object);
+    final Word h = loadHeader(holder);
+    if (Epoch.isRef(h)) {
+      return (WordArray)h.toAddress().toObjectReference().toObject();
+    } else if (Epoch.isEpoch(h) && !Epoch.sameTid(h, RVMThread.getCurrentThread().getDrEpoch())) {
+      return inflateFromReleaser(holder, h);
+    } else {
+      // Never released, or last released by this thread.
+      return null;
+    }
+  }
+
+  /**
+   * Inflate the lock metadata in holder, whose header holds the release
+   * epoch e of another thread.
+   * @param holder
+   * @param e
+   * @return the lock's VC
+   */
+  @NoInline
+  @Unpreemptible
+  private static WordArray inflateFromReleaser(final Object holder, final Word e) {
+    final RVMThread releaser = DrRuntime.getDrThread(Epoch.tid(e));
+    final WordArray vc = VC.copy(releaser.drThreadVC);
+    VC.set(vc, e);
+    VC.setStamp(vc, e);
+    Magic.fence();
+    if (attemptHeader(holder, e, ObjectReference.fromObject(vc).toAddress().toWord())) {
+      Barriers.objectFieldWritePreBarrier(holder, vc, MiscHeader.FIB_OFFSET, -1);
+      if (Dr.STATS) {
+        DrStats.lockVCs.inc();
+        DrStats.lazyLockInflations.inc();
+      }
+      return vc;
+    }
+    // The releaser inflated it first.
+    final Word w = loadHeader(holder);
+    if (VM.VerifyAssertions) VM._assert(Epoch.isRef(w));
+    return (WordArray)w.toAddress().toObjectReference().toObject();
+  }
+
+  /**
+   * Release object's lock by recording only the current epoch, if the lock
+   * has not been inflated.  Only call this when the object is currently
+   * locked by the current thread.
+   * @param object
+   * @return the lock's VC if it has been inflated, else null.
+   */
+  @Unpreemptible
+  public static WordArray releaseLazily(final Object object) {
+    if (VM.VerifyAssertions) {
+      VM._assert(Dr.LAZY_LOCK_VCS);
+      VM._assert(VM.runningVM);
+    }
+    final Object holder = lockHolder(object);
+    final Word h = loadHeader(holder);
+    if (Epoch.isRef(h)) {
+      return (WordArray)h.toAddress().toObjectReference().toObject();
+    }
+    final RVMThread t = RVMThread.getCurrentThread();
+    if (VM.VerifyAssertions) {
+      VM._assert(h.isZero() || Epoch.sameTid(h, t.getDrEpoch()));
+    }
+    final Object[] pending = t.drPendingLocks;
+    int n = t.drPendingLockCount;
+    boolean listed = false;
+    for (int i = 0; i < n; i++) {
+      if (pending[i] == holder) {
+        listed = true;
+        break;
+      }
+    }
+    if (!listed) {
+      if (n == MAX_PENDING_LOCKS) {
+        inflatePendingLocks(t);
+        n = 0;
+      }
+      pending[n] = holder;
+      t.drPendingLockCount = n + 1;
+    }
+    storeHeader(holder, t.getDrEpoch());
+    if (Dr.STATS) DrStats.lazyLockReleases.inc();
+    return null;
+  }
+
+  /**
+   * Inflate every lock in t's pending list that still holds t's release
+   * epoch.  Must be called by t before t's VC grows.
+   * @param t
+   */
+  @NoInline
+  @Unpreemptible
+  public static void inflatePendingLocks(final RVMThread t) {
+    if (VM.VerifyAssertions) VM._assert(t == RVMThread.getCurrentThread());
+    final Object[] pending = t.drPendingLocks;
+    final int n = t.drPendingLockCount;
+    for (int i = 0; i < n; i++) {
+      final Object holder = pending[i];
+      pending[i] = null;
+      final Word e = loadHeader(holder);
+      if (Epoch.isEpoch(e) && Epoch.sameTid(e, t.getDrEpoch())) {
+        final WordArray vc = VC.copy(t.drThreadVC);
+        VC.set(vc, e);
+        VC.setStamp(vc, e);
+        if (attemptHeader(holder, e, ObjectReference.fromObject(vc).toAddress().toWord())) {
+          Barriers.objectFieldWritePreBarrier(holder, vc, MiscHeader.FIB_OFFSET, -1);
+          if (Dr.STATS) {
+            DrStats.lockVCs.inc();
+            DrStats.lazyLockInflations.inc();
+          }
+        }
+      }
+    }
+    t.drPendingLockCount = 0;
+  }
+
 //  private static final Word HOLDER_LOCKED = Epoch.TAG;
 //  private static final Word HOLDER_NONE = Word.zero();
   
@@ -312,6 +831,21 @@ public class ObjectShadow implements SizeConstants {
     
     scanHeader(trace, objectRef);
     
+    if (Dr.RENORMALIZE && Renormalization.isActive() && !isSealedChunk(objectRef)) {
+      if (VC.isVC(objectRef)) {
+        Renormalization.rebaseVC((WordArray)objectRef.toObject());
+      } else if (isCoarseChunk(objectRef)) {
+        // The owner's epochs in the marks (already traced by scanHeader).
+        final Address marks = headerAddress(objectRef).loadWord().toAddress();
+        marks.store(Renormalization.rebase(marks.loadWord(COARSE_LAST_ACCESS_OFFSET)), COARSE_LAST_ACCESS_OFFSET);
+        marks.store(Renormalization.rebase(marks.loadWord(COARSE_LAST_WRITE_OFFSET)), COARSE_LAST_WRITE_OFFSET);
+      } else if (Dr.LAZY_LOCK_VCS) {
+        // Lazy lock release epoch.
+        final Address a = headerAddress(objectRef);
+        a.store(Renormalization.rebase(a.loadWord()));
+      }
+    }
+    
     if (!Dr.FULL_SCAN) return;
 
     if (isArrayShadow(objectRef)) {
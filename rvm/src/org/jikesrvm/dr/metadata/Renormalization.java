@@ -0,0 +1,201 @@
+package org.jikesrvm.dr.metadata;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.dr.Dr;
+import org.jikesrvm.dr.DrDebug;
+import org.jikesrvm.dr.DrRuntime;
+import org.jikesrvm.dr.DrStats;
+import org.jikesrvm.dr.fib.FibComm;
+import org.jikesrvm.mm.mminterface.Selected;
+import org.jikesrvm.scheduler.RVMThread;
+import org.mmtk.plan.Plan;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.NoInline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Offset;
+import org.vmmagic.unboxed.Word;
+import org.vmmagic.unboxed.WordArray;
+
+/**
+ * Rebase epoch clocks during full-heap GC so that long-running threads
+ * do not saturate MAX_CLOCK.
+ *
+ * For each tid t, floor[t] is the minimum clock of t known by any live
+ * thread's VC.  Every live thread has seen all of t's epochs up to
+ * floor[t], so those epochs are indistinguishable for race checking and can
+ * all be collapsed to clock 1.  Epochs above the floor are shifted down by
+ * floor[t] - 1, which preserves their order with respect to every VC.
+ *
+ * The thread epochs are rebased in prepare().  Everything else is rebased
+ * while the collector scans it: VCs (recognized by VC.HEADER_TAG), object
+ * and array shadow histories, static histories, and the read maps they
+ * refer to.  This assumes each live object is scanned exactly once per
+ * full-heap trace and that read maps are not shared between histories.
+ *
+ * All methods run with the world stopped.
+ */
+@Uninterruptible
+public final class Renormalization {
+
+  /**
+   * Renormalize once any thread's clock passes this threshold.
+   */
+  private static final int THRESHOLD = Epoch.RENORMALIZE_CLOCK;
+
+  /**
+   * Per-tid clock shift for the renormalization in progress.
+   */
+  private static final int[] shift = new int[Epoch.MAX_THREADS];
+
+  /**
+   * Is a renormalization in progress during the current GC?
+   */
+  private static boolean active = false;
+
+  @Inline
+  public static boolean isActive() {
+    return active;
+  }
+
+  /**
+   * Ask for a full-heap GC at the next safe point, since a thread's clock
+   * just reached THRESHOLD.  Without it, a program that rarely needs a
+   * full-heap GC could overflow clocks, in particular with many tid bits
+   * (e.g., 21 clock bits under FibWideArray).
+   */
+  @NoInline
+  public static void requestGC() {
+    if (Dr.STATS) DrStats.renormalizationRequests.inc();
+    Selected.Plan.get().forceFullHeapCollection();
+    Plan.controlCollectorContext.request();
+  }
+
+  /**
+   * Called with the world stopped before a full-heap trace.
+   * Decide whether to renormalize and, if so, compute the shifts and rebase
+   * thread epochs.
+   */
+  public static void prepare() {
+    if (VM.VerifyAssertions) VM._assert(Dr.RENORMALIZE && !active);
+    final int bound = DrRuntime.maxLiveDrThreads();
+    if (bound <= 1) return;
+
+    boolean needed = false;
+    for (int tid = 0; tid < bound; tid++) {
+      final RVMThread t = DrRuntime.getDrThreadIfLive(tid);
+      if (t != null && Epoch.clock(t.getDrEpoch()) >= THRESHOLD) {
+        needed = true;
+        break;
+      }
+    }
+    if (!needed) return;
+
+    boolean any = false;
+    DrRuntime.clockFloors(shift);
+    for (int tid = 0; tid < bound; tid++) {
+      final int floor = shift[tid];
+      shift[tid] = floor > 1 ? floor - 1 : 0;
+      if (shift[tid] > 0) any = true;
+    }
+    // Only live thread VCs bound the floors: a live thread that knows no
+    // epoch of tid may still join a lock VC holding any of its old clocks,
+    // so those clocks must stay distinct.
+    for (int tid = 0; tid < bound; tid++) {
+      final RVMThread t = DrRuntime.getDrThreadIfLive(tid);
+      if (t != null && shift[tid] == 0 && Epoch.clock(t.getDrEpoch()) >= THRESHOLD) {
+        blocked(tid);
+      }
+    }
+    if (!any) return;
+
+    // Retired threads are included: their epochs seed the clocks of threads
+    // that recycle their tids.
+    for (int tid = 0; tid < bound; tid++) {
+      final RVMThread t = DrRuntime.getDrThreadUnchecked(tid);
+      if (t != null) {
+        t.setDrEpoch(rebase(t.getDrEpoch()));
+        VC.markVC(t.drThreadVC);
+        if (FibComm.ASYNC) t.drFibComm.rebaseAsyncLog();
+      }
+    }
+    active = true;
+    if (Dr.STATS) DrStats.renormalizations.inc();
+  }
+
+  /**
+   * Has blocked() warned yet?
+   */
+  private static boolean warnedBlocked = false;
+
+  /**
+   * Note that tid's clock is near overflow but some live thread's VC holds
+   * its floor down, so it cannot be rebased.  Warns once in every build.
+   * @param tid
+   */
+  @NoInline
+  private static void blocked(final int tid) {
+    if (Dr.STATS) DrStats.renormalizationsBlocked.inc();
+    if (warnedBlocked) return;
+    warnedBlocked = true;
+    DrDebug.lock();
+    DrDebug.twrite(); VM.sysWriteln("WARNING: Clock of T", tid,
+        " is near overflow, but a live thread that has not synchronized with it keeps it from being renormalized.");
+    DrDebug.unlock();
+  }
+
+  /**
+   * Called with the world stopped after a full-heap trace.
+   */
+  public static void release() {
+    // Only now: rebaseVC compares stamps with the old first epochs.
+    if (active) VC.rebaseIncarnations();
+    active = false;
+  }
+
+  /**
+   * Rebase one epoch.  Non-epochs and the origin epoch are left unchanged.
+   * @param w
+   * @return
+   */
+  @Inline
+  public static Word rebase(final Word w) {
+    if (!Epoch.isEpoch(w) || Epoch.isOrigin(w)) return w;
+    final int s = shift[Epoch.tid(w)];
+    if (s == 0) return w;
+    final int c = Epoch.clock(w);
+    return Epoch.withClock(w, c > s + 1 ? c - s : 1);
+  }
+
+  /**
+   * Rebase all entries of a vector clock in place.
+   * @param vc
+   */
+  public static void rebaseVC(final WordArray vc) {
+    final int bound = DrRuntime.maxLiveDrThreads();
+    for (int tid = 0; tid < bound; tid++) {
+      VC.set(vc, tid, rebase(VC.get(vc, tid)));
+    }
+    // Drop a stamp of a dead thread whose tid was recycled: rebasing could
+    // make it look as new as the tid's current thread.
+    final Word stamp = VC.getStamp(vc);
+    VC.setStamp(vc, VC.isStaleStamp(stamp) ? Epoch.NONE : rebase(stamp));
+  }
+
+  /**
+   * Rebase the read and write words of the history at historyAddress.
+   * Call after any map reference in the read word has been traced.
+   * @param historyAddress
+   */
+  public static void rebaseHistory(final Address historyAddress) {
+    final Offset readOffset = Offset.fromIntSignExtend(AccessHistory.READ_WORD_OFFSET);
+    final Offset writeOffset = Offset.fromIntSignExtend(AccessHistory.WRITE_WORD_OFFSET);
+    final Word r = historyAddress.loadWord(readOffset);
+    if (Epoch.isMapRef(r)) {
+      Dr.readers().renormalize(Epoch.asMapRef(r));
+    } else {
+      historyAddress.store(rebase(r), readOffset);
+    }
+    historyAddress.store(rebase(historyAddress.loadWord(writeOffset)), writeOffset);
+  }
+}
@@ -0,0 +1,364 @@
+package org.jikesrvm.dr.metadata;
+
+import org.jikesrvm.SizeConstants;
+import org.jikesrvm.VM;
+import org.jikesrvm.dr.Dr;
+import org.jikesrvm.dr.DrStats;
+import org.jikesrvm.mm.mminterface.MemoryManager;
+import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.scheduler.Synchronization;
+import org.mmtk.plan.TraceLocal;
+import org.mmtk.utility.statistics.Stats;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.NoInline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.pragma.UninterruptibleNoWarn;
+import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Offset;
+import org.vmmagic.unboxed.Word;
+import org.vmmagic.unboxed.WordArray;
+
+/**
+ * Side table of VCs for sun.misc.Unsafe synchronization on locations other
+ * than volatile fields (which use the field's own VC), keyed by address
+ * (holder object and offset), so that java.util.concurrent atomics order
+ * accesses like volatiles do without a VC field per location.  Park/unpark
+ * use the parked RVMThread as holder at offset 0.  Entry VCs are volatile
+ * VCs (VC.createVolatileVC) and are used as in DrRuntime's volatile
+ * protocol.
+ *
+ * Same layout as fib.ThresholdTable: STRIPES independently locked stripes
+ * and MAX_PROBES slots per home slot.  A null VC marks a free slot.  The
+ * table is rehashed on its first use after a GC that moved a holder.
+ *
+ * Lookups that find their entry take no lock.  An insert fills the holder
+ * and offset before publishing the VC, and slots change otherwise only in
+ * a rehash (which makes version odd while it swaps the arrays) or in GC.  A
+ * lockless lookup that overlaps a rehash, or misses, retries under the
+ * stripe lock.
+ *
+ * Entries are never evicted, since a lost release would report false
+ * races.  When a new entry finds no free slot in range, the table doubles.
+ * Holders are weak: the table stores their addresses, and scanWeak(),
+ * called in the weak reference phase of every GC, forwards those of live
+ * holders and drops the entries of dead ones, which no thread can access
+ * again.
+ */
+@Uninterruptible
+public final class UnsafeVCs implements SizeConstants {
+
+  private static final int LOG_STRIPES = 4;
+  private static final int STRIPES = 1 << LOG_STRIPES;
+  private static final int INITIAL_LOG_STRIPE_SLOTS = 8;
+  private static final int MAX_PROBES = 8;
+
+  /**
+   * log2 of the slots in each stripe.  Changed only with all stripes locked.
+   */
+  private static int logStripeSlots = INITIAL_LOG_STRIPE_SLOTS;
+
+  /**
+   * Address of the object holding each entry's location (not traced).
+   */
+  private static WordArray holders = Dr.UNSAFE_SYNC ? WordArray.create(STRIPES << INITIAL_LOG_STRIPE_SLOTS) : null;
+  /**
+   * Offset of each entry's location in its holder.
+   */
+  private static WordArray offsets = Dr.UNSAFE_SYNC ? WordArray.create(STRIPES << INITIAL_LOG_STRIPE_SLOTS) : null;
+  /**
+   * VC of each entry, or null if the slot is free.
+   */
+  private static Object[] vcs = Dr.UNSAFE_SYNC ? new Object[STRIPES << INITIAL_LOG_STRIPE_SLOTS] : null;
+
+  /**
+   * Spare arrays for rehashing, swapped with the above by each rehash.
+   */
+  private static WordArray spareHolders = Dr.UNSAFE_SYNC ? WordArray.create(STRIPES << INITIAL_LOG_STRIPE_SLOTS) : null;
+  private static WordArray spareOffsets = Dr.UNSAFE_SYNC ? WordArray.create(STRIPES << INITIAL_LOG_STRIPE_SLOTS) : null;
+  private static Object[] spareVCs = Dr.UNSAFE_SYNC ? new Object[STRIPES << INITIAL_LOG_STRIPE_SLOTS] : null;
+
+  /**
+   * Lock word of each stripe: 0 if free.
+   */
+  private static final int[] locks = Dr.UNSAFE_SYNC ? new int[STRIPES] : null;
+
+  /**
+   * Has a GC moved a holder since the table was last hashed?
+   */
+  private static boolean rehashNeeded = false;
+
+  /**
+   * Bumped before and after each rehash swaps the arrays: odd while
+   * swapping.
+   */
+  private static int version = 0;
+
+  @Inline
+  private static Word address(final Object holder) {
+    return ObjectReference.fromObject(holder).toAddress().toWord();
+  }
+
+  @Inline
+  private static int home(final Word holder, final Offset offset, final int log) {
+    final int a = holder.toAddress().plus(offset).toWord().rshl(2).toInt();
+    return (a * 0x9E3779B1) >>> (32 - LOG_STRIPES - log);
+  }
+
+  @Inline
+  private static int stripe(final int home, final int log) {
+    return home >>> log;
+  }
+
+  @Inline
+  private static int probe(final int home, final int i, final int log) {
+    final int mask = (1 << log) - 1;
+    return (home & ~mask) | ((home + i) & mask);
+  }
+
+  @Inline
+  private static Offset lockOffset(final int stripe) {
+    return Offset.fromIntZeroExtend(stripe << 2);
+  }
+
+  @Inline
+  private static void lock(final int stripe) {
+    while (!Synchronization.testAndSet(locks, lockOffset(stripe), 1));
+  }
+
+  @Inline
+  private static void unlock(final int stripe) {
+    Synchronization.fetchAndStore(locks, lockOffset(stripe), 0);
+  }
+
+  @Inline
+  private static void lockAll() {
+    for (int i = 0; i < STRIPES; i++) lock(i);
+  }
+
+  @Inline
+  private static void unlockAll() {
+    for (int i = STRIPES - 1; i >= 0; i--) unlock(i);
+  }
+
+  /**
+   * Find the slot of holder/offset.  Call with its stripe locked.
+   * @return the slot, or -1 if absent.
+   */
+  @Inline
+  private static int find(final Word holder, final Offset offset, final int home) {
+    for (int i = 0; i < MAX_PROBES; i++) {
+      final int s = probe(home, i, logStripeSlots);
+      if (vcs[s] != null && holders.get(s).EQ(holder) && offsets.get(s).EQ(offset.toWord())) {
+        return s;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Find a free slot in range of home in vcArray.
+   * @return the slot, or -1 if there is none.
+   */
+  @Inline
+  private static int claim(final Object[] vcArray, final int home, final int log) {
+    for (int i = 0; i < MAX_PROBES; i++) {
+      final int s = probe(home, i, log);
+      if (vcArray[s] == null) return s;
+    }
+    return -1;
+  }
+
+  /**
+   * Find the VC of holder/offset without locking.
+   * @return the VC, or null if absent or a rehash got in the way.
+   */
+  @Inline
+  private static WordArray lookup(final Word holder, final Offset offset) {
+    final int v = version;
+    if ((v & 1) != 0 || rehashNeeded) return null;
+    Magic.readCeiling();
+    // The arrays are swapped before logStripeSlots changes, so they are at
+    // least as large as log implies.
+    final int log = logStripeSlots;
+    Magic.readCeiling();
+    final Object[] vcArray = vcs;
+    final WordArray holderArray = holders;
+    final WordArray offsetArray = offsets;
+    final int home = home(holder, offset, log);
+    WordArray vc = null;
+    for (int i = 0; i < MAX_PROBES; i++) {
+      final int s = probe(home, i, log);
+      final Object o = vcArray[s];
+      if (o != null) {
+        Magic.readCeiling();
+        if (holderArray.get(s).EQ(holder) && offsetArray.get(s).EQ(offset.toWord())) {
+          vc = (WordArray)o;
+          break;
+        }
+      }
+    }
+    Magic.readCeiling();
+    return version == v ? vc : null;
+  }
+
+  /**
+   * Get the VC of holder/offset.
+   * @param holder
+   * @param offset
+   * @param create create the entry if absent?
+   * @return the VC, or null if none and not create.
+   */
+  public static WordArray get(final Object holder, final Offset offset, final boolean create) {
+    final WordArray hit = lookup(address(holder), offset);
+    if (hit != null) return hit;
+    WordArray fresh = null;
+    while (true) {
+      if (rehashNeeded) rehash(0);
+      final int log = logStripeSlots;
+      final Word h = address(holder);
+      final int home = home(h, offset, log);
+      final int stripe = stripe(home, log);
+      lock(stripe);
+      if (log == logStripeSlots && !rehashNeeded) {
+        int s = find(h, offset, home);
+        if (s >= 0 || !create) {
+          final WordArray vc = s < 0 ? null : (WordArray)vcs[s];
+          unlock(stripe);
+          return vc;
+        }
+        if (fresh != null) {
+          s = claim(vcs, home, log);
+          if (s >= 0) {
+            holders.set(s, h);
+            offsets.set(s, offset.toWord());
+            Magic.writeFloor();
+            vcs[s] = fresh;
+            unlock(stripe);
+            if (Dr.STATS) DrStats.unsafeVCs.inc();
+            return fresh;
+          }
+          unlock(stripe);
+          // No free slot in range: double the table.
+          rehash(log + 1);
+          continue;
+        }
+      }
+      unlock(stripe);
+      if (create && fresh == null) {
+        // Allocate outside the lock: this may GC.
+        fresh = VC.createVolatileVC();
+      }
+    }
+  }
+
+  /**
+   * Rehash all entries after their holders may have moved, into stripes of
+   * at least 1 << minLog slots.  Doubles the table again if an entry finds
+   * no free slot in range.
+   * @param minLog
+   */
+  @NoInline
+  @UninterruptibleNoWarn
+  private static void rehash(int minLog) {
+    WordArray newHolders = null;
+    WordArray newOffsets = null;
+    Object[] newVCs = null;
+    while (true) {
+      lockAll();
+      final int log = Math.max(minLog, logStripeSlots);
+      if (!rehashNeeded && log == logStripeSlots) {
+        // Another thread got here first.
+        unlockAll();
+        return;
+      }
+      final int slots = STRIPES << log;
+      if (spareVCs.length != slots && newVCs != null && newVCs.length == slots) {
+        spareHolders = newHolders;
+        spareOffsets = newOffsets;
+        spareVCs = newVCs;
+      }
+      if (spareVCs.length == slots) {
+        if (moveToSpares(log)) {
+          version++;
+          Magic.writeFloor();
+          final WordArray oldHolders = holders;
+          final WordArray oldOffsets = offsets;
+          final Object[] oldVCs = vcs;
+          holders = spareHolders;
+          offsets = spareOffsets;
+          vcs = spareVCs;
+          spareHolders = oldHolders;
+          spareOffsets = oldOffsets;
+          spareVCs = oldVCs;
+          for (int s = 0; s < spareVCs.length; s++) spareVCs[s] = null;
+          if (Dr.STATS && log != logStripeSlots) DrStats.unsafeVCGrowths.inc();
+          logStripeSlots = log;
+          rehashNeeded = false;
+          Magic.writeFloor();
+          version++;
+          unlockAll();
+          if (Dr.STATS) DrStats.unsafeVCRehashes.inc();
+          return;
+        }
+        minLog = log + 1;
+      }
+      unlockAll();
+      // Allocate outside the locks: this may GC.
+      final int newSlots = STRIPES << Math.max(minLog, logStripeSlots);
+      MemoryManager.startAllocatingInUninterruptibleCode();
+      newHolders = WordArray.create(newSlots);
+      newOffsets = WordArray.create(newSlots);
+      newVCs = new Object[newSlots];
+      MemoryManager.stopAllocatingInUninterruptibleCode();
+    }
+  }
+
+  /**
+   * Hash every entry into the (equally sized) spare arrays, with stripes of
+   * 1 << log slots.  Call with all stripes locked.
+   * @return false if some entry found no free slot in range.
+   */
+  private static boolean moveToSpares(final int log) {
+    for (int s = 0; s < spareVCs.length; s++) spareVCs[s] = null;
+    for (int s = 0; s < vcs.length; s++) {
+      final Object vc = vcs[s];
+      if (vc != null) {
+        final Word h = holders.get(s);
+        final Offset offset = offsets.get(s).toOffset();
+        final int t = claim(spareVCs, home(h, offset, log), log);
+        if (t < 0) return false;
+        spareHolders.set(t, h);
+        spareOffsets.set(t, offset.toWord());
+        spareVCs[t] = vc;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Forward the holders of live entries and drop the entries of dead ones.
+   * Called in the weak reference phase of every GC, once the strong closure
+   * is complete.  If a holder moved, the next use rehashes the table.
+   * @param trace
+   */
+  public static void scanWeak(final TraceLocal trace) {
+    if (VM.VerifyAssertions) VM._assert(Dr.UNSAFE_SYNC);
+    for (int s = 0; s < vcs.length; s++) {
+      if (vcs[s] != null && !holders.get(s).isZero()) {
+        final ObjectReference holder = holders.get(s).toAddress().toObjectReference();
+        if (trace.isLive(holder)) {
+          final ObjectReference forwarded = trace.getForwardedReference(holder);
+          if (forwarded.toAddress().NE(holder.toAddress())) {
+            holders.set(s, forwarded.toAddress().toWord());
+            rehashNeeded = true;
+          }
+        } else {
+          holders.set(s, Word.zero());
+          // No write barrier: this only drops a reference.
+          Magic.setObjectAtOffset(vcs, Offset.fromIntZeroExtend(s << LOG_BYTES_IN_ADDRESS), null);
+          if (Dr.STATS) DrStats.unsafeVCsDropped.inc();
+        }
+      }
+    }
+  }
+}
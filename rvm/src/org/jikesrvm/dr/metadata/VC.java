@@ -1,5 +1,6 @@
 package org.jikesrvm.dr.metadata;
 
+import org.jikesrvm.SizeConstants;
 import org.jikesrvm.VM;
 import org.jikesrvm.dr.Dr;
 import org.jikesrvm.dr.DrRuntime;
@@ -10,6 +11,7 @@ import org.vmmagic.pragma.NoInline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.pragma.UninterruptibleNoWarn;
 import org.vmmagic.pragma.Unpreemptible;
+import org.vmmagic.unboxed.Address;
 import org.vmmagic.unboxed.ObjectReference;
 import org.vmmagic.unboxed.Offset;
 import org.vmmagic.unboxed.Word;
@@ -25,20 +27,98 @@ import org.vmmagic.unboxed.WordArray;
 @Uninterruptible
 public final class VC {
   
+  /**
+   * Stored in the FIB header word of each VC so that GC can find VCs
+   * to renormalize.  Not a reference, not an epoch.
+   */
+  private static final Word HEADER_TAG = Epoch.RESERVED;
+  
+  /**
+   * Words of padding in a cache line.  A thread VC has this many words of
+   * padding before its entries and after its last word, so that its
+   * entries do not share a cache line with the objects next to it in
+   * memory.  Other VCs are not padded.
+   */
+  private static final int PAD_WORDS = Dr.BYTES_IN_CACHE_LINE >> SizeConstants.LOG_BYTES_IN_WORD;
+  
+  /**
+   * Offset of the entry of tid 0 in a thread VC.
+   */
+  private static final Offset PADDED_ENTRIES_OFFSET = Offset.fromIntSignExtend(PAD_WORDS << SizeConstants.LOG_BYTES_IN_WORD);
+  
+  /**
+   * Words in a VC without padding: its entries and stamp.  A volatile VC
+   * has one more, and a thread VC has 2 * PAD_WORDS more.
+   */
+  private static final int VC_WORDS = (Epoch.MAX_THREADS + 1) << Epoch.LOG_WORDS_IN_EPOCH;
+  
+  /**
+   * Declared after VC_WORDS: create needs it, and it is not a compile-time
+   * constant.
+   */
   public static final WordArray ORIGIN = VC.create();
   
-  @UninterruptibleNoWarn
+  /**
+   * Address of the entry of tid 0 in vc: past the leading padding if vc is
+   * a thread VC, else vc's first word.
+   */
+  @Inline
+  private static Address entries(final WordArray vc) {
+    final Address v = ObjectReference.fromObject(vc).toAddress();
+    return vc.length() > VC_WORDS + 1 ? v.plus(PADDED_ENTRIES_OFFSET) : v;
+  }
+  
+  /**
+   * Offset of tid's entry from entries(vc).
+   */
+  @Inline
+  private static Offset entryOffset(final int tid) {
+    return Offset.fromIntSignExtend(tid << Epoch.LOG_BYTES_IN_EPOCH);
+  }
+  
   public static WordArray create() {
+    return create(0, 0);
+  }
+  
+  /**
+   * Create a VC for a thread, padded to keep it off other threads' lines.
+   */
+  public static WordArray createThreadVC() {
+    return create(PAD_WORDS, PAD_WORDS);
+  }
+  
+  @UninterruptibleNoWarn
+  private static WordArray create(final int leadWords, final int trailWords) {
     if (VM.runningVM) MemoryManager.startAllocatingInUninterruptibleCode();
-    final WordArray vc = WordArray.create(Epoch.MAX_THREADS << Epoch.LOG_WORDS_IN_EPOCH);
+    final WordArray vc = WordArray.create(leadWords + VC_WORDS + trailWords);
     if (VM.runningVM) MemoryManager.stopAllocatingInUninterruptibleCode();
+    if (Dr.RENORMALIZE && VM.runningVM) markVC(vc);
     if (Dr.STATS) DrStats.vcs.inc();
     return vc;
   }
   
+  /**
+   * Tag vc's header so that GC recognizes it as a VC.
+   * @param vc
+   */
+  @Inline
+  public static void markVC(WordArray vc) {
+    ObjectShadow.storeHeader(vc, HEADER_TAG);
+  }
+  
+  /**
+   * Was objectRef tagged by markVC?
+   * @param objectRef
+   * @return
+   */
+  @Inline
+  public static boolean isVC(ObjectReference objectRef) {
+    return ObjectShadow.headerAddress(objectRef).loadWord().EQ(HEADER_TAG);
+  }
+  
   @NoInline
   public static void nullAndBoundsCheck(WordArray vc, int tid) {
-    if (!(MemoryManager.validRef(ObjectReference.fromObject(vc)) && vc != null && tid >= 0 && tid < vc.length())) {
+    if (!(MemoryManager.validRef(ObjectReference.fromObject(vc)) && vc != null && tid >= 0 && tid < Epoch.MAX_THREADS)) {
       VM.tsysWriteln("ArrayEpochMap fail tid = ", tid);
       VM.tsysWriteln("                length = ", vc.length());
       VM._assert(false);
@@ -50,7 +130,7 @@ public final class VC {
     if (VM.VerifyAssertions) nullAndBoundsCheck(vc, tid);
     // TODO does this do bounds checking?  I don't want it.
     // return vc.get(tid << Epoch.LOG_BYTES_IN_EPOCH);
-    return ObjectReference.fromObject(vc).toAddress().loadWord(Offset.fromIntSignExtend(tid << Epoch.LOG_BYTES_IN_EPOCH));
+    return entries(vc).loadWord(entryOffset(tid));
   }
   
   @Inline
@@ -58,7 +138,7 @@ public final class VC {
     if (VM.VerifyAssertions) nullAndBoundsCheck(vc, tid);
     // TODO does this do bounds checking?  I don't want it.
     // vc.set(tid << Epoch.LOG_BYTES_IN_EPOCH, epoch);
-    ObjectReference.fromObject(vc).toAddress().store(epoch, Offset.fromIntSignExtend(tid << Epoch.LOG_BYTES_IN_EPOCH));
+    entries(vc).store(epoch, entryOffset(tid));
   }
     
   @Inline
@@ -67,13 +147,13 @@ public final class VC {
     if (VM.VerifyAssertions) nullAndBoundsCheck(vc, tid);
     // TODO does this do bounds checking?  I don't want it.
     // vc.set(tid << Epoch.LOG_BYTES_IN_EPOCH, epoch);
-    ObjectReference.fromObject(vc).toAddress().store(epoch, Offset.fromIntSignExtend(tid << Epoch.LOG_BYTES_IN_EPOCH));
+    entries(vc).store(epoch, entryOffset(tid));
   }
   
   @Inline
   public static boolean attempt(WordArray vc, int tid, Word oldEpoch, Word newEpoch) {
     if (VM.VerifyAssertions) nullAndBoundsCheck(vc, tid);
-    return ObjectReference.fromObject(vc).toAddress().attempt(oldEpoch, newEpoch, Offset.fromIntSignExtend(tid << Epoch.LOG_BYTES_IN_EPOCH));
+    return entries(vc).attempt(oldEpoch, newEpoch, entryOffset(tid));
   }
   
   public static boolean epochHB(Word earlierEpoch, WordArray threadVC) {
@@ -90,20 +170,140 @@ public final class VC {
    */
   public static boolean hb(WordArray readers, WordArray threadVC) {
     if (Dr.STATS) DrStats.vcMapHB.inc();
-    final int bound = DrRuntime.maxLiveDrThreads();
-    for (int tid = 0; tid < bound; tid++) {
-      final Word earlierEpoch = Dr.readers().get(readers, tid);
-      if (!Epoch.isNone(earlierEpoch)
-          && earlierEpoch.GT(get(threadVC, tid))) {
-        return false;
-      }
+    return Dr.readers().hb(readers, threadVC);
+  }
+  
+  // Stamps
+  //
+  // The word after the last tid entry of a VC is its stamp: either NONE or
+  // an epoch e of some thread u such that the VC is contained in u's VC as
+  // of the end of epoch e.  Every thread VC that has seen e has also seen
+  // everything u had seen by then, so joining a stamped VC into any VC whose
+  // entry for u is at least e changes nothing.  Stamps are set only at
+  // release-like events, which end the releaser's epoch, and dropped
+  // whenever a join grows the VC.  Thread VCs are never stamped.
+  //
+  // A recycled tid breaks the argument for stamps of the dead thread: the
+  // new thread's own entry starts past them without the dead thread's
+  // knowledge, and so does the entry of every thread that learns of the new
+  // thread.  So a stamp counts only if it is no older than the first epoch
+  // of the tid's current thread.
+  
+  /**
+   * First epoch of the current thread of each recycled tid (zero if never
+   * recycled).
+   */
+  private static final WordArray incarnations = WordArray.create(Epoch.MAX_THREADS);
+  
+  /**
+   * Record that a new thread took over epoch's tid, starting at epoch.
+   * @param epoch
+   */
+  public static void recycled(final Word epoch) {
+    incarnations.set(Epoch.tid(epoch), epoch);
+  }
+  
+  /**
+   * Is stamp from an earlier thread of a since recycled tid?
+   * @param stamp
+   */
+  @Inline
+  public static boolean isStaleStamp(final Word stamp) {
+    return Epoch.isEpoch(stamp) && stamp.LT(incarnations.get(Epoch.tid(stamp)));
+  }
+  
+  /**
+   * Rebase the first epochs of recycled tids, after all stamps have been
+   * rebased.  (Renormalization)
+   */
+  public static void rebaseIncarnations() {
+    for (int tid = 0; tid < Epoch.MAX_THREADS; tid++) {
+      incarnations.set(tid, Renormalization.rebase(incarnations.get(tid)));
+    }
+  }
+  
+  private static final Offset STAMP_OFFSET = entryOffset(Epoch.MAX_THREADS);
+  
+  @Inline
+  public static Word getStamp(WordArray vc) {
+    return entries(vc).loadWord(STAMP_OFFSET);
+  }
+  
+  /**
+   * Record that vc is contained in the VC of epoch's thread as of epoch,
+   * which the caller is about to end.
+   * @param vc
+   * @param epoch
+   */
+  @Inline
+  public static void setStamp(WordArray vc, Word epoch) {
+    if (VM.VerifyAssertions) VM._assert(Epoch.isEpoch(epoch) || Epoch.isNone(epoch));
+    entries(vc).store(epoch, STAMP_OFFSET);
+  }
+  
+  /**
+   * Is vc known (by its stamp) to be contained in threadVC?
+   * @param vc
+   * @param threadVC
+   * @return
+   */
+  @Inline
+  public static boolean stampHB(WordArray vc, WordArray threadVC) {
+    final Word s = getStamp(vc);
+    if (!Epoch.isEpoch(s)) return false;
+    final int tid = Epoch.tid(s);
+    return s.LE(get(threadVC, tid)) && s.GE(incarnations.get(tid));
+  }
+  
+  // Versions
+  //
+  // A volatile VC has one more word after its stamp: a version, odd while a
+  // writer of its location holds it, from just before the write until its
+  // VC has been joined in.  Readers never write it; they copy the VC at an
+  // even version and check that the version did not change meanwhile.
+  
+  private static final Offset VERSION_OFFSET = STAMP_OFFSET.plus(Epoch.BYTES_IN_EPOCH);
+  
+  /**
+   * Create a VC for a volatile location, with a version word.
+   */
+  public static WordArray createVolatileVC() {
+    return create(0, 1);
+  }
+  
+  @Inline
+  public static int getVersion(WordArray vc) {
+    return ObjectReference.fromObject(vc).toAddress().loadInt(VERSION_OFFSET);
+  }
+  
+  @Inline
+  public static boolean attemptVersion(WordArray vc, int old, int version) {
+    return ObjectReference.fromObject(vc).toAddress().attempt(old, version, VERSION_OFFSET);
+  }
+  
+  @Inline
+  public static void setVersion(WordArray vc, int version) {
+    ObjectReference.fromObject(vc).toAddress().store(version, VERSION_OFFSET);
+  }
+  
+  /**
+   * Overwrite the entries and stamp of to with those of from.
+   * @param to
+   * @param from
+   */
+  public static void copyInto(WordArray to, WordArray from) {
+    final Address v = entries(to);
+    final Address f = entries(from);
+    final Offset end = entryOffset(DrRuntime.maxLiveDrThreads());
+    for (Offset i = Offset.zero(); i.sLT(end); i = i.plus(Epoch.BYTES_IN_EPOCH)) {
+      v.store(f.loadWord(i), i);
     }
-    return true;
+    setStamp(to, getStamp(from));
   }
   
   /**
    * Advance any parts of this vector clock that are behind the given frontier.
-   * Not the best performing option, but it's a baseline.
+   * O(1) if the frontier's stamp shows it is already contained in vc.
    * @param frontier
    */
   public static void advanceTo(WordArray vc, WordArray frontier) {
@@ -113,12 +313,27 @@ public final class VC {
       VM._assert(vc != null);
       VM._assert(frontier != null);
     }
-    for (int tid = 0; tid < bound; tid++) {
-      final Word frontierEpoch = get(frontier, tid);
-      if (get(vc, tid).LT(frontierEpoch)) {
-        set(vc, tid, frontierEpoch);
+    if (stampHB(frontier, vc)) {
+      if (Dr.STATS) DrStats.vcJoinSkipped.inc();
+      return;
+    }
+    if (Dr.STATS) DrStats.vcJoin.inc();
+    // No vector ops in Magic: walk both arrays by address, skipping the
+    // per-entry checks in get/set.
+    final Address v = entries(vc);
+    final Address f = entries(frontier);
+    final Offset end = entryOffset(bound);
+    boolean grew = false;
+    for (Offset i = Offset.zero(); i.sLT(end); i = i.plus(Epoch.BYTES_IN_EPOCH)) {
+      final Word frontierEpoch = f.loadWord(i);
+      if (v.loadWord(i).LT(frontierEpoch)) {
+        v.store(frontierEpoch, i);
+        grew = true;
       }
     }
+    if (grew && !Epoch.isNone(getStamp(vc))) {
+      setStamp(vc, Epoch.NONE);
+    }
   }
   
   @Unpreemptible
@@ -127,6 +342,7 @@ public final class VC {
     advanceTo(copy, original);
     return copy;
   }
+  
     
   @Inline
   public static void inc(WordArray vc, int tid) {
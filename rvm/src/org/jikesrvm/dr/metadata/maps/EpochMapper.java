@@ -1,10 +1,14 @@
 package org.jikesrvm.dr.metadata.maps;
 
 import org.jikesrvm.VM;
+import org.jikesrvm.dr.Dr;
 import org.jikesrvm.dr.DrDebug;
 import org.jikesrvm.dr.DrRuntime;
+import org.jikesrvm.dr.DrStats;
 import org.jikesrvm.dr.metadata.AccessHistory;
 import org.jikesrvm.dr.metadata.Epoch;
+import org.jikesrvm.dr.metadata.Renormalization;
+import org.jikesrvm.dr.metadata.VC;
 import org.jikesrvm.mm.mminterface.Barriers;
 import org.jikesrvm.mm.mminterface.MemoryManager;
 import org.jikesrvm.objectmodel.ObjectModel;
@@ -156,6 +160,25 @@ public abstract class EpochMapper {
     release(map, Epoch.tid(epoch), epoch);
   }
   
+  /**
+   * Does every entry in map happen before vc?
+   * @param map
+   * @param vc
+   * @return
+   */
+  public boolean hb(WordArray map, WordArray vc) {
+    final int bound = DrRuntime.maxLiveDrThreads();
+    for (int tid = 0; tid < bound; tid++) {
+      if (!hbEntry(get(map, tid), vc)) return false;
+    }
+    return true;
+  }
+  
+  @Inline
+  protected static boolean hbEntry(Word e, WordArray vc) {
+    return Epoch.isNone(e) || e.LE(VC.get(vc, Epoch.tid(e)));
+  }
+  
   // GC barriers and tracing
   
   /**
@@ -273,6 +296,7 @@ public abstract class EpochMapper {
       ObjectReference md, Address readSlot, Word readWord) {
     // report a reachable epoch map.
     trace.processEdge(md, readSlot);
+    if (deflating) deflateGC(readSlot);
   }
   
   /**
@@ -287,16 +311,75 @@ public abstract class EpochMapper {
       Address readSlot, Word readWord) {
     // report a reachable epoch map.
     trace.processRootEdge(readSlot, true);
+    if (deflating) deflateGC(readSlot);
+  }
+  
+  /**
+   * Clock floors of the current full-heap GC (see DrRuntime.clockFloors).
+   */
+  private static final int[] floors = new int[Epoch.MAX_THREADS];
+  
+  /**
+   * Is the current GC deflating read maps?
+   */
+  private static boolean deflating = false;
+  
+  /**
+   * Replace the (already traced) read map in readSlot with a single epoch
+   * if that loses no information: the map holds at most one entry, or every
+   * entry happens before every live thread, so that any one of them
+   * suffices to order future writes.
+   * Maps holding RESERVED entries are left alone.
+   * @param readSlot
+   */
+  protected void deflateGC(Address readSlot) {
+    final WordArray map = Epoch.asMapRef(readSlot.loadWord());
+    final int bound = DrRuntime.maxLiveDrThreads();
+    Word last = Epoch.NONE;
+    int n = 0;
+    boolean allHB = true;
+    for (int tid = 0; tid < bound; tid++) {
+      final Word e = get(map, tid);
+      if (Epoch.isNone(e)) continue;
+      if (!Epoch.isEpoch(e)) return;
+      n++;
+      last = e;
+      if (Epoch.clock(e) > floors[tid]) allHB = false;
+    }
+    if (n <= 1 || allHB) {
+      readSlot.store(last);
+      if (Dr.STATS) DrStats.gcDeflatedMaps.inc();
+    }
+  }
+
+  /**
+   * Rebase every epoch in map during a clock renormalization.
+   * Called while world is stopped during a full-heap trace.
+   * @param map
+   */
+  public void renormalize(WordArray map) {
+    final int bound = DrRuntime.maxLiveDrThreads();
+    for (int tid = 0; tid < bound; tid++) {
+      final Word e = get(map, tid);
+      if (Epoch.isEpoch(e)) set(map, tid, Renormalization.rebase(e));
+    }
   }
 
   /**
    * Called while world is stopped before (full-heap) GC begins.
    */
-  public void prepareGlobalGC() { }
+  public void prepareGlobalGC() {
+    if (Dr.config().drDeflateMapsAtGC() && DrRuntime.maxLiveDrThreads() > 0) {
+      DrRuntime.clockFloors(floors);
+      deflating = true;
+    }
+  }
   /**
    * Called while world is stopped after (full-heap) GC completes.
    */
-  public void releaseGlobalGC() { }
+  public void releaseGlobalGC() {
+    deflating = false;
+  }
   /**
    * Called with each thread (concurrently) while mutators are stopped
    * before (full-heap) GC begins.
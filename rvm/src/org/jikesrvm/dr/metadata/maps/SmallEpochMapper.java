@@ -0,0 +1,261 @@
+package org.jikesrvm.dr.metadata.maps;
+
+import org.jikesrvm.SizeConstants;
+import org.jikesrvm.VM;
+import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.dr.Dr;
+import org.jikesrvm.dr.DrDebug;
+import org.jikesrvm.dr.DrRuntime;
+import org.jikesrvm.dr.DrStats;
+import org.jikesrvm.dr.metadata.Epoch;
+import org.jikesrvm.dr.metadata.ObjectShadow;
+import org.jikesrvm.dr.metadata.Renormalization;
+import org.jikesrvm.mm.mminterface.Barriers;
+import org.jikesrvm.mm.mminterface.MemoryManager;
+import org.jikesrvm.objectmodel.MiscHeader;
+import org.jikesrvm.objectmodel.ObjectModel;
+import org.jikesrvm.objectmodel.TIB;
+import org.jikesrvm.runtime.Magic;
+import org.mmtk.plan.TraceLocal;
+import org.mmtk.plan.TransitiveClosure;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.NoInline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.pragma.UninterruptibleNoWarn;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Offset;
+import org.vmmagic.unboxed.Word;
+import org.vmmagic.unboxed.WordArray;
+
+/**
+ * Compact read maps for locations with few readers.
+ *
+ * A map holds SLOTS (tid, epoch) pairs inline: SLOTS tid words (tid + 1,
+ * or 0 if free) followed by SLOTS epoch words.  A slot is claimed for a tid
+ * by CAS on its tid word and then belongs to that tid for the life of the
+ * map.  Once all slots are claimed, further tids go to a dense overflow map
+ * (one epoch per tid, like ArrayEpochMapper) referenced from the FIB header
+ * word of the small map, where ObjectShadow.scan already traces it.
+ *
+ * get/set cost is proportional to the number of readers until the map
+ * overflows.
+ *
+ */
+@Uninterruptible
+public final class SmallEpochMapper extends EpochMapper implements SizeConstants {
+
+  private static final int LOG_SLOTS = 2;
+  /**
+   * Number of inline (tid, epoch) pairs.
+   */
+  private static final int SLOTS = 1 << LOG_SLOTS;
+
+  private static final int EPOCHS_OFFSET = SLOTS << LOG_BYTES_IN_WORD;
+
+  @Inline
+  private static Offset tidOffset(int slot) {
+    return Offset.fromIntSignExtend(slot << LOG_BYTES_IN_WORD);
+  }
+  @Inline
+  private static Offset epochOffset(int slot) {
+    return Offset.fromIntSignExtend(EPOCHS_OFFSET + (slot << Epoch.LOG_BYTES_IN_EPOCH));
+  }
+  @Inline
+  private static Offset denseOffset(int tid) {
+    return Offset.fromIntSignExtend(tid << Epoch.LOG_BYTES_IN_EPOCH);
+  }
+  @Inline
+  private static Word tidKey(int tid) {
+    return Word.fromIntZeroExtend(tid + 1);
+  }
+
+  @NoInline
+  public void assertValidMap(WordArray map) {
+    VM._assert(MemoryManager.validRef(ObjectReference.fromObject(map)), "Bad epoch map reference.");
+    TIB tib = ObjectModel.getTIB(ObjectReference.fromObject(map));
+    if (tib != RVMType.WordArrayType.getTypeInformationBlock()) {
+      DrDebug.lock();
+      DrDebug.twrite(); VM.sysWriteln("Map (WordArray) expected, found ", tib.getType().getTypeRef().getName());
+      DrDebug.unlock();
+      VM.sysFail("Invalid map type.");
+    }
+  }
+
+  /**
+   * Get the dense overflow map of map, or null if it has not overflowed.
+   * @param map
+   * @return
+   */
+  @Inline
+  private static WordArray overflow(WordArray map) {
+    final Word w = ObjectShadow.loadHeader(map);
+    return Epoch.isRef(w) ? (WordArray)w.toAddress().toObjectReference().toObject() : null;
+  }
+
+  /**
+   * Find the address of tid's epoch in map.
+   * @param map
+   * @param tid
+   * @param claim - claim a slot (or overflow) if tid has none
+   * @return the address, or zero if tid has none and !claim
+   */
+  @Inline
+  private static Address slot(final WordArray map, final int tid, final boolean claim) {
+    final Address base = ObjectReference.fromObject(map).toAddress();
+    final Word key = tidKey(tid);
+    for (int i = 0; i < SLOTS; i++) {
+      final Word t = base.loadWord(tidOffset(i));
+      if (t.EQ(key)) {
+        return base.plus(epochOffset(i));
+      } else if (t.isZero()) {
+        if (!claim) return Address.zero();
+        if (base.attempt(Word.zero(), key, tidOffset(i))) {
+          return base.plus(epochOffset(i));
+        }
+        // Lost the slot to another tid: keep looking.
+        if (base.loadWord(tidOffset(i)).EQ(key)) {
+          return base.plus(epochOffset(i));
+        }
+      }
+    }
+    WordArray dense = overflow(map);
+    if (dense == null) {
+      if (!claim) return Address.zero();
+      dense = inflate(map);
+    }
+    return ObjectReference.fromObject(dense).toAddress().plus(denseOffset(tid));
+  }
+
+  /**
+   * Allocate and install the dense overflow map of map.
+   * @param map
+   * @return the installed overflow map
+   */
+  @NoInline
+  @UninterruptibleNoWarn("Allocates WordArray")
+  private static WordArray inflate(WordArray map) {
+    Magic.writeFloor();
+    MemoryManager.startAllocatingInUninterruptibleCode();
+    final WordArray dense = WordArray.create(Epoch.MAX_THREADS << Epoch.LOG_WORDS_IN_EPOCH);
+    MemoryManager.stopAllocatingInUninterruptibleCode();
+    Magic.readCeiling();
+    if (ObjectShadow.attemptHeader(map, Word.zero(), ObjectReference.fromObject(dense).toAddress().toWord())) {
+      Barriers.objectFieldWritePreBarrier(map, dense, MiscHeader.FIB_OFFSET, -1);
+      if (Dr.STATS) DrStats.smallMapOverflows.inc();
+      return dense;
+    } else {
+      return overflow(map);
+    }
+  }
+
+  @Inline
+  @Override
+  public void set(WordArray map, int tid, Word epoch) {
+    if (VM.VerifyAssertions) {
+      assertValidMap(map);
+      VM._assert(!Epoch.isMapRef(epoch));
+    }
+    final Address a = slot(map, tid, !Epoch.isNone(epoch));
+    if (!a.isZero()) a.store(epoch);
+  }
+
+  @Inline
+  @Override
+  public Word get(WordArray map, int tid) {
+    if (VM.VerifyAssertions) assertValidMap(map);
+    final Address a = slot(map, tid, false);
+    return a.isZero() ? Epoch.NONE : a.loadWord();
+  }
+
+  @Inline
+  @Override
+  public boolean attempt(WordArray map, int tid, Word oldEpoch, Word newEpoch) {
+    if (VM.VerifyAssertions) assertValidMap(map);
+    return slot(map, tid, true).attempt(oldEpoch, newEpoch);
+  }
+
+  @Inline
+  @Override
+  public boolean attemptReserve(WordArray map, int tid, Word old) {
+    if (VM.VerifyAssertions) assertValidMap(map);
+    return slot(map, tid, true).attempt(old, Epoch.RESERVED);
+  }
+
+  @Override
+  @UninterruptibleNoWarn("Allocates WordArray")
+  public WordArray create() {
+    Magic.writeFloor();
+    MemoryManager.startAllocatingInUninterruptibleCode();
+    final WordArray map = WordArray.create(SLOTS + (SLOTS << Epoch.LOG_WORDS_IN_EPOCH));
+    MemoryManager.stopAllocatingInUninterruptibleCode();
+    Magic.readCeiling();
+    return map;
+  }
+
+  /**
+   * Check only the claimed slots and the overflow map, if any.
+   */
+  @Override
+  public boolean hb(WordArray map, WordArray vc) {
+    final Address base = ObjectReference.fromObject(map).toAddress();
+    for (int i = 0; i < SLOTS; i++) {
+      final Word t = base.loadWord(tidOffset(i));
+      if (t.isZero()) return true;
+      if (!hbEntry(base.loadWord(epochOffset(i)), vc)) return false;
+    }
+    final WordArray dense = overflow(map);
+    if (dense != null) {
+      final Address d = ObjectReference.fromObject(dense).toAddress();
+      final int bound = DrRuntime.maxLiveDrThreads();
+      for (int tid = 0; tid < bound; tid++) {
+        if (!hbEntry(d.loadWord(denseOffset(tid)), vc)) return false;
+      }
+    }
+    return true;
+  }
+
+  // GC
+
+  /**
+   * Trace (and maybe deflate) the map, then eagerly trace its overflow map so that
+   * renormalize sees the overflow map's final location.
+   */
+  @Override
+  public void processEdgeGC(TransitiveClosure trace,
+      ObjectReference md, Address readSlot, Word readWord) {
+    super.processEdgeGC(trace, md, readSlot, readWord);
+    if (!Epoch.isRef(readSlot.loadWord())) return;
+    final ObjectReference map = readSlot.loadObjectReference();
+    if (Epoch.isRef(ObjectShadow.loadHeader(map.toObject()))) {
+      trace.processEdge(map, ObjectShadow.headerAddress(map));
+    }
+  }
+
+  @Override
+  public void processRootEdgeGC(TraceLocal trace,
+      Address readSlot, Word readWord) {
+    super.processRootEdgeGC(trace, readSlot, readWord);
+    if (!Epoch.isRef(readSlot.loadWord())) return;
+    final ObjectReference map = readSlot.loadObjectReference();
+    if (Epoch.isRef(ObjectShadow.loadHeader(map.toObject()))) {
+      trace.processEdge(map, ObjectShadow.headerAddress(map));
+    }
+  }
+
+  @Override
+  public void renormalize(WordArray map) {
+    final Address base = ObjectReference.fromObject(map).toAddress();
+    for (int i = 0; i < SLOTS; i++) {
+      base.store(Renormalization.rebase(base.loadWord(epochOffset(i))), epochOffset(i));
+    }
+    final WordArray dense = overflow(map);
+    if (dense != null) {
+      final Address d = ObjectReference.fromObject(dense).toAddress();
+      final int bound = DrRuntime.maxLiveDrThreads();
+      for (int tid = 0; tid < bound; tid++) {
+        d.store(Renormalization.rebase(d.loadWord(denseOffset(tid))), denseOffset(tid));
+      }
+    }
+  }
+}
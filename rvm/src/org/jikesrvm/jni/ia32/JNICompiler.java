@@ -914,7 +914,7 @@ public abstract class JNICompiler implements BaselineConstants {
     if (Octet.getConfig().doCommunication()) {
       asm.emitCALL_Abs(Magic.getTocPointer().plus(Entrypoints.octetBlockCommunicationRequestsMethod.getOffset()));
     }
-    if (Dr.COMMUNICATION) {
+    if (Dr.COMMUNICATION && !Dr.LAZY_BLOCKING) {
       asm.emitCALL_Abs(Magic.getTocPointer().plus(Entrypoints.drBlockMethod.getOffset()));
     }
 
@@ -937,6 +937,11 @@ public abstract class JNICompiler implements BaselineConstants {
     // OK - we reach here when we have set the state to IN_JNI
     doneEnterJNIRef.resolve(asm);
 
+    // FIB: block lazily, now that the state is IN_JNI
+    if (Dr.LAZY_BLOCKING) {
+      asm.emitCALL_Abs(Magic.getTocPointer().plus(Entrypoints.drBlockInNativeMethod.getOffset()));
+    }
+
     // restore return values
     asm.emitPOP_Reg(T1);
     asm.emitPOP_Reg(T0);
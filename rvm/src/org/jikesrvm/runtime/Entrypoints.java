@@ -251,6 +251,9 @@ public class Entrypoints {
   public static final NormalMethod drPutStaticUnresolvedMethod = getMethod(org.jikesrvm.dr.DrRuntime.class, "putstaticUnresolved", "(I)V");
   public static final NormalMethod drAloadMethod = getMethod(org.jikesrvm.dr.DrRuntime.class, "aload", "(Ljava/lang/Object;I)V");
   public static final NormalMethod drAstoreMethod = getMethod(org.jikesrvm.dr.DrRuntime.class, "astore", "(Ljava/lang/Object;I)V");
+  public static final NormalMethod drArraycopyRangeMethod = getMethod(org.jikesrvm.dr.DrRuntime.class, "arraycopyRange", "(Ljava/lang/Object;ILjava/lang/Object;II)V");
+  public static final NormalMethod drSampleEnterMethod = getMethod(org.jikesrvm.dr.Sampling.class, "enter", "(I)V");
+  public static final NormalMethod drSampleResumeMethod = getMethod(org.jikesrvm.dr.Sampling.class, "resume", "(I)V");
   
   public static final NormalMethod drVolatileReadResolvedMethod = getMethod(org.jikesrvm.dr.DrRuntime.class, "volatileReadResolved", "(Ljava/lang/Object;Lorg/vmmagic/unboxed/Offset;)V");
   public static final NormalMethod drVolatileStaticReadResolvedMethod = getMethod(org.jikesrvm.dr.DrRuntime.class, "volatileStaticReadResolved", "(ILorg/vmmagic/unboxed/Offset;)V");
@@ -262,12 +265,17 @@ public class Entrypoints {
 
   // public static final RVMField fibStrideEpochMapperBlobHeadField = getField(org.jikesrvm.fib.epochmap.StrideEpochMapper.class, "blobHead",
   //     org.jikesrvm.fib.epochmap.StrideEpochMapper.Blob.class);
-  public static final RVMField drFibCommRequestsField =
-      getField(org.jikesrvm.dr.fib.FibComm.class, "requests", org.vmmagic.unboxed.Word.class);
-  public static final RVMField drFibCommResponseField =
-      getField(org.jikesrvm.dr.fib.FibComm.class, "response", org.vmmagic.unboxed.Word.class);
+  public static final RVMField drRequestsField =
+      getField(org.jikesrvm.scheduler.RVMThread.class, "drRequests", org.vmmagic.unboxed.Word.class);
+  public static final RVMField drResponseField =
+      getField(org.jikesrvm.scheduler.RVMThread.class, "drResponse", org.vmmagic.unboxed.Word.class);
+  public static final RVMField drFibCommPad0Field =
+      getField(org.jikesrvm.dr.fib.FibComm.class, "pad0", int.class);
+  public static final RVMField drFibCommPad15Field =
+      getField(org.jikesrvm.dr.fib.FibComm.class, "pad15", int.class);
   
   public static final NormalMethod drBlockMethod = getMethod(org.jikesrvm.dr.DrRuntime.class, "block", "()V");
+  public static final NormalMethod drBlockInNativeMethod = getMethod(org.jikesrvm.dr.DrRuntime.class, "blockInNative", "()V");
   public static final NormalMethod drUnblockMethod = getMethod(org.jikesrvm.dr.DrRuntime.class, "unblock", "()V");
 
   public static final RVMField drOffsetField =
@@ -63,6 +63,8 @@ public interface ExitStatus {
   int EXIT_STATUS_JNI_TROUBLE = 98;
   /** Used in 0005fProcess.C */
   int EXIT_STATUS_BAD_WORKING_DIR = EXIT_STATUS_JNI_TROUBLE;
+  /** A data race was detected under -X:vm:drRaceBehavior=halt. */
+  int EXIT_STATUS_DATA_RACE = 97;
   /** What exit status should we use after we have printed out a help message?
    *  Some common utilities exit with 1, some with 0.  Jikes RVM seems
    *  to be using 1, so let's keep doing so. */
@@ -49,11 +49,15 @@ import org.jikesrvm.compilers.common.CompiledMethods;
 import org.jikesrvm.compilers.opt.runtimesupport.OptCompiledMethod;
 import org.jikesrvm.compilers.opt.runtimesupport.OptEncodedCallSiteTree;
 import org.jikesrvm.compilers.opt.runtimesupport.OptMachineCodeMap;
+import org.jikesrvm.dr.CheckFilter;
 import org.jikesrvm.dr.Dr;
+import org.jikesrvm.dr.DrControl;
 import org.jikesrvm.dr.DrDebug;
 import org.jikesrvm.dr.DrRuntime;
 import org.jikesrvm.dr.fib.FibComm;
 import org.jikesrvm.dr.metadata.Epoch;
+import org.jikesrvm.dr.metadata.ObjectShadow;
+import org.jikesrvm.dr.metadata.VC;
 import org.jikesrvm.esc.Esc;
 import org.jikesrvm.esc.EscapeState;
 import org.jikesrvm.jni.JNIEnvironment;
@@ -961,6 +965,27 @@ public final class RVMThread extends ThreadContext implements Constants {
   @Entrypoint
   public Word octetRequests;
 
+  // FIB: FibComm words that other threads write, kept on the takeYieldpoint
+  // line so that a requester's CAS and its takeYieldpoint store touch one
+  // line, and the owner's yieldpoint, response, and block checks need no
+  // indirection.  Checked by an assertion in the constructor.
+
+  /**
+   * Bit vector of threads that have made a FIB request to this thread,
+   * or EMPTY, BLOCKED, or LOCKED (see FibComm).
+   */
+  @Entrypoint
+  public volatile Word drRequests;
+  /**
+   * Remote thread(s) place(s) response(s) to this thread's FIB requests here.
+   */
+  @Entrypoint
+  public volatile Word drResponse;
+  /**
+   * How deep is reentrancy of FIB blocking?
+   */
+  public int drBlockDepth;
+
   /** The number of communication requests responded to. */
   // Octet: TODO: should this be on a separate cache line?
   public int octetResponses;
@@ -1713,6 +1738,17 @@ public final class RVMThread extends ThreadContext implements Constants {
         Word addr2 = baseAddr.plus(Entrypoints.octetRequestsField.getOffset());
         VM._assert((addr1.toInt() & ~0x07) == (addr2.toInt() & ~0x7), "Thread-" + threadSlot + ": takeYieldPoint (" + addr1.toInt() + ") and octetRequestsField (" + addr2.toInt() + ") are not in the same cache line."); // make sure high 29 bits match
       }
+      // FIB: make sure that takeYieldpoint and the FIB requests and response
+      // words are laid out together.  They share a cache line whenever they
+      // do not straddle a line boundary, which the layout alone cannot rule out.
+      if (VM.VerifyAssertions && Dr.COMMUNICATION) {
+        final int yieldpoint = Entrypoints.takeYieldpointField.getOffset().toInt();
+        final int requests = Entrypoints.drRequestsField.getOffset().toInt();
+        final int response = Entrypoints.drResponseField.getOffset().toInt();
+        final int low = Math.min(yieldpoint, Math.min(requests, response));
+        final int high = Math.max(yieldpoint, Math.max(requests, response));
+        VM._assert(high - low < Dr.BYTES_IN_CACHE_LINE, "takeYieldpoint and FIB requests/response are not laid out within a cache line.");
+      }
       
       // Escape: Mark java.lang.Thread object escaped and perform transitive closure computation.
       // It's not late here, since the new thread has not started, and the tracing will mark all its fields escaped. 
@@ -2066,6 +2102,9 @@ public final class RVMThread extends ThreadContext implements Constants {
     handleHandshakeRequest();
     commitSoftRendezvous = softRendezvousCheckAndClear();
     monitor().unlock();
+    // FIB: order the state change before the request queue check in
+    // DrRuntime.blockInNative(), as the CAS does on the fast path.
+    if (Dr.LAZY_BLOCKING) Magic.fence();
     if (traceBlock)
       VM.sysWriteln("Thread #", threadSlot,
           " done with the locking part of native entry.");
@@ -2078,6 +2117,9 @@ public final class RVMThread extends ThreadContext implements Constants {
   @Unpreemptible("May block if the thread was asked to do so, but otherwise does no actions that would cause blocking")
   private void leaveNativeBlockedImpl() {
     checkBlockNoSaveContext();
+    // FIB: order the state change before the request queue check in
+    // DrRuntime.unblock(), as the CAS does on the fast path.
+    if (Dr.LAZY_BLOCKING) Magic.fence();
   }
 
   private void enterNativeBlocked() {
@@ -2430,7 +2472,7 @@ public final class RVMThread extends ThreadContext implements Constants {
             Stats.blockCommEnterNative.inc();
             Communication.blockCommunicationRequests(true);
           }
-          if (Dr.COMMUNICATION) DrRuntime.block();
+          if (Dr.COMMUNICATION) DrRuntime.blockInNative();
 
           return;
         }
@@ -2446,7 +2488,7 @@ public final class RVMThread extends ThreadContext implements Constants {
     if (Octet.getConfig().doCommunication()) {
       Communication.blockCommunicationRequests(true);
     }
-    if (Dr.COMMUNICATION) DrRuntime.block();
+    if (Dr.COMMUNICATION) DrRuntime.blockInNative();
   }
 
   /**
@@ -2515,7 +2557,7 @@ public final class RVMThread extends ThreadContext implements Constants {
       Stats.blockCommEnterJNIFromCallIntoNative.inc();
       Communication.blockCommunicationRequests(true);
     }
-    if (Dr.COMMUNICATION) DrRuntime.block();
+    if (Dr.COMMUNICATION) DrRuntime.blockInNative();
   }
 
   @Unpreemptible
@@ -2548,7 +2590,7 @@ public final class RVMThread extends ThreadContext implements Constants {
       Stats.blockCommEnterJNIFromJNIFunctionCall.inc();
       Communication.blockCommunicationRequests(true);
     }
-    if (Dr.COMMUNICATION) DrRuntime.block();
+    if (Dr.COMMUNICATION) DrRuntime.blockInNative();
   }
 
   @Unpreemptible
@@ -2619,6 +2661,10 @@ public final class RVMThread extends ThreadContext implements Constants {
   public static void checkDebugRequest() {
     if (debugRequested) {
       debugLock.lockNoHandshake();
+      if (debugRequested && Dr.TOGGLE && VM.drToggleOnDebugSignal) {
+        debugRequested = false;
+        DrControl.debugSignal();
+      }
       if (debugRequested) {
         debugRequested = false;
         VM.sysWriteln("=== Debug requested - attempting safe VM dump ===");
@@ -5844,6 +5890,13 @@ public final class RVMThread extends ThreadContext implements Constants {
   public long getDrRaces() {
     return drRaces;
   }
+
+  /**
+   * Race found by this thread under -X:vm:drRaceBehavior=exception and not
+   * yet thrown: 0 if none, else FastTrack.PENDING_READ_RACE or
+   * PENDING_WRITE_RACE.  Only read if Dr.RACE_EXCEPTIONS.
+   */
+  public int drPendingRace = 0;
   
   // (non-)reentrancy checking.
   /**
@@ -6013,8 +6066,6 @@ public final class RVMThread extends ThreadContext implements Constants {
   
   public final FibComm drFibComm;
   
-  public WordArray drActiveVolatileVC = null;
-  
   public int drBufferNext = 0;
   public int drBufferGCgen = 0;
   
@@ -6027,6 +6078,54 @@ public final class RVMThread extends ThreadContext implements Constants {
   public long drGcCount = 0, drGcCountStash = 0;
   
   public final BitVector drClassInitsObserved = new BitVector(16384);
+  
+  /**
+   * Lock objects (or array shadows) whose header may hold only this thread's
+   * release epoch.  Inflated to VCs before this thread's VC grows.
+   */
+  public final Object[] drPendingLocks = Dr.LAZY_LOCK_VCS ? new Object[ObjectShadow.MAX_PENDING_LOCKS] : null;
+  public int drPendingLockCount = 0;
+
+  /**
+   * Are this thread's reads and writes checked, as decided by the sampling
+   * burst of the method it is running?  (Dr.SAMPLING)
+   */
+  public boolean drSampling = false;
+
+  /**
+   * Copy of the VC of the volatile location being read, taken just before
+   * the read, is there anything in it to join after the read, and the VC's
+   * version when copied.  (Dr.VOLATILES or Dr.UNSAFE_SYNC)
+   */
+  public final WordArray drVolatileReadVC = Dr.VOLATILES || Dr.UNSAFE_SYNC ? VC.create() : null;
+  public boolean drVolatileReadPending = false;
+  public int drVolatileReadVersion = 0;
+
+  /**
+   * VC of the Unsafe location this thread holds between
+   * DrRuntime.unsafePreRelease and unsafePostRelease, or reads between
+   * unsafePreAcquire and unsafePostAcquire.  (Dr.UNSAFE_SYNC)
+   */
+  public WordArray drUnsafeVC = null;
+
+  /**
+   * Reader map entries reserved by the current CASFastTrack write, to
+   * restore if it races.  (Dr.CAS_FINE_GRAINED)
+   */
+  public final WordArray drReservedReads = Dr.CAS_FINE_GRAINED ? WordArray.create(Epoch.MAX_THREADS) : null;
+
+  /**
+   * Accesses already checked in the current epoch, and the GC count when
+   * it was last cleared.  (Dr.CHECK_FILTER)
+   */
+  public final WordArray drCheckFilter = Dr.CHECK_FILTER ? CheckFilter.create() : null;
+  public int drCheckFilterGc = -1;
+
+  /**
+   * Checked accesses until the next one whose site RaceReports samples.
+   * (Dr.RACE_REPORTS)
+   */
+  public int drReportCountdown = 0;
   // end FIB
   
 
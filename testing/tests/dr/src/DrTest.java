@@ -0,0 +1,131 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+
+import org.jikesrvm.dr.DataRaceException;
+
+/**
+ * Runs race/no-race scenarios for the race detector.  Meant for builds with
+ * a checking (not sampling) dr configuration with drRaceExceptions(), run
+ * with -X:vm:drRaceBehavior=exception, so that a race shows up as a
+ * DataRaceException in the thread that finds it.
+ *
+ * All threads of a scenario wait at a start gate (a monitor) before their
+ * bodies run.  The gate orders what main did before the scenario before
+ * every body, but nothing in one body before anything in another.  So a
+ * scenario races exactly when its bodies race with each other.
+ */
+class DrTest {
+
+  private static boolean success = true;
+
+  private static int races;
+
+  private static final Object gateLock = new Object();
+  private static boolean gateOpen;
+
+  private static synchronized void raced() {
+    races++;
+  }
+
+  private static void awaitGate() {
+    synchronized (gateLock) {
+      while (!gateOpen) {
+        try {
+          gateLock.wait();
+        } catch (InterruptedException e) {
+          // Keep waiting.
+        }
+      }
+    }
+  }
+
+  /**
+   * Run bodies in one thread each and check whether any of them raced.
+   * @param name name of the scenario, for the output
+   * @param racy should the race detector report a race?
+   * @param bodies
+   */
+  static void run(String name, boolean racy, Runnable... bodies) {
+    runWithMain(name, racy, null, bodies);
+  }
+
+  /**
+   * Like run, but also run mainBody (if not null) in the calling thread
+   * once the gate is open, so that the calling thread synchronizes with
+   * the others while they run.
+   */
+  static void runWithMain(String name, boolean racy, Runnable mainBody, Runnable... bodies) {
+    synchronized (gateLock) {
+      gateOpen = false;
+    }
+    synchronized (DrTest.class) {
+      races = 0;
+    }
+    Thread[] threads = new Thread[bodies.length];
+    for (int i = 0; i < bodies.length; i++) {
+      final Runnable body = bodies[i];
+      threads[i] = new Thread() {
+        public void run() {
+          awaitGate();
+          try {
+            body.run();
+          } catch (DataRaceException e) {
+            raced();
+          }
+        }
+      };
+      threads[i].start();
+    }
+    synchronized (gateLock) {
+      gateOpen = true;
+      gateLock.notifyAll();
+    }
+    if (mainBody != null) {
+      try {
+        mainBody.run();
+      } catch (DataRaceException e) {
+        raced();
+      }
+    }
+    for (Thread t : threads) {
+      while (true) {
+        try {
+          t.join();
+          break;
+        } catch (InterruptedException e) {
+          // Keep waiting.
+        }
+      }
+    }
+    final boolean raced;
+    synchronized (DrTest.class) {
+      raced = races != 0;
+    }
+    System.out.println(name + ": " + (raced ? "race" : "no race") + (raced == racy ? "" : " (FAILED)"));
+    if (raced != racy) success = false;
+  }
+
+  /**
+   * Check a result computed by a scenario.
+   */
+  static void check(String name, boolean ok) {
+    if (!ok) {
+      System.out.println(name + ": wrong result (FAILED)");
+      success = false;
+    }
+  }
+
+  static void finish() {
+    System.out.println("Overall: " + (success ? "SUCCESS" : "FAILURE"));
+  }
+}
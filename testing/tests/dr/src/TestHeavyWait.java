@@ -0,0 +1,81 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+
+/**
+ * FIB response waits under fibHeavyTransfers() (FibArrayHeavy): with more
+ * threads than processors, threads that own shared data are often
+ * descheduled or asleep when others request it, so requesters escalate from
+ * spinning to yielding to a monitor wait.  Every request must still be
+ * answered (the test finishes within its time limit), races must still be
+ * found, and lock-ordered accesses must not be reported.
+ */
+class TestHeavyWait {
+
+  static final int CELLS = 8;
+  static final int ITERATIONS = 2000;
+
+  static final class Cell {
+    int value;
+  }
+
+  static final Cell[] cells = new Cell[CELLS];
+  static final Object lock = new Object();
+  static int unguarded;
+
+  static Runnable[] bodies(final int threads, final boolean racy) {
+    Runnable[] bodies = new Runnable[threads];
+    for (int t = 0; t < threads; t++) {
+      final int id = t;
+      bodies[t] = new Runnable() {
+        public void run() {
+          for (int i = 0; i < ITERATIONS; i++) {
+            synchronized (lock) {
+              cells[(id + i) % CELLS].value++;
+            }
+            if (racy && i == ITERATIONS / 2) {
+              unguarded = id;
+            }
+            if (i % 500 == id % 500) {
+              // Be asleep (blocked) when others request this thread's data.
+              try {
+                Thread.sleep(1);
+              } catch (InterruptedException e) {
+                // Keep going.
+              }
+            }
+          }
+        }
+      };
+    }
+    return bodies;
+  }
+
+  static int total() {
+    int total = 0;
+    for (Cell c : cells) total += c.value;
+    return total;
+  }
+
+  public static void main(String[] args) {
+    final int threads = Math.min(2 * Runtime.getRuntime().availableProcessors() + 2, 16);
+    for (int i = 0; i < CELLS; i++) cells[i] = new Cell();
+
+    DrTest.run("oversubscribed, locked", false, bodies(threads, false));
+    DrTest.check("oversubscribed, locked", total() == threads * ITERATIONS);
+
+    // A racing thread stops at the race, so there is no total to check.
+    DrTest.run("oversubscribed, unguarded", true, bodies(threads, true));
+
+    DrTest.finish();
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+
+import java.io.File;
+
+/**
+ * Lazy blocking in native code and JNI (fibLazyBlocking(), config
+ * FibLazyBlockArray): threads that own shared data spend most of their time
+ * in JNI calls (GNU Classpath's File.exists), so other threads' FIB requests
+ * find them in native code and must be answered without a response from
+ * them.  Races with a thread in native code must still be found, and
+ * lock-ordered accesses must not be reported.
+ */
+class TestLazyBlocking {
+
+  static final int ROUNDS = 200;
+  static final int CALLS = 100;
+
+  static final Object lock = new Object();
+  static int guarded;
+  static int unguarded;
+
+  static final File root = new File("/");
+
+  /**
+   * Spend a while in native code.
+   */
+  static boolean inNative(int calls) {
+    boolean exists = true;
+    for (int i = 0; i < calls; i++) {
+      exists &= root.exists();
+    }
+    return exists;
+  }
+
+  public static void main(String[] args) {
+    Runnable locked = new Runnable() {
+      public void run() {
+        for (int r = 0; r < ROUNDS; r++) {
+          synchronized (lock) {
+            guarded++;
+          }
+          inNative(CALLS);
+        }
+      }
+    };
+    guarded = 0;
+    DrTest.run("in native, locked", false, locked, locked, locked);
+    DrTest.check("in native, locked", guarded == 3 * ROUNDS);
+
+    DrTest.run("in native, unguarded", true,
+        new Runnable() {
+          public void run() {
+            // Write, then stay in native code while the other thread writes.
+            unguarded = 1;
+            inNative(ROUNDS * CALLS);
+          }
+        },
+        new Runnable() {
+          public void run() {
+            inNative(CALLS);
+            unguarded = 2;
+          }
+        });
+
+    DrTest.finish();
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+
+/**
+ * Clock renormalization (drRenormalizeClocks(), config
+ * FibExceptionWideArray): two threads hand a lock back and forth until
+ * their clocks pass Epoch.RENORMALIZE_CLOCK of a 21-bit clock, which
+ * requests a full-heap GC that rebases every epoch.  Lock-ordered accesses
+ * must not race across the rebasing, and unordered accesses by the rebased
+ * threads must still race.
+ *
+ * Main takes part in the handoff, so that no live thread is left that
+ * knows nothing of the other's clock and holds its floor down.  With wider
+ * clocks no renormalization happens, and the test passes trivially.
+ */
+class TestRenormalization {
+
+  /** Releases per thread: past half of a 21-bit clock. */
+  static final int ITERATIONS = (1 << 20) + (1 << 16);
+
+  static final Object lock = new Object();
+  static int count;
+  static int plain;
+
+  static Runnable handoff(final int iterations) {
+    return new Runnable() {
+      public void run() {
+        for (int i = 0; i < iterations; i++) {
+          synchronized (lock) {
+            count++;
+          }
+        }
+      }
+    };
+  }
+
+  public static void main(String[] args) {
+    count = 0;
+    DrTest.runWithMain("lock handoff past renormalization", false,
+        handoff(ITERATIONS), handoff(ITERATIONS));
+    DrTest.check("lock handoff past renormalization", count == 2 * ITERATIONS);
+
+    final Runnable unordered = new Runnable() {
+      public void run() {
+        handoff(1000).run();
+        plain++;
+      }
+    };
+    DrTest.runWithMain("race after renormalization", true, unordered, unordered);
+
+    DrTest.finish();
+  }
+}
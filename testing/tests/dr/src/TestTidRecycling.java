@@ -0,0 +1,102 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+
+/**
+ * Tid recycling across a lock handoff: a writer releases a lock, a relay
+ * thread acquires and releases it (stamping the lock's VC with its own
+ * epoch) and dies, and a thread that recycles the relay's tid then
+ * acquires the lock.  It must still learn of the writer's write, although
+ * its own entry for the tid is past the lock's stamp.
+ *
+ * The new thread is started by a spawner that does not synchronize with
+ * the writer or the relay, and the writer stays alive meanwhile, so that
+ * the relay's tid is the only one free to recycle.  If the relay has not
+ * died yet, no tid is recycled and the test passes trivially.
+ */
+class TestTidRecycling {
+
+  static final Object lock = new Object();
+  static int data;
+  static boolean written;
+  static boolean relayed;
+  static int seen;
+
+  public static void main(String[] args) {
+    data = 0;
+    seen = 0;
+    DrTest.run("recycled tid, lock handoff", false,
+        new Runnable() {
+          public void run() {
+            // Writer.
+            synchronized (lock) {
+              data = 42;
+              written = true;
+            }
+            sleep(2000);
+          }
+        },
+        new Runnable() {
+          public void run() {
+            // Relay.
+            while (true) {
+              synchronized (lock) {
+                if (written) {
+                  relayed = true;
+                  return;
+                }
+              }
+              Thread.yield();
+            }
+          }
+        },
+        new Runnable() {
+          public void run() {
+            // Spawner.
+            sleep(500);
+            Thread reader = new Thread() {
+              public void run() {
+                while (true) {
+                  synchronized (lock) {
+                    if (relayed) {
+                      seen = data;
+                      return;
+                    }
+                  }
+                  Thread.yield();
+                }
+              }
+            };
+            reader.start();
+            while (true) {
+              try {
+                reader.join();
+                break;
+              } catch (InterruptedException e) {
+                // Keep waiting.
+              }
+            }
+          }
+        });
+    DrTest.check("recycled tid, lock handoff", seen == 42);
+
+    DrTest.finish();
+  }
+
+  static void sleep(int millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      // Go on.
+    }
+  }
+}
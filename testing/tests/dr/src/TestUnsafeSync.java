@@ -0,0 +1,133 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * sun.misc.Unsafe synchronization (drUnsafeSync()): java.util.concurrent
+ * locks and atomics order accesses, but only through the location they
+ * synchronize on, and a failed CAS does not release.
+ */
+class TestUnsafeSync {
+
+  static final int THREADS = 4;
+  static final int ITERATIONS = 1000;
+
+  static int count;
+  static int data;
+  static int plain;
+  static int seen;
+
+  public static void main(String[] args) {
+    // AQS: unlock is a volatile write to the state field, lock is an
+    // Unsafe CAS on the same field.
+    final ReentrantLock lock = new ReentrantLock();
+    count = 0;
+    Runnable locked = new Runnable() {
+      public void run() {
+        for (int i = 0; i < ITERATIONS; i++) {
+          lock.lock();
+          try {
+            count++;
+          } finally {
+            lock.unlock();
+          }
+        }
+      }
+    };
+    DrTest.run("ReentrantLock", false, locked, locked, locked, locked);
+    DrTest.check("ReentrantLock", count == THREADS * ITERATIONS);
+
+    // Publish with a CAS, consume with a volatile read of the same field.
+    final AtomicBoolean flag = new AtomicBoolean();
+    data = 0;
+    seen = 0;
+    DrTest.run("CAS publish, volatile read", false,
+        new Runnable() {
+          public void run() {
+            data = 42;
+            flag.compareAndSet(false, true);
+          }
+        },
+        new Runnable() {
+          public void run() {
+            while (!flag.get()) Thread.yield();
+            seen = data;
+          }
+        });
+    DrTest.check("CAS publish, volatile read", seen == 42);
+
+    // Publish with a volatile write, consume with a CAS of the same field.
+    final AtomicBoolean flag2 = new AtomicBoolean();
+    data = 0;
+    seen = 0;
+    DrTest.run("volatile publish, CAS", false,
+        new Runnable() {
+          public void run() {
+            data = 43;
+            flag2.set(true);
+          }
+        },
+        new Runnable() {
+          public void run() {
+            while (!flag2.compareAndSet(true, false)) Thread.yield();
+            seen = data;
+          }
+        });
+    DrTest.check("volatile publish, CAS", seen == 43);
+
+    // CASes on different atomics do not order each other.
+    final AtomicInteger a = new AtomicInteger();
+    final AtomicInteger b = new AtomicInteger();
+    DrTest.run("different atomics", true,
+        new Runnable() {
+          public void run() {
+            for (int i = 0; i < ITERATIONS; i++) {
+              a.incrementAndGet();
+              plain = i;
+            }
+          }
+        },
+        new Runnable() {
+          public void run() {
+            for (int i = 0; i < ITERATIONS; i++) {
+              b.incrementAndGet();
+              plain = i;
+            }
+          }
+        });
+
+    // A failed CAS does not release.
+    final AtomicInteger c = new AtomicInteger();
+    DrTest.run("failed CAS", true,
+        new Runnable() {
+          public void run() {
+            plain = 1;
+            c.compareAndSet(1, 2);
+          }
+        },
+        new Runnable() {
+          public void run() {
+            for (int i = 0; i < ITERATIONS; i++) {
+              c.compareAndSet(0, 0);
+              Thread.yield();
+            }
+            plain = 2;
+          }
+        });
+
+    DrTest.finish();
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+
+/**
+ * Volatile handoff: a write before a volatile store is ordered before a
+ * read after a volatile load that sees the store, even when the load
+ * overlaps the writer's release of the location's VC.  Many handoffs in a
+ * row make that overlap likely.  A write after the volatile store is not
+ * ordered.
+ */
+class TestVolatileHandoff {
+
+  static final int HANDOFFS = 2000;
+
+  static final class Box {
+    int data;
+    volatile boolean flag;
+  }
+
+  static Box[] boxes() {
+    Box[] boxes = new Box[HANDOFFS];
+    for (int i = 0; i < HANDOFFS; i++) boxes[i] = new Box();
+    return boxes;
+  }
+
+  static int seen;
+
+  public static void main(String[] args) {
+    final Box[] handoff = boxes();
+    seen = 0;
+    DrTest.run("volatile handoff", false,
+        new Runnable() {
+          public void run() {
+            for (Box b : handoff) {
+              b.data = 1;
+              b.flag = true;
+            }
+          }
+        },
+        new Runnable() {
+          public void run() {
+            int sum = 0;
+            for (Box b : handoff) {
+              while (!b.flag) Thread.yield();
+              sum += b.data;
+            }
+            seen = sum;
+          }
+        });
+    DrTest.check("volatile handoff", seen == HANDOFFS);
+
+    final Box[] wrong = boxes();
+    DrTest.run("write after volatile store", true,
+        new Runnable() {
+          public void run() {
+            for (Box b : wrong) {
+              b.flag = true;
+              b.data = 1;
+            }
+          }
+        },
+        new Runnable() {
+          public void run() {
+            int sum = 0;
+            for (Box b : wrong) {
+              while (!b.flag) Thread.yield();
+              sum += b.data;
+            }
+            seen = sum;
+          }
+        });
+
+    DrTest.finish();
+  }
+}